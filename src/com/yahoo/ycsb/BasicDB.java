@@ -24,6 +24,7 @@ import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
 
+import com.yahoo.ycsb.generator.RandomStream;
 
 /**
  * Basic DB that just prints out the requested operations, instead of doing them against a database.
@@ -72,6 +73,15 @@ public class BasicDB extends DB
 	{
 		verbose=Boolean.parseBoolean(getProperties().getProperty(VERBOSE, VERBOSE_DEFAULT));
 		todelay=Integer.parseInt(getProperties().getProperty(SIMULATE_DELAY, SIMULATE_DELAY_DEFAULT));
+
+		String seed=getProperties().getProperty(Workload.SEED_PROPERTY);
+		if (seed!=null)
+		{
+			//not the workload's own streams, so that the delays aren't correlated with the operations; keyed by the
+			//client thread, so that each thread gets the same delays in every run with this seed
+			int threadid=Integer.parseInt(getProperties().getProperty(THREAD_ID_PROPERTY,"0"));
+			random=RandomStream.forThread(~Long.parseLong(seed),threadid);
+		}
 		
 		if (verbose)
 		{
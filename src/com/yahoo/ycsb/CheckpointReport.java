@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.OneMeasurementHistogram;
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsReader;
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Rebuilds the report of a run from the checkpoints written by the client (see the checkpoint.file property),
+ * for runs whose client died before it could export its measurements.
+ *
+ * Given one checkpoint, the report is the measurements of the run up to that checkpoint. Given several, such
+ * as the last checkpoint of each segment of a run that was restarted after a crash, the segments are combined
+ * into one run: counts and times are added up, average latencies are weighted by the operations of each
+ * segment, the throughput is recomputed over the total run time, percentiles are recomputed from the combined
+ * histograms, and the intervals of time series are laid end to end. Measurements that can't be combined are
+ * taken from the last segment.
+ */
+public class CheckpointReport
+{
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.CheckpointReport [options] checkpoint [checkpoint ...]");
+		System.out.println("Writes the report of a run from its last checkpoint, or combines the checkpoints of the segments of a restarted run, in order.");
+		System.out.println("Options:");
+		System.out.println("  -exporter class: the exporter to write the report with (default: com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter)");
+		System.out.println("  -o file: write the report to the file instead of stdout");
+	}
+
+	static boolean isLatency(String measurement)
+	{
+		return measurement.endsWith("Latency(ms)");
+	}
+
+	static boolean isPercentile(String measurement)
+	{
+		return measurement.endsWith("PercentileLatency(ms)");
+	}
+
+	/**
+	 * Return the percentile of a measurement named like "99.9thPercentileLatency(ms)".
+	 */
+	static double getPercentile(String measurement)
+	{
+		return Double.parseDouble(measurement.substring(0,measurement.indexOf("th")));
+	}
+
+	static double get(MemoryMeasurementsExporter m, String metric, String measurement)
+	{
+		Double d=m.getValue(metric,measurement);
+		return d==null ? 0 : d.doubleValue();
+	}
+
+	/**
+	 * Combine the measurements of the segments of a run into one run.
+	 */
+	static MemoryMeasurementsExporter merge(Vector<MemoryMeasurementsExporter> segments) throws IOException
+	{
+		//values of every metric and measurement, in the order they first appeared
+		LinkedHashMap<String,LinkedHashMap<String,Double>> values=new LinkedHashMap<String,LinkedHashMap<String,Double>>();
+		LinkedHashMap<String,long[]> histograms=new LinkedHashMap<String,long[]>();
+		MemoryMeasurementsExporter ret=new MemoryMeasurementsExporter();
+
+		long offset=0;
+		for (MemoryMeasurementsExporter s : segments)
+		{
+			for (String metric : s.getMetrics())
+			{
+				LinkedHashMap<String,Double> m=values.get(metric);
+				if (m==null)
+				{
+					m=new LinkedHashMap<String,Double>();
+					values.put(metric,m);
+				}
+				double ops=get(s,metric,"Operations");
+				for (String measurement : s.getMeasurements(metric))
+				{
+					double v=s.getValue(metric,measurement);
+					Double old=m.get(measurement);
+					if ( (old==null) || (metric.equals("CHECKPOINT")) )
+					{
+						if (measurement.equals("AverageLatency(ms)"))
+						{
+							//kept as total latency until all segments are in
+							v=v*ops;
+						}
+						else if (measurement.equals("Throughput(ops/sec)"))
+						{
+							//kept as total operations until all segments are in
+							v=v*get(s,metric,"RunTime(ms)");
+						}
+						m.put(measurement,v);
+					}
+					else if (measurement.equals("AverageLatency(ms)"))
+					{
+						if (ops>0)
+						{
+							m.put(measurement,old+v*ops);
+						}
+					}
+					else if (measurement.equals("Throughput(ops/sec)"))
+					{
+						m.put(measurement,old+v*get(s,metric,"RunTime(ms)"));
+					}
+					else if (measurement.equals("MinLatency(ms)"))
+					{
+						m.put(measurement,Math.min(old,v));
+					}
+					else if ( (measurement.equals("MaxLatency(ms)")) || (isPercentile(measurement)) )
+					{
+						m.put(measurement,Math.max(old,v));
+					}
+					else if ( (measurement.equals("Operations")) || (measurement.startsWith("Return=")) || (measurement.endsWith("Time(ms)")) )
+					{
+						m.put(measurement,old+v);
+					}
+					else
+					{
+						m.put(measurement,v);
+					}
+				}
+			}
+
+			for (String metric : s.getHistogramMetrics())
+			{
+				long[] counts=s.getHistogram(metric);
+				long[] sum=histograms.get(metric);
+				if ( (sum==null) || (sum.length!=counts.length) )
+				{
+					histograms.put(metric,counts.clone());
+				}
+				else
+				{
+					for (int i=0; i<counts.length; i++)
+					{
+						sum[i]+=counts[i];
+					}
+				}
+			}
+
+			for (String metric : s.getIntervalMetrics())
+			{
+				LinkedHashMap<Long,LinkedHashMap<String,Double>> series=s.getIntervals(metric);
+				for (Long time : series.keySet())
+				{
+					LinkedHashMap<String,Double> interval=series.get(time);
+					String[] measurements=interval.keySet().toArray(new String[0]);
+					double[] v=new double[measurements.length];
+					for (int i=0; i<v.length; i++)
+					{
+						v[i]=interval.get(measurements[i]);
+					}
+					ret.writeInterval(metric,time+offset,measurements,v);
+				}
+			}
+			offset+=(long)get(s,"OVERALL","RunTime(ms)");
+		}
+
+		//turn the totals back into averages and rates
+		for (String metric : values.keySet())
+		{
+			LinkedHashMap<String,Double> m=values.get(metric);
+			Double ops=m.get("Operations");
+			if ( (m.containsKey("AverageLatency(ms)")) && (ops!=null) )
+			{
+				m.put("AverageLatency(ms)",m.get("AverageLatency(ms)")/ops);
+			}
+			if (m.containsKey("Throughput(ops/sec)"))
+			{
+				Double runtime=m.get("RunTime(ms)");
+				m.put("Throughput(ops/sec)",( (runtime==null) || (runtime==0) ) ? 0 : m.get("Throughput(ops/sec)")/runtime);
+			}
+			long[] counts=histograms.get(metric);
+			if (counts!=null)
+			{
+				for (String measurement : m.keySet())
+				{
+					if (isPercentile(measurement))
+					{
+						m.put(measurement,(double)OneMeasurementHistogram.percentile(counts,getPercentile(measurement)));
+					}
+				}
+			}
+		}
+
+		//the spread of per-thread throughput, over the whole run
+		LinkedHashMap<String,Double> threads=values.get("THREADS");
+		if (threads!=null)
+		{
+			Vector<Double> rates=new Vector<Double>();
+			for (String metric : values.keySet())
+			{
+				if ( (metric.startsWith("THREAD")) && (!metric.equals("THREADS")) && (values.get(metric).containsKey("Throughput(ops/sec)")) )
+				{
+					rates.add(values.get(metric).get("Throughput(ops/sec)"));
+				}
+			}
+			if (rates.size()>0)
+			{
+				double[] sorted=new double[rates.size()];
+				for (int i=0; i<sorted.length; i++)
+				{
+					sorted[i]=rates.get(i);
+				}
+				Arrays.sort(sorted);
+				threads.put("MinThroughput(ops/sec)",sorted[0]);
+				threads.put("MedianThroughput(ops/sec)",Statistics.median(sorted));
+				threads.put("MaxThroughput(ops/sec)",sorted[sorted.length-1]);
+			}
+		}
+
+		MemoryMeasurementsExporter merged=new MemoryMeasurementsExporter();
+		for (String metric : values.keySet())
+		{
+			LinkedHashMap<String,Double> m=values.get(metric);
+			for (String measurement : m.keySet())
+			{
+				merged.write(metric,measurement,m.get(measurement).doubleValue());
+			}
+		}
+		for (String metric : histograms.keySet())
+		{
+			merged.writeHistogram(metric,histograms.get(metric));
+		}
+		ret.writeTo(merged);
+		return merged;
+	}
+
+	public static void main(String[] args)
+	{
+		Properties props=new Properties();
+		String output=null;
+
+		int argindex=0;
+		while ( (argindex<args.length) && (args[argindex].startsWith("-")) )
+		{
+			if ( (args[argindex].compareTo("-exporter")==0) && (argindex+1<args.length) )
+			{
+				props.setProperty("exporter",args[argindex+1]);
+				argindex+=2;
+			}
+			else if ( (args[argindex].compareTo("-o")==0) && (argindex+1<args.length) )
+			{
+				output=args[argindex+1];
+				argindex+=2;
+			}
+			else
+			{
+				usageMessage();
+				System.exit(2);
+			}
+		}
+
+		if (argindex>=args.length)
+		{
+			usageMessage();
+			System.exit(2);
+		}
+
+		Vector<MemoryMeasurementsExporter> segments=new Vector<MemoryMeasurementsExporter>();
+		for (int i=argindex; i<args.length; i++)
+		{
+			try
+			{
+				MemoryMeasurementsExporter s=MeasurementsReader.read(args[i]);
+				if (s.getValue("CHECKPOINT","Complete")==null)
+				{
+					System.err.println(args[i]+" is not a checkpoint, reading it as the results of a whole run");
+				}
+				else if (s.getValue("CHECKPOINT","Complete").doubleValue()==0)
+				{
+					System.err.println(args[i]+" is a checkpoint of a run that did not finish");
+				}
+				segments.add(s);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not read checkpoint "+args[i]+", error: "+e.getMessage());
+				System.exit(2);
+			}
+		}
+
+		MeasurementsExporter exporter=null;
+		try
+		{
+			exporter=Client.openExporter(props,output);
+			merge(segments).writeTo(exporter);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not write the report, error: "+e.getMessage());
+			System.exit(2);
+		}
+		finally
+		{
+			if (exporter!=null)
+			{
+				try
+				{
+					exporter.close();
+				}
+				catch (IOException e)
+				{
+					//do nothing
+				}
+			}
+		}
+	}
+}
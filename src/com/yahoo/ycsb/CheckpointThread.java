@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Keeps the measurements of a run from being lost if the client dies before the end of the run. Every
+ * interval it writes a checkpoint of the measurements so far (the cumulative histograms and counters, as
+ * exported at the end of a run) to a file. The checkpoint is written to a temporary file that is then renamed
+ * over the previous one, so there is always a complete checkpoint on disk. A last checkpoint, marked as
+ * complete, is written when the run ends.
+ *
+ * If the JVM exits during the run (on SIGTERM, Ctrl-C, or a System.exit() after an error), a shutdown hook
+ * writes a checkpoint and exports the measurements so far the same way as at the end of a run.
+ *
+ * Checkpoints can be turned back into a report, or several checkpoints of a run that was restarted can be
+ * combined into one, with CheckpointReport.
+ *
+ * Properties to control checkpoints:
+ * <UL>
+ * <LI><b>checkpoint.file</b>: the file to write checkpoints to (default: no checkpoints)
+ * <LI><b>checkpoint.interval</b>: the time in ms between checkpoints (default: 60000)
+ * <LI><b>checkpoint.exporter</b>: the exporter class to write checkpoints with (default: com.yahoo.ycsb.measurements.exporter.NDJSONMeasurementsExporter)
+ * <LI><b>checkpoint.onexit</b>: export the measurements so far if the JVM exits during a run (default: true)
+ * </UL>
+ */
+class CheckpointThread extends Thread
+{
+	public static final String FILE_PROPERTY="checkpoint.file";
+
+	public static final String INTERVAL_PROPERTY="checkpoint.interval";
+	public static final String INTERVAL_PROPERTY_DEFAULT="60000";
+
+	public static final String EXPORTER_PROPERTY="checkpoint.exporter";
+	public static final String EXPORTER_PROPERTY_DEFAULT="com.yahoo.ycsb.measurements.exporter.NDJSONMeasurementsExporter";
+
+	public static final String ON_EXIT_PROPERTY="checkpoint.onexit";
+	public static final String ON_EXIT_PROPERTY_DEFAULT="true";
+
+	/**
+	 * The checkpoint thread of the run going on now, which the shutdown hook exports; null between runs.
+	 */
+	static volatile CheckpointThread _current;
+	static boolean _hookinstalled;
+
+	Properties _props;
+	Client.Run _run;
+	long _start;
+	String _file;
+	long _interval;
+	boolean _onexit;
+	boolean _finished;
+
+	/**
+	 * @param props the properties defining the experiment
+	 * @param run the run; its threads may still be running
+	 * @param start the time the run started
+	 */
+	CheckpointThread(Properties props, Client.Run run, long start)
+	{
+		super("checkpoint");
+		setDaemon(true);
+		_props=props;
+		_run=run;
+		_start=start;
+		_file=props.getProperty(FILE_PROPERTY);
+		_interval=Long.parseLong(props.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT));
+		_onexit=Boolean.parseBoolean(props.getProperty(ON_EXIT_PROPERTY,ON_EXIT_PROPERTY_DEFAULT));
+	}
+
+	static synchronized void installShutdownHook()
+	{
+		if (_hookinstalled)
+		{
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread("checkpoint-on-exit")
+		{
+			public void run()
+			{
+				CheckpointThread current=_current;
+				if (current!=null)
+				{
+					current.exitDuringRun();
+				}
+			}
+		});
+		_hookinstalled=true;
+	}
+
+	/**
+	 * Start taking checkpoints, and watching for the JVM exiting before the run ends.
+	 */
+	public void begin()
+	{
+		installShutdownHook();
+		_current=this;
+		if ( (_file!=null) && (_interval>0) )
+		{
+			start();
+		}
+	}
+
+	/**
+	 * Stop taking checkpoints, and write the last one, as the run has ended.
+	 *
+	 * @param run the finished run, with its final runtime, so that the last checkpoint matches its export
+	 */
+	public synchronized void end(Client.Run run)
+	{
+		_finished=true;
+		_current=null;
+		interrupt();
+		writeCheckpoint(true,run);
+	}
+
+	public void run()
+	{
+		while (true)
+		{
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				//the run has ended
+			}
+			synchronized (this)
+			{
+				if (_finished)
+				{
+					return;
+				}
+				writeCheckpoint(false,_run.snapshot(System.currentTimeMillis()-_start));
+			}
+		}
+	}
+
+	/**
+	 * Write the measurements so far to the checkpoint file, if there is one, replacing the previous checkpoint in one step.
+	 *
+	 * @param complete true if the run has ended
+	 * @param run the run to write the measurements of
+	 */
+	synchronized void writeCheckpoint(boolean complete, Client.Run run)
+	{
+		if (_file==null)
+		{
+			return;
+		}
+
+		long now=System.currentTimeMillis();
+		Properties p=new Properties(_props);
+		p.setProperty("exporter",_props.getProperty(EXPORTER_PROPERTY,EXPORTER_PROPERTY_DEFAULT));
+
+		File file=new File(_file);
+		File tmp=new File(_file+".tmp");
+		MeasurementsExporter exporter=null;
+		try
+		{
+			exporter=Client.openExporter(p,tmp.getPath());
+			exporter.write("CHECKPOINT", "Time", now);
+			exporter.write("CHECKPOINT", "Complete", complete ? 1 : 0);
+			Client.writeMeasurements(exporter,p,run);
+			exporter.close();
+			exporter=null;
+
+			try
+			{
+				Files.move(tmp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tmp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not write checkpoint "+_file+", error: "+e.getMessage());
+		}
+		finally
+		{
+			if (exporter!=null)
+			{
+				try
+				{
+					exporter.close();
+				}
+				catch (IOException e)
+				{
+					//do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by the shutdown hook if the JVM exits during the run: write a checkpoint and export the measurements so far.
+	 */
+	synchronized void exitDuringRun()
+	{
+		if (_finished)
+		{
+			return;
+		}
+		_finished=true;
+
+		System.err.println("Exiting before the end of the run, saving the measurements of the first "+(System.currentTimeMillis()-_start)+" ms");
+		writeCheckpoint(false,_run.snapshot(System.currentTimeMillis()-_start));
+
+		if (!_onexit)
+		{
+			return;
+		}
+		MeasurementsExporter exporter=null;
+		try
+		{
+			exporter=Client.openExporter(_props,_props.getProperty("exportfile"));
+			Client.writeMeasurements(exporter,_props,_run.snapshot(System.currentTimeMillis()-_start));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not export measurements, error: " + e.getMessage());
+		}
+		finally
+		{
+			if (exporter!=null)
+			{
+				try
+				{
+					exporter.close();
+				}
+				catch (IOException e)
+				{
+					//do nothing
+				}
+			}
+		}
+	}
+}
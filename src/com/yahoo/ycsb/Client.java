@@ -19,338 +19,21 @@ package com.yahoo.ycsb;
 
 
 import java.io.*;
-import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.yahoo.ycsb.Client.Operation;
+import com.yahoo.ycsb.generator.RandomStream;
 import com.yahoo.ycsb.measurements.Measurements;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 //import org.apache.log4j.BasicConfigurator;
 
-/**
- * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
- * 
- * @author cooperb
- *
- */
-class StatusThread extends Thread
-{
-	public enum StatusType {
-		STDERR,
-		STDOUT,
-		STDOUT_TABDELIMITED,
-	}
-	
-	Vector<Thread> _threads;
-	String _label;
-	StatusType _statusType;
-	
-	/**
-	 * The interval for reporting status.
-	 */
-	public static final long sleeptime=10000;
-
-	public StatusThread(Vector<Thread> threads, String label, StatusType statusType)
-	{
-		_threads=threads;
-		_label=label;
-		_statusType=statusType;
-	}
-
-	/**
-	 * Run and periodically report status.
-	 */
-	public void run()
-	{
-		long st=System.currentTimeMillis();
-
-		long lasten=st;
-		long lasttotalops=0;
-		
-		boolean alldone;
-
-		do 
-		{
-			alldone=true;
-
-			int totalops=0;
-
-			//terminate this thread when all the worker threads are done
-			for (Thread t : _threads)
-			{
-				if (t.getState()!=Thread.State.TERMINATED)
-				{
-					alldone=false;
-				}
-
-				ClientThread ct=(ClientThread)t;
-				totalops+=ct.getOpsDone();
-			}
-
-			long en=System.currentTimeMillis();
-
-			long interval=en-st;
-			//double throughput=1000.0*((double)totalops)/((double)interval);
-
-			double curthroughput=1000.0*(((double)(totalops-lasttotalops))/((double)(en-lasten)));
-			
-			lasttotalops=totalops;
-			lasten=en;
-			
-			DecimalFormat d = new DecimalFormat("#.##");
-			
-			if(_statusType.equals(StatusType.STDERR)) {
-				if (totalops==0) {
-					System.err.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary());
-				}
-				else
-				{
-					System.err.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary());
-				}
-			}
-			else if (_statusType.equals(StatusType.STDOUT))
-			{
-				if (totalops==0)
-				{
-					System.out.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary());
-				}
-				else
-				{
-					System.out.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary());
-				}
-			}
-			else if(_statusType.equals(StatusType.STDOUT_TABDELIMITED)) {
-				if (totalops==0)
-				{
-					if(_label != null) 
-					{
-						System.out.println("test\tseconds\toperations\toperations/sec\toperation type");
-						System.out.println(_label+"\t"+(interval/1000)+"\t"+totalops+"\tnone yet\t"+Measurements.getMeasurements().getSummary());
-					} else {
-						System.out.println("seconds\toperations\toperations/sec\toperation type");
-						System.out.println((interval/1000)+"\t"+totalops+"\tnone yet\t"+Measurements.getMeasurements().getSummary());
-					}
-				}
-				else
-				{
-					if(_label != null) 
-					{
-						System.out.println(_label+"\t"+(interval/1000)+"\t"+totalops+"\t"+d.format(curthroughput)+"\t"+Measurements.getMeasurements().getSummary());
-					} else {
-						System.out.println((interval/1000)+"\t"+totalops+"\t"+d.format(curthroughput)+"\t"+Measurements.getMeasurements().getSummary());
-					}
-				}
-			}
-
-			try
-			{
-				sleep(sleeptime);
-			}
-			catch (InterruptedException e)
-			{
-				//do nothing
-			}
-
-		}
-		while (!alldone);
-	}
-}
-
-/**
- * A thread for executing transactions or data inserts to the database.
- * 
- * @author cooperb
- *
- */
-class ClientThread extends Thread
-{
-	static Random random=new Random();
-
-	DB _db;
-	Client.Operation _operation;
-	Workload _workload;
-	int _opcount;
-	double _target;
-
-	int _opsdone;
-	int _threadid;
-	int _threadcount;
-	Object _workloadstate;
-	Properties _props;
-
-
-	/**
-	 * Constructor.
-	 * 
-	 * @param db the DB implementation to use
-	 * @param operation true to do transactions, false to insert data
-	 * @param workload the workload to use
-	 * @param threadid the id of this thread 
-	 * @param threadcount the total number of threads 
-	 * @param props the properties defining the experiment
-	 * @param opcount the number of operations (transactions or inserts) to do
-	 * @param targetperthreadperms target number of operations per thread per ms
-	 */
-	public ClientThread(DB db, Operation operation, Workload workload, int threadid, int threadcount, Properties props, int opcount, double targetperthreadperms)
-	{
-		//TODO: consider removing threadcount and threadid
-		_db=db;
-		_operation =operation;
-		_workload=workload;
-		_opcount=opcount;
-		_opsdone=0;
-		_target=targetperthreadperms;
-		_threadid=threadid;
-		_threadcount=threadcount;
-		_props=props;
-		//System.out.println("Interval = "+interval);
-	}
-
-	public int getOpsDone()
-	{
-		return _opsdone;
-	}
-
-	public void run()
-	{
-		try
-		{
-			_db.init();
-		}
-		catch (DBException e)
-		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
-		}
-
-		try
-		{
-			_workloadstate=_workload.initThread(_props,_threadid,_threadcount);
-		}
-		catch (WorkloadException e)
-		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
-		}
-
-		//spread the thread operations out so they don't all hit the DB at the same time
-		try
-		{
-		   //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-		   //and the sleep() doesn't make sense for granularities < 1 ms anyway
-		   if ( (_target>0) && (_target<=1.0) ) 
-		   {
-		      sleep(random.nextInt((int)(1.0/_target)));
-		   }
-		}
-		catch (InterruptedException e)
-		{
-		   //do nothing
-		}
-		
-		try
-		{
-			if (_operation.equals(Client.Operation.IS_TRANSACTION))
-			{
-				long st=System.currentTimeMillis();
-
-				while ( (_opcount==0) || (_opsdone<_opcount) )
-				{
-
-					if (!_workload.doTransaction(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-					
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-								//do nothing
-							}
-
-						}
-					}
-				}
-			}
-			else if(_operation.equals(Client.Operation.IS_INSERTION))
-			{
-				long st=System.currentTimeMillis();
-
-				while ( (_opcount==0) || (_opsdone<_opcount) )
-				{
-
-					if (!_workload.doInsert(_db,_workloadstate))
-					{
-						break;
-					}
-
-					_opsdone++;
-
-					//throttle the operations
-					if (_target>0)
-					{
-						//this is more accurate than other throttling approaches we have tried,
-						//like sleeping for (1/target throughput)-operation latency,
-						//because it smooths timing inaccuracies (from sleep() taking an int, 
-						//current time in millis) over many operations
-						while (System.currentTimeMillis()-st<((double)_opsdone)/_target)
-						{
-							try 
-							{
-								sleep(1);
-							}
-							catch (InterruptedException e)
-							{
-								//do nothing
-							}
-						}
-					}
-				}
-			}
-			else if(_operation.equals(Client.Operation.IS_TRUNCATION)) {
-					if(!_workload.doTruncation(_db)) {
-						throw new Exception("truncation attempt on database failed!");
-					}
-			}
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			System.exit(0);
-		}
-
-		try
-		{
-			_db.cleanup();
-		}
-		catch (DBException e)
-		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			return;
-		}
-	}
-}
-
 /**
  * Main class for executing YCSB.
  */
@@ -377,6 +60,13 @@ public class Client
 	 */
 	public static final String INSERT_COUNT_PROPERTY="insertcount";
 
+	/**
+	 * Whether the final report should include a breakdown of operations, throughput and latency per client thread.
+	 */
+	public static final String THREAD_STATS_PROPERTY="threadstats";
+
+	public static final String THREAD_STATS_PROPERTY_DEFAULT="true";
+
 	public static void usageMessage()
 	{
 		System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
@@ -418,67 +108,283 @@ public class Client
 	}
 
 
+	/**
+	 * The outcome of running one phase of the workload.
+	 */
+	static class Run
+	{
+		/**
+		 * The number of operations requested.
+		 */
+		long opcount;
+
+		long runtime;
+		long inittime;
+		Vector<Thread> threads;
+		ConcurrencyTuner tuner;
+		HostSampler sampler;
+		Workload workload;
+
+		/**
+		 * Return the number of operations actually done, which may be fewer than requested if the workload stopped early.
+		 */
+		long getOpsDone()
+		{
+			long opsdone=0;
+			for (Thread t : threads)
+			{
+				opsdone+=((ClientThread)t).getOpsDone();
+			}
+			return opsdone;
+		}
+
+		double getThroughput()
+		{
+			return 1000.0*((double)getOpsDone())/((double)runtime);
+		}
+
+		/**
+		 * Return a copy of this run as it is now, for exporting while the threads are still running.
+		 *
+		 * @param elapsed the time in ms the run has been going on
+		 */
+		Run snapshot(long elapsed)
+		{
+			Run run=new Run();
+			run.opcount=opcount;
+			run.inittime=inittime;
+			run.threads=new Vector<Thread>(threads);
+			run.tuner=tuner;
+			run.sampler=sampler;
+			run.workload=workload;
+			run.runtime=elapsed;
+			return run;
+		}
+	}
+
 	/**
 	 * Exports the measurements to either sysout or a file using the exporter
 	 * loaded from conf.
 	 * @throws IOException Either failed to write to output stream or failed to close it.
 	 */
-	private static void exportMeasurements(Properties props, int opcount, long runtime)
+	private static void exportMeasurements(Properties props, Run run)
 			throws IOException
 	{
 		MeasurementsExporter exporter = null;
 		try
 		{
-			// if no destination file is provided the results will be written to stdout
-			OutputStream out;
-			String exportFile = props.getProperty("exportfile");
-			if (exportFile == null)
-			{
-				out = System.out;
-			} else
+			exporter = openExporter(props, props.getProperty("exportfile"));
+			writeMeasurements(exporter, props, run);
+		} finally
+		{
+			if (exporter != null)
 			{
-				out = new FileOutputStream(exportFile);
+				exporter.close();
 			}
+		}
+	}
 
-			// if no exporter is provided the default text one will be used
-			String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
-			try
+	/**
+	 * Exports the summary of several iterations of a run, the same way as the measurements of a single run.
+	 * @throws IOException Either failed to write to output stream or failed to close it.
+	 */
+	private static void exportMeasurements(Properties props, Vector<MemoryMeasurementsExporter> iterations)
+			throws IOException
+	{
+		MeasurementsExporter exporter = null;
+		try
+		{
+			exporter = openExporter(props, props.getProperty("exportfile"));
+			Iterations.writeSummary(exporter, iterations);
+		} finally
+		{
+			if (exporter != null)
 			{
-				exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
-			} catch (Exception e)
+				exporter.close();
+			}
+		}
+	}
+
+	/**
+	 * Wait until every client thread has set up and reached the start barrier, then start them all. If a thread
+	 * dies before reaching it, the barrier is broken instead, which lets the threads already waiting start, so
+	 * that one failed thread can't hold up the run forever.
+	 */
+	static void awaitStart(CyclicBarrier startbarrier, Vector<Thread> threads)
+	{
+		try
+		{
+			while (startbarrier.getNumberWaiting()<threads.size())
 			{
-				System.err.println("Could not find exporter " + exporterStr
-						+ ", will use default text reporter.");
-				e.printStackTrace();
-				exporter = new TextMeasurementsExporter(out);
+				for (Thread t : threads)
+				{
+					if (!t.isAlive())
+					{
+						System.err.println("Client thread "+t.getName()+" ended before the run started");
+						try
+						{
+							//timing out breaks the barrier for good, so threads still setting up won't wait either
+							startbarrier.await(0,TimeUnit.NANOSECONDS);
+						}
+						catch (TimeoutException e)
+						{
+						}
+						catch (BrokenBarrierException e)
+						{
+						}
+						return;
+					}
+				}
+				Thread.sleep(1);
 			}
+			startbarrier.await();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+	}
 
-			exporter.write("OVERALL", "RunTime(ms)", runtime);
-			double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
-			exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+	/**
+	 * Create the exporter named by the properties, writing to the given file or, if it is null, to sysout.
+	 */
+	static MeasurementsExporter openExporter(Properties props, String exportFile)
+			throws IOException
+	{
+		// if no destination file is provided the results will be written to stdout
+		OutputStream out;
+		if (exportFile == null)
+		{
+			// closing the exporter must not close stdout, which later exports and status output still use
+			out = new FilterOutputStream(System.out)
+			{
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					this.out.write(b, off, len);
+				}
 
-			// only show measurements if any were requested. 
-			if(opcount != 0) {
-				Measurements.getMeasurements().exportMeasurements(exporter);
-			}
-		} finally
+				@Override
+				public void close() throws IOException
+				{
+					flush();
+				}
+			};
+		} else
 		{
-			if (exporter != null)
+			out = new FileOutputStream(exportFile);
+		}
+
+		// if no exporter is provided the default text one will be used
+		String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+		try
+		{
+			return (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
+		} catch (Exception e)
+		{
+			System.err.println("Could not find exporter " + exporterStr
+					+ ", will use default text reporter.");
+			e.printStackTrace();
+			return new TextMeasurementsExporter(out);
+		}
+	}
+
+	/**
+	 * Write the overall results and the measurements of a run to the given exporter.
+	 */
+	static void writeMeasurements(MeasurementsExporter exporter, Properties props, Run run)
+			throws IOException
+	{
+		exporter.write("OVERALL", "RunTime(ms)", run.runtime);
+		exporter.write("OVERALL", "Throughput(ops/sec)", run.getThroughput());
+		exporter.write("OVERALL", "InitTime(ms)", run.inittime);
+		if (props.getProperty(Workload.SEED_PROPERTY)!=null)
+		{
+			exporter.write("OVERALL", "Seed", Long.parseLong(props.getProperty(Workload.SEED_PROPERTY)));
+		}
+
+		// only show measurements if any were requested. 
+		if(run.opcount != 0) {
+			Measurements.getMeasurements().exportMeasurements(exporter);
+		}
+
+		if (run.workload != null)
+		{
+			run.workload.exportMeasurements(exporter);
+		}
+
+		if (run.tuner != null)
+		{
+			run.tuner.exportMeasurements(exporter);
+		}
+
+		if (run.sampler != null)
+		{
+			run.sampler.exportMeasurements(exporter);
+		}
+
+		if (Boolean.parseBoolean(props.getProperty(THREAD_STATS_PROPERTY,THREAD_STATS_PROPERTY_DEFAULT)))
+		{
+			exportThreadMeasurements(exporter, run.threads, Double.parseDouble(props.getProperty(StatusThread.IMBALANCE_THRESHOLD_PROPERTY,StatusThread.IMBALANCE_THRESHOLD_PROPERTY_DEFAULT)));
+		}
+	}
+	
+	/**
+	 * Export the per-thread breakdown, plus the spread of per-thread throughput, so that skew
+	 * between client threads can be told apart from the behavior of the server.
+	 */
+	private static void exportThreadMeasurements(MeasurementsExporter exporter, Vector<Thread> threads, double imbalancethreshold)
+			throws IOException
+	{
+		int[] threadids=new int[threads.size()];
+		double[] rates=new double[threads.size()];
+		int i=0;
+		for (Thread t : threads)
+		{
+			ClientThread ct=(ClientThread)t;
+			String metric="THREAD"+ct.getThreadId();
+			long runtime=ct.getRunTime();
+			double throughput=0;
+			if (runtime>0)
 			{
-				exporter.close();
+				throughput=1000.0*((double)ct.getOpsDone())/((double)runtime);
 			}
+			exporter.write(metric, "Operations", ct.getOpsDone());
+			exporter.write(metric, "InitTime(ms)", ct.getInitTime());
+			exporter.write(metric, "RunTime(ms)", runtime);
+			exporter.write(metric, "Throughput(ops/sec)", throughput);
+			exporter.write(metric, "AverageLatency(ms)", ct.getAverageLatency());
+			exporter.write(metric, "MaxLatency(ms)", ct.getMaxLatency());
+
+			threadids[i]=ct.getThreadId();
+			rates[i]=throughput;
+			i++;
+		}
+
+		if (rates.length==0)
+		{
+			return;
+		}
+		String imbalance=StatusThread.describeImbalance(threadids,rates,imbalancethreshold);
+		double[] sorted=rates.clone();
+		double median=StatusThread.median(sorted);
+		exporter.write("THREADS", "MinThroughput(ops/sec)", sorted[0]);
+		exporter.write("THREADS", "MedianThroughput(ops/sec)", median);
+		exporter.write("THREADS", "MaxThroughput(ops/sec)", sorted[sorted.length-1]);
+		if (imbalance.length()>0)
+		{
+			System.err.println("Client threads were imbalanced: "+imbalance);
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
 	public static void main(String[] args)
 	{
-		String dbname;
 		Properties props=new Properties();
 		Properties fileprops=new Properties();
 		Client.Operation operation = Client.Operation.IS_TRANSACTION;
-		int threadcount=1;
-		int target=0;
 		boolean status=false;
 		String label="";
 
@@ -648,19 +554,6 @@ public class Client
 			System.exit(0);
 		}
 
-		//get number of threads, target and db
-		threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
-		dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
-		target=Integer.parseInt(props.getProperty("target","0"));
-		
-		//compute the target throughput
-		double targetperthreadperms=-1;
-		if (target>0)
-		{
-			double targetperthread=((double)target)/((double)threadcount);
-			targetperthreadperms=targetperthread/1000.0;
-		}	 
-
 		System.out.println("YCSB Client 0.1");
 		System.out.print("Command line:");
 		for (int i=0; i<args.length; i++)
@@ -668,6 +561,78 @@ public class Client
 			System.out.print(" "+args[i]);
 		}
 		System.out.println();
+
+		//choose a seed if none was given, so that any run can be replayed with the one it records
+		if (props.getProperty(Workload.SEED_PROPERTY)==null)
+		{
+			//53 bits, so that it survives the measurements, which are kept as doubles
+			props.setProperty(Workload.SEED_PROPERTY,Long.toString(new RandomStream().nextLong()>>>11));
+		}
+		System.out.println("Seed: "+props.getProperty(Workload.SEED_PROPERTY));
+
+		//set up measurements
+		Measurements.setProperties(props);
+
+		if (ParameterSweep.isEnabled(props))
+		{
+			new ParameterSweep(props,operation,status,label).run();
+			System.exit(0);
+		}
+
+		Workload workload=loadWorkload(props);
+
+		//run the workload
+
+		Run run=null;
+		Vector<MemoryMeasurementsExporter> iterations=null;
+		if (Iterations.getIterations(props)>1)
+		{
+			iterations=Iterations.run(props,workload,operation,status,label);
+		}
+		else
+		{
+			System.err.println("Starting test.");
+
+			run=runPhase(props,workload,operation,status,label);
+		}
+
+		try
+		{
+			workload.cleanup();
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+
+		try
+		{
+			if (iterations!=null)
+			{
+				exportMeasurements(props, iterations);
+			}
+			else
+			{
+				exportMeasurements(props, run);
+			}
+		} catch (IOException e)
+		{
+			System.err.println("Could not export measurements, error: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(-1);
+		}
+
+		System.exit(0);
+	}
+
+	/**
+	 * Load and initialize the workload class named by the properties. Exits if that fails.
+	 */
+	@SuppressWarnings("unchecked")
+	static Workload loadWorkload(Properties props)
+	{
 		System.err.println("Loading workload...");
 		
 		//show a warning message that creating the workload is taking a while
@@ -691,9 +656,6 @@ public class Client
 
 		warningthread.start();
 		
-		//set up measurements
-		Measurements.setProperties(props);
-		
 		//load the workload
 		ClassLoader classLoader = Client.class.getClassLoader();
 
@@ -725,48 +687,153 @@ public class Client
 		
 		warningthread.interrupt();
 
-		//run the workload
+		return workload;
+	}
+
+	/**
+	 * Run one phase of the workload: create the client threads, each with its own DB instance, let them 
+	 * initialize, then run them until the operations are done. Exits if the DB can't be created.
+	 * 
+	 * @param props the properties defining the experiment
+	 * @param workload the initialized workload
+	 * @param operation the phase to run
+	 * @param status true to show status during the run
+	 * @param label the label for the status output
+	 * @return what happened during the run, for exporting
+	 */
+	static Run runPhase(Properties props, Workload workload, Client.Operation operation, boolean status, String label)
+	{
+		//get number of threads, target and db
+		int threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
+		String dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
+		int target=Integer.parseInt(props.getProperty("target","0"));
+		
+		boolean autotune=ConcurrencyTuner.isEnabled(props);
+		//with autotune, every thread is told about the largest number of threads there may be
+		int workloadthreadcount=threadcount;
+		if (autotune)
+		{
+			if (props.getProperty("measurementtype","histogram").compareTo("histogram")!=0)
+			{
+				System.out.println("Autotune needs the histogram measurement type");
+				System.exit(0);
+			}
+			if (target>0)
+			{
+				System.err.println("Ignoring the target throughput, since the number of threads is tuned during the run");
+				target=0;
+			}
+			workloadthreadcount=Math.max(threadcount,ConcurrencyTuner.getMaxThreads(props));
+		}
 
-		System.err.println("Starting test.");
+		boolean fixedshares=Boolean.parseBoolean(props.getProperty(OperationBudget.FIXED_SHARES_PROPERTY,OperationBudget.FIXED_SHARES_PROPERTY_DEFAULT));
+		if ( (fixedshares) && (autotune) )
+		{
+			System.err.println("Ignoring fixed shares, since the number of threads is tuned during the run");
+			fixedshares=false;
+		}
 
-		int opcount = 0;
+		//compute the target throughput
+		double targetperthreadperms=-1;
+		if (target>0)
+		{
+			double targetperthread=((double)target)/((double)threadcount);
+			targetperthreadperms=targetperthread/1000.0;
+		}	 
+
+		long opcount = 0;
 		if (operation.equals(Client.Operation.IS_TRANSACTION))
 		{
-			opcount=Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
+			opcount=Long.parseLong(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
 		}
 		else if(operation.equals(Client.Operation.IS_INSERTION))
 		{
 			if (props.containsKey(INSERT_COUNT_PROPERTY))
 			{
-				opcount=Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
+				opcount=Long.parseLong(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
 			}
 			else
 			{
-				opcount=Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
+				opcount=Long.parseLong(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
 			}
 		} 
 
 		Vector<Thread> threads=new Vector<Thread>();
 
+		int chunksize=OperationBudget.chunkSize(props,opcount,threadcount);
+		OperationBudget budget=new OperationBudget(opcount,chunksize);
+
 		for (int threadid=0; threadid<threadcount; threadid++)
 		{
 			DB db=null;
 			try
 			{
-				db=DBFactory.newDB(dbname,props);
+				db=DBFactory.newDB(dbname,props,threadid);
 			}
 			catch (UnknownDBException e)
 			{
 				System.out.println("Unknown DB "+dbname);
 				System.exit(0);
 			}
+			if (db==null)
+			{
+				//DBFactory has printed why, e.g. the class couldn't be instantiated or the trace file couldn't be created
+				System.out.println("Could not create DB "+dbname);
+				System.exit(0);
+			}
 
-			Thread t=new ClientThread(db,operation,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
+			OperationBudget threadbudget=budget;
+			if (fixedshares)
+			{
+				threadbudget=OperationBudget.fixedShare(opcount,threadid,threadcount,chunksize);
+			}
+
+			Thread t=new ClientThread(db,operation,workload,threadid,workloadthreadcount,props,threadbudget,targetperthreadperms);
 
 			threads.add(t);
 			//t.start();
 		}
 
+		//all the threads set up their DB and workload state in parallel, then start issuing operations together
+		CyclicBarrier startbarrier=new CyclicBarrier(threads.size()+1);
+		for (Thread t : threads)
+		{
+			((ClientThread)t).setStartBarrier(startbarrier);
+		}
+
+		long initst=System.currentTimeMillis();
+
+		for (Thread t : threads)
+		{
+			t.start();
+		}
+
+		awaitStart(startbarrier,threads);
+
+		long st=System.currentTimeMillis();
+
+		Run run=new Run();
+		run.opcount=opcount;
+		run.inittime=st-initst;
+		run.threads=threads;
+		run.workload=workload;
+
+		ClientMonitor monitor=null;
+		if (ClientMonitor.isEnabled(props))
+		{
+			monitor=new ClientMonitor(props,run,st,target,autotune);
+			monitor.register();
+		}
+
+		if (HostSampler.isEnabled(props))
+		{
+			run.sampler=new HostSampler(props,st);
+			run.sampler.start();
+		}
+
+		CheckpointThread checkpoints=new CheckpointThread(props,run,st);
+		checkpoints.begin();
+
 		StatusThread statusthread=null;
 
 		if (status)
@@ -781,22 +848,33 @@ public class Client
 			{
 				statusType = StatusThread.StatusType.STDOUT_TABDELIMITED;
 			}
-			statusthread=new StatusThread(threads,label,statusType);
+			double imbalancethreshold=Double.parseDouble(props.getProperty(StatusThread.IMBALANCE_THRESHOLD_PROPERTY,StatusThread.IMBALANCE_THRESHOLD_PROPERTY_DEFAULT));
+			statusthread=new StatusThread(threads,label,statusType,imbalancethreshold);
 			statusthread.start();
 		}
 
-		long st=System.currentTimeMillis();
-
-		for (Thread t : threads)
+		ConcurrencyTuner tuner=null;
+		if (autotune)
 		{
-			t.start();
+			tuner=new ConcurrencyTuner(threads,dbname,props,operation,workload,budget);
+			tuner.setMonitor(monitor);
+			run.tuner=tuner;
+			tuner.start();
+			try
+			{
+				tuner.join();
+			}
+			catch (InterruptedException e)
+			{
+			}
 		}
 
-		for (Thread t : threads)
+		//the tuner may have added threads, so don't use an iterator here
+		for (int i=0; i<threads.size(); i++)
 		{
 			try
 			{
-				t.join();
+				threads.get(i).join();
 			}
 			catch (InterruptedException e)
 			{
@@ -805,32 +883,32 @@ public class Client
 
 		long en=System.currentTimeMillis();
 
+		try
+		{
+			TraceDB.closeWriters();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not close the trace, error: "+e.getMessage());
+		}
+
 		if (status)
 		{
 			statusthread.interrupt();
 		}
 
-		try
+		if (monitor!=null)
 		{
-			workload.cleanup();
+			monitor.unregister();
 		}
-		catch (WorkloadException e)
+
+		if (run.sampler!=null)
 		{
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			System.exit(0);
+			run.sampler.end();
 		}
 
-			try
-			{
-				exportMeasurements(props, opcount, en - st);
-			} catch (IOException e)
-			{
-				System.err.println("Could not export measurements, error: " + e.getMessage());
-				e.printStackTrace();
-				System.exit(-1);
-			}
-
-		System.exit(0);
+		run.runtime=en-st;
+		checkpoints.end(run);
+		return run;
 	}
 }
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Vector;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MeasurementsMonitor;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Exposes a run through JMX while it is going on, so that it can be watched and steered without restarting
+ * it: the target throughput can be changed, the run can be paused and resumed, and the measurements can be
+ * reset or exported. The MBeans are registered with the platform MBean server, so they can be reached with
+ * jconsole, or remotely by starting the JVM with the usual com.sun.management.jmxremote properties:
+ * <UL>
+ * <LI>com.yahoo.ycsb:type=Client, see ClientMonitorMBean
+ * <LI>com.yahoo.ycsb:type=Measurements, the current measurements, see MeasurementsMonitor
+ * <LI>com.yahoo.ycsb:type=ClientThread,id=<i>n</i>, the statistics of each client thread, see ThreadStatisticsMBean
+ * </UL>
+ *
+ * Properties to control the monitor:
+ * <UL>
+ * <LI><b>jmx</b>: register the MBeans for each run (default: false)
+ * </UL>
+ */
+public class ClientMonitor implements ClientMonitorMBean
+{
+	public static final String JMX_PROPERTY="jmx";
+	public static final String JMX_PROPERTY_DEFAULT="false";
+
+	public static final String DOMAIN="com.yahoo.ycsb";
+
+	Properties _props;
+	Client.Run _run;
+	long _start;
+	double _target;
+	boolean _autotune;
+	boolean _paused;
+
+	HashSet<ObjectName> _registered;
+
+	/**
+	 * Create a monitor for a run.
+	 *
+	 * @param props the properties defining the experiment
+	 * @param run the run; its threads may still be running
+	 * @param start the time the run started
+	 * @param target the initial target throughput in ops/sec, 0 for none
+	 * @param autotune true if the concurrency tuner is used, in which case the target can't be set
+	 */
+	ClientMonitor(Properties props, Client.Run run, long start, double target, boolean autotune)
+	{
+		_props=props;
+		_run=run;
+		_start=start;
+		_target=target;
+		_autotune=autotune;
+		_registered=new HashSet<ObjectName>();
+	}
+
+	public static boolean isEnabled(Properties props)
+	{
+		return Boolean.parseBoolean(props.getProperty(JMX_PROPERTY,JMX_PROPERTY_DEFAULT));
+	}
+
+	void register(Object mbean, String name)
+	{
+		try
+		{
+			ObjectName objectname=new ObjectName(DOMAIN+":"+name);
+			MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectname))
+			{
+				server.unregisterMBean(objectname);
+			}
+			server.registerMBean(mbean,objectname);
+			_registered.add(objectname);
+		}
+		catch (Exception e)
+		{
+			System.err.println("Could not register MBean "+name+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Register the MBeans of the client, the measurements and the threads.
+	 */
+	public synchronized void register()
+	{
+		register(this,"type=Client");
+		register(new MeasurementsMonitor(),"type=Measurements");
+		registerThreads();
+	}
+
+	/**
+	 * Register the MBeans of the threads that were added since the last call, and pause them if the run is paused.
+	 */
+	public synchronized void registerThreads()
+	{
+		for (Thread t : new Vector<Thread>(_run.threads))
+		{
+			ClientThread ct=(ClientThread)t;
+			String name="type=ClientThread,id="+ct.getThreadId();
+			try
+			{
+				if (!_registered.contains(new ObjectName(DOMAIN+":"+name)))
+				{
+					//threads added by the tuner while the run is paused start paused too
+					ct.setPaused(_paused);
+					register(new ThreadStatistics(ct),name);
+				}
+			}
+			catch (Exception e)
+			{
+				//can't happen, the name is well formed
+			}
+		}
+	}
+
+	/**
+	 * Unregister all the MBeans registered for the run.
+	 */
+	public synchronized void unregister()
+	{
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : _registered)
+		{
+			try
+			{
+				server.unregisterMBean(name);
+			}
+			catch (Exception e)
+			{
+				//already gone
+			}
+		}
+		_registered.clear();
+	}
+
+	public long getOperations()
+	{
+		return _run.getOpsDone();
+	}
+
+	public long getRequestedOperations()
+	{
+		return _run.opcount;
+	}
+
+	public long getElapsedTime()
+	{
+		return System.currentTimeMillis()-_start;
+	}
+
+	public double getThroughput()
+	{
+		long elapsed=getElapsedTime();
+		if (elapsed<=0)
+		{
+			return 0;
+		}
+		return 1000.0*((double)getOperations())/((double)elapsed);
+	}
+
+	public int getThreadCount()
+	{
+		return _run.threads.size();
+	}
+
+	public int getActiveThreads()
+	{
+		int active=0;
+		for (Thread t : new Vector<Thread>(_run.threads))
+		{
+			ClientThread ct=(ClientThread)t;
+			if ( (!ct.isParked()) && (!ct.isPaused()) && (t.getState()!=Thread.State.TERMINATED) )
+			{
+				active++;
+			}
+		}
+		return active;
+	}
+
+	public synchronized double getTarget()
+	{
+		return _target;
+	}
+
+	public synchronized void setTarget(double target)
+	{
+		if (_autotune)
+		{
+			throw new IllegalStateException("The target can't be set while the number of threads is tuned");
+		}
+		if (target<0)
+		{
+			throw new IllegalArgumentException("The target must be 0 (no limit) or more");
+		}
+
+		//every thread, parked or not, gets an equal share, as at the start of the run
+		Vector<Thread> threads=new Vector<Thread>(_run.threads);
+		double targetperthreadperms=-1;
+		if (target>0)
+		{
+			targetperthreadperms=target/threads.size()/1000.0;
+		}
+		for (Thread t : threads)
+		{
+			((ClientThread)t).setTarget(targetperthreadperms);
+		}
+		_target=target;
+		System.err.println("Target throughput set to "+(target>0 ? target+" ops/sec" : "no limit"));
+	}
+
+	public synchronized boolean isPaused()
+	{
+		return _paused;
+	}
+
+	public synchronized void pause()
+	{
+		for (Thread t : new Vector<Thread>(_run.threads))
+		{
+			((ClientThread)t).setPaused(true);
+		}
+		_paused=true;
+		System.err.println("Run paused");
+	}
+
+	public synchronized void resume()
+	{
+		for (Thread t : new Vector<Thread>(_run.threads))
+		{
+			((ClientThread)t).setPaused(false);
+		}
+		_paused=false;
+		System.err.println("Run resumed");
+	}
+
+	public void resetMeasurements()
+	{
+		Measurements.getMeasurements().reset();
+		System.err.println("Measurements reset");
+	}
+
+	public String exportMeasurements(String file)
+	{
+		if (file==null || file.length()==0)
+		{
+			return "Could not export measurements, no file given";
+		}
+		Client.Run run=_run.snapshot(getElapsedTime());
+
+		MeasurementsExporter exporter=null;
+		try
+		{
+			exporter=Client.openExporter(_props,file);
+			Client.writeMeasurements(exporter,_props,run);
+			exporter.close();
+		}
+		catch (Exception e)
+		{
+			return "Could not export measurements, error: "+e.getMessage();
+		}
+		return "Exported the measurements of the first "+run.runtime+" ms to "+file;
+	}
+}
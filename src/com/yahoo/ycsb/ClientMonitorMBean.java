@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * The JMX management interface of a running client: progress of the current run, and operations to steer it.
+ */
+public interface ClientMonitorMBean
+{
+	/**
+	 * Return the number of operations done so far in the current run.
+	 */
+	public long getOperations();
+
+	/**
+	 * Return the number of operations requested for the current run (0 for no limit).
+	 */
+	public long getRequestedOperations();
+
+	/**
+	 * Return the time in ms since the current run started.
+	 */
+	public long getElapsedTime();
+
+	/**
+	 * Return the average throughput in ops/sec since the current run started.
+	 */
+	public double getThroughput();
+
+	/**
+	 * Return the number of client threads.
+	 */
+	public int getThreadCount();
+
+	/**
+	 * Return the number of client threads issuing operations: not parked, paused or finished.
+	 */
+	public int getActiveThreads();
+
+	/**
+	 * Return the target throughput in ops/sec, or 0 if there is none.
+	 */
+	public double getTarget();
+
+	/**
+	 * Change the target throughput, in ops/sec, to be shared by the client threads (0 for no limit).
+	 */
+	public void setTarget(double target);
+
+	public boolean isPaused();
+
+	/**
+	 * Stop issuing operations until resume() is called.
+	 */
+	public void pause();
+
+	public void resume();
+
+	/**
+	 * Discard the latency measurements taken so far, and start measuring again from now.
+	 */
+	public void resetMeasurements();
+
+	/**
+	 * Export the measurements taken so far to the given file, using the configured exporter. The run goes on.
+	 *
+	 * @return a message saying what was done
+	 */
+	public String exportMeasurements(String file);
+}
@@ -0,0 +1,467 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import com.yahoo.ycsb.Client.Operation;
+import com.yahoo.ycsb.generator.RandomStream;
+
+/**
+ * A thread for executing transactions or data inserts to the database.
+ * 
+ * @author cooperb
+ *
+ */
+class ClientThread extends Thread
+{
+	/**
+	 * This thread's own random stream, so that threads starting together don't contend for one.
+	 */
+	Random _random=new RandomStream();
+
+	DB _db;
+	Client.Operation _operation;
+	Workload _workload;
+	OperationBudget _budget;
+	int _opsclaimed;
+	volatile double _target;
+
+	//the throttle aims for _target operations per ms since _throttlestart, when _throttleops operations had been done
+	long _throttlestart;
+	long _throttleops;
+	volatile boolean _rebase;
+
+	volatile long _opsdone;
+	int _threadid;
+	int _threadcount;
+	Object _workloadstate;
+	Properties _props;
+
+	//per-thread statistics, so that a slow or stalled thread can be told apart from the others; they are read
+	//by the status and monitoring threads while the run goes on
+	volatile long _totallatencyns;
+	volatile long _maxlatencyns;
+	volatile long _runstart;
+	volatile long _runend;
+	long _inittime;
+
+	//the time in ms spent parked or paused since the run started, and when the current wait began (0 if none)
+	volatile long _waittime;
+	volatile long _waitstart;
+
+	CyclicBarrier _startbarrier;
+
+	/**
+	 * How often, in ms, a parked thread checks whether it may resume.
+	 */
+	static final long PARK_INTERVAL=10;
+
+	volatile boolean _parked;
+	volatile boolean _paused;
+
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param db the DB implementation to use
+	 * @param operation true to do transactions, false to insert data
+	 * @param workload the workload to use
+	 * @param threadid the id of this thread 
+	 * @param threadcount the total number of threads 
+	 * @param props the properties defining the experiment
+	 * @param budget the operations (transactions or inserts) to do, shared with the other threads
+	 * @param targetperthreadperms target number of operations per thread per ms
+	 */
+	public ClientThread(DB db, Operation operation, Workload workload, int threadid, int threadcount, Properties props, OperationBudget budget, double targetperthreadperms)
+	{
+		//TODO: consider removing threadcount and threadid
+		_db=db;
+		_operation =operation;
+		_workload=workload;
+		_budget=budget;
+		_opsclaimed=0;
+		_opsdone=0;
+		_target=targetperthreadperms;
+		_threadid=threadid;
+		_threadcount=threadcount;
+		_props=props;
+		//System.out.println("Interval = "+interval);
+	}
+
+	public long getOpsDone()
+	{
+		return _opsdone;
+	}
+
+	public int getThreadId()
+	{
+		return _threadid;
+	}
+
+	/**
+	 * Make this thread wait on the given barrier once it has initialized its DB and workload state,
+	 * before issuing any operations. If no barrier is set, the thread starts as soon as it is initialized.
+	 */
+	public void setStartBarrier(CyclicBarrier startbarrier)
+	{
+		_startbarrier=startbarrier;
+	}
+
+	/**
+	 * Return the time in ms this thread spent initializing its DB and workload state.
+	 */
+	public long getInitTime()
+	{
+		return _inittime;
+	}
+
+	void awaitStart()
+	{
+		if (_startbarrier==null)
+		{
+			return;
+		}
+		try
+		{
+			_startbarrier.await();
+		}
+		catch (InterruptedException e)
+		{
+			//do nothing
+		}
+		catch (BrokenBarrierException e)
+		{
+			//do nothing
+		}
+	}
+
+	/**
+	 * Return the time in ms this thread spent issuing operations (so far, if it is still running). The time it
+	 * spent parked or paused is left out, so that a thread the concurrency tuner kept parked for most of the run
+	 * doesn't look slow.
+	 */
+	public long getRunTime()
+	{
+		if (_runstart==0)
+		{
+			return 0;
+		}
+		long now=System.currentTimeMillis();
+		long en=_runend;
+		if (en==0)
+		{
+			en=now;
+		}
+		long waited=_waittime;
+		long waitstart=_waitstart;
+		if (waitstart!=0)
+		{
+			waited+=now-waitstart;
+		}
+		return Math.max(0,en-_runstart-waited);
+	}
+
+	/**
+	 * Return the average latency in ms of the operations issued by this thread, as seen by the thread
+	 * (that is, including the time spent in the workload).
+	 */
+	public double getAverageLatency()
+	{
+		if (_opsdone==0)
+		{
+			return 0;
+		}
+		return ((double)_totallatencyns)/((double)_opsdone)/1000000.0;
+	}
+
+	/**
+	 * Return the maximum latency in ms of the operations issued by this thread.
+	 */
+	public double getMaxLatency()
+	{
+		return ((double)_maxlatencyns)/1000000.0;
+	}
+
+	/**
+	 * Park or unpark this thread. A parked thread stops issuing operations (keeping its DB instance) 
+	 * until it is unparked.
+	 */
+	public void setParked(boolean parked)
+	{
+		_parked=parked;
+	}
+
+	public boolean isParked()
+	{
+		return _parked;
+	}
+
+	/**
+	 * Pause or resume this thread. This works like parking, but is separate from it, so that pausing
+	 * the run does not interfere with the threads parked by the concurrency tuner.
+	 */
+	public void setPaused(boolean paused)
+	{
+		_paused=paused;
+	}
+
+	public boolean isPaused()
+	{
+		return _paused;
+	}
+
+	/**
+	 * Change the target number of operations per ms of this thread (0 or less for no limit). The throttle
+	 * starts over from the time of the change, rather than trying to make up for the past at the new rate.
+	 */
+	public void setTarget(double targetperthreadperms)
+	{
+		_target=targetperthreadperms;
+		_rebase=true;
+	}
+
+	public double getTarget()
+	{
+		return _target;
+	}
+
+	void waitWhileParked()
+	{
+		if ( (!_parked) && (!_paused) )
+		{
+			return;
+		}
+
+		//give the rest of our chunk back, so the running threads can do it
+		_budget.release(_opsclaimed);
+		_opsclaimed=0;
+
+		_waitstart=System.currentTimeMillis();
+		while ( (_parked) || (_paused) )
+		{
+			try
+			{
+				sleep(PARK_INTERVAL);
+			}
+			catch (InterruptedException e)
+			{
+				//do nothing
+			}
+		}
+		_waittime+=System.currentTimeMillis()-_waitstart;
+		_waitstart=0;
+
+		//don't try to catch up on the operations that were not done while waiting
+		_rebase=true;
+	}
+
+	/**
+	 * Wait as long as needed to keep to the target throughput.
+	 */
+	void throttle()
+	{
+		if (_rebase)
+		{
+			_rebase=false;
+			_throttlestart=System.currentTimeMillis();
+			_throttleops=_opsdone;
+		}
+
+		double target=_target;
+		if (target>0)
+		{
+			//this is more accurate than other throttling approaches we have tried,
+			//like sleeping for (1/target throughput)-operation latency,
+			//because it smooths timing inaccuracies (from sleep() taking an int, 
+			//current time in millis) over many operations
+			while (System.currentTimeMillis()-_throttlestart<((double)(_opsdone-_throttleops))/target)
+			{
+				try
+				{
+					sleep(1);
+				}
+				catch (InterruptedException e)
+				{
+					//do nothing
+				}
+			}
+		}
+	}
+
+	/**
+	 * Take one operation from the chunk this thread has claimed, claiming a new chunk from the 
+	 * shared budget when the current one is used up.
+	 * 
+	 * @return false once the budget is exhausted
+	 */
+	boolean claimOp()
+	{
+		waitWhileParked();
+		if (_opsclaimed==0)
+		{
+			_opsclaimed=_budget.claim();
+			if (_opsclaimed==0)
+			{
+				return false;
+			}
+		}
+		_opsclaimed--;
+		return true;
+	}
+
+	/**
+	 * Account for one completed operation that started at the given System.nanoTime().
+	 */
+	void opDone(long startns)
+	{
+		long latency=System.nanoTime()-startns;
+		_totallatencyns+=latency;
+		if (latency>_maxlatencyns)
+		{
+			_maxlatencyns=latency;
+		}
+		_opsdone++;
+	}
+
+	public void run()
+	{
+		long initst=System.currentTimeMillis();
+		try
+		{
+			try
+			{
+				_db.init();
+			}
+			catch (DBException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				return;
+			}
+
+			try
+			{
+				_workloadstate=_workload.initThread(_props,_threadid,_threadcount);
+			}
+			catch (WorkloadException e)
+			{
+				e.printStackTrace();
+				e.printStackTrace(System.out);
+				return;
+			}
+			_inittime=System.currentTimeMillis()-initst;
+		}
+		finally
+		{
+			//wait for the other threads to finish setting up, so that connection setup is not part of the measured run.
+			//a thread whose setup failed, however it failed, still arrives, so that it doesn't hold the others back
+			awaitStart();
+		}
+
+		//spread the thread operations out so they don't all hit the DB at the same time
+		try
+		{
+		   //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
+		   //and the sleep() doesn't make sense for granularities < 1 ms anyway
+		   if ( (_target>0) && (_target<=1.0) ) 
+		   {
+		      sleep(_random.nextInt((int)(1.0/_target)));
+		   }
+		}
+		catch (InterruptedException e)
+		{
+		   //do nothing
+		}
+		
+		_runstart=System.currentTimeMillis();
+		_throttlestart=_runstart;
+		_throttleops=0;
+		try
+		{
+			if (_operation.equals(Client.Operation.IS_TRANSACTION))
+			{
+				while (claimOp())
+				{
+					long opstart=System.nanoTime();
+
+					if (!_workload.doTransaction(_db,_workloadstate))
+					{
+						break;
+					}
+
+					opDone(opstart);
+					
+					throttle();
+				}
+			}
+			else if(_operation.equals(Client.Operation.IS_INSERTION))
+			{
+				while (claimOp())
+				{
+					long opstart=System.nanoTime();
+
+					if (!_workload.doInsert(_db,_workloadstate))
+					{
+						break;
+					}
+
+					opDone(opstart);
+
+					throttle();
+				}
+			}
+			else if(_operation.equals(Client.Operation.IS_TRUNCATION)) {
+					if(!_workload.doTruncation(_db)) {
+						throw new Exception("truncation attempt on database failed!");
+					}
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+		_runend=System.currentTimeMillis();
+
+		try
+		{
+			_workload.cleanupThread(_workloadstate);
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+		}
+
+		try
+		{
+			_db.cleanup();
+		}
+		catch (DBException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			return;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsReader;
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Compares the exported results of runs against a baseline, and exits with status 1 if the throughput
+ * dropped or a latency rose by more than a threshold, so that it can be used as a performance gate.
+ *
+ * Each result set is a file written by the JSON or text exporter, or a comma separated list of such
+ * files from repeated runs of the same configuration. The first result set is the baseline; each of
+ * the others is compared to it. Whether a change is significant is decided with Welch's t test, using
+ * either the repeated runs of a result set or, for a single file written with several iterations, the
+ * standard deviation it contains. A change past a threshold is only a regression if it is significant,
+ * or if its significance can't be tested because a result set has a single run and the change is too large to
+ * be noise: for a latency, more than one histogram bucket. A latency that was 0 in the baseline has no relative
+ * change, so any rise of more than one bucket counts as past the threshold.
+ */
+public class CompareResults
+{
+	public static final String THROUGHPUT_DROP_DEFAULT="5";
+	public static final String LATENCY_RISE_DEFAULT="10";
+
+	/**
+	 * The smallest latency rise, in ms, that can be told apart from noise without a significance test: the width
+	 * of a histogram bucket.
+	 */
+	public static final double LATENCY_MIN_RISE=1;
+
+	/**
+	 * The mean, standard deviation and number of runs of one measurement in a result set.
+	 */
+	static class Sample
+	{
+		double mean;
+		double stddev;
+		int n;
+	}
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.CompareResults [options] baseline result [result ...]");
+		System.out.println("Each result is an exported results file, or a comma separated list of files from repeated runs.");
+		System.out.println("Options:");
+		System.out.println("  -throughputdrop n: fail if the throughput drops by more than n percent (default: "+THROUGHPUT_DROP_DEFAULT+")");
+		System.out.println("  -latencyrise n: fail if the average latency or a latency percentile of an operation rises by more than n percent (default: "+LATENCY_RISE_DEFAULT+")");
+		System.out.println("Exits with status 1 if there is a regression, 2 if the results could not be read.");
+	}
+
+	/**
+	 * Read the files of a result set.
+	 */
+	static Vector<MemoryMeasurementsExporter> readResultSet(String arg) throws IOException
+	{
+		Vector<MemoryMeasurementsExporter> runs=new Vector<MemoryMeasurementsExporter>();
+		for (String file : arg.split(","))
+		{
+			runs.add(MeasurementsReader.read(file.trim()));
+		}
+		return runs;
+	}
+
+	/**
+	 * Return a measurement of a result set, or null if it is missing from any of its runs.
+	 */
+	static Sample getSample(Vector<MemoryMeasurementsExporter> runs, String metric, String measurement)
+	{
+		Sample s=new Sample();
+		if (runs.size()>1)
+		{
+			double[] values=Iterations.getValues(runs,metric,measurement);
+			if (values==null)
+			{
+				return null;
+			}
+			s.mean=Statistics.mean(values);
+			s.stddev=Statistics.stddev(values);
+			s.n=values.length;
+			return s;
+		}
+
+		MemoryMeasurementsExporter run=runs.get(0);
+		Double value=run.getValue(metric,measurement);
+		if (value==null)
+		{
+			return null;
+		}
+		s.mean=value;
+		s.n=1;
+
+		//a run with several iterations has the spread of each measurement
+		Double stddev=run.getValue(metric,measurement+Iterations.STDDEV_SUFFIX);
+		Double iterations=run.getValue("ITERATIONS","Iterations");
+		if ( (stddev!=null) && (iterations!=null) )
+		{
+			s.stddev=stddev;
+			s.n=iterations.intValue();
+		}
+		return s;
+	}
+
+	/**
+	 * Return the metrics of the operations measured in a run.
+	 */
+	static Vector<String> getOperations(MemoryMeasurementsExporter run)
+	{
+		Vector<String> ops=new Vector<String>();
+		for (String metric : run.getMetrics())
+		{
+			if ( (run.getValue(metric,"AverageLatency(ms)")!=null) && (!metric.startsWith("THREAD")) && (!metric.startsWith("AUTOTUNE")) && (!metric.startsWith("ITERATION")) )
+			{
+				ops.add(metric);
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Return the latency measurements of an operation that are compared: the average and the percentiles.
+	 * The minimum and maximum depend on single operations, so they are too noisy to gate on.
+	 */
+	static Vector<String> getLatencyMeasurements(MemoryMeasurementsExporter run, String op)
+	{
+		Vector<String> ret=new Vector<String>();
+		for (String measurement : run.getMeasurements(op))
+		{
+			if ( (measurement.equals("AverageLatency(ms)")) || (measurement.endsWith("PercentileLatency(ms)")) )
+			{
+				ret.add(measurement);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Compare one measurement, print the result, and return true if it is a regression.
+	 *
+	 * @param higherisbetter true for throughput, false for latency
+	 * @param threshold the change in percent past which a change for the worse is a regression
+	 * @param minchange the change for the worse, in the measurement's unit, that a regression must exceed when
+	 * its significance can't be tested or the baseline is 0
+	 */
+	static boolean compare(Vector<MemoryMeasurementsExporter> baseline, Vector<MemoryMeasurementsExporter> result, String metric, String measurement, boolean higherisbetter, double threshold, double minchange)
+	{
+		DecimalFormat d=new DecimalFormat("#.##");
+
+		Sample b=getSample(baseline,metric,measurement);
+		Sample r=getSample(result,metric,measurement);
+		String name="["+metric+"] "+measurement;
+		if ( (b==null) || (r==null) )
+		{
+			System.out.println(name+": "+(b==null ? "not in baseline" : "not in result"));
+			return false;
+		}
+
+		double change=r.mean-b.mean;
+		double worsechange=higherisbetter ? -change : change;
+		double delta=(b.mean==0) ? 0 : 100.0*change/b.mean;
+		boolean pastthreshold;
+		if (b.mean==0)
+		{
+			pastthreshold=(worsechange>minchange);
+		}
+		else
+		{
+			pastthreshold=((higherisbetter ? -delta : delta)>threshold);
+		}
+
+		String significance;
+		boolean significant;
+		if ( (b.n<2) || (r.n<2) )
+		{
+			//without a test, only a change too large to be noise counts
+			significant=(worsechange>minchange);
+			significance=significant ? "significance unknown" : "inconclusive";
+		}
+		else
+		{
+			significant=Statistics.differ(b.mean,b.stddev,b.n,r.mean,r.stddev,r.n);
+			significance=significant ? "significant" : "not significant";
+		}
+
+		boolean regression=(significant) && (pastthreshold);
+		String relative=(b.mean==0) ? "from 0" : (delta>=0 ? "+" : "")+d.format(delta)+"%";
+		System.out.println(name+": "+d.format(b.mean)+" -> "+d.format(r.mean)+" ("+relative+", "+significance+")"+(regression ? " REGRESSION" : ""));
+		return regression;
+	}
+
+	public static void main(String[] args)
+	{
+		double throughputdrop=Double.parseDouble(THROUGHPUT_DROP_DEFAULT);
+		double latencyrise=Double.parseDouble(LATENCY_RISE_DEFAULT);
+
+		int argindex=0;
+		while ( (argindex<args.length) && (args[argindex].startsWith("-")) )
+		{
+			if ( (args[argindex].compareTo("-throughputdrop")==0) && (argindex+1<args.length) )
+			{
+				throughputdrop=Double.parseDouble(args[argindex+1]);
+				argindex+=2;
+			}
+			else if ( (args[argindex].compareTo("-latencyrise")==0) && (argindex+1<args.length) )
+			{
+				latencyrise=Double.parseDouble(args[argindex+1]);
+				argindex+=2;
+			}
+			else
+			{
+				usageMessage();
+				System.exit(2);
+			}
+		}
+
+		if (args.length-argindex<2)
+		{
+			usageMessage();
+			System.exit(2);
+		}
+
+		Vector<Vector<MemoryMeasurementsExporter>> sets=new Vector<Vector<MemoryMeasurementsExporter>>();
+		for (int i=argindex; i<args.length; i++)
+		{
+			try
+			{
+				sets.add(readResultSet(args[i]));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not read results "+args[i]+", error: "+e.getMessage());
+				System.exit(2);
+			}
+		}
+
+		Vector<MemoryMeasurementsExporter> baseline=sets.get(0);
+		MemoryMeasurementsExporter first=baseline.get(0);
+		System.out.println("Baseline: "+args[argindex]);
+
+		int regressions=0;
+		for (int i=1; i<sets.size(); i++)
+		{
+			System.out.println();
+			System.out.println("Result: "+args[argindex+i]);
+
+			Vector<MemoryMeasurementsExporter> result=sets.get(i);
+			if (compare(baseline,result,"OVERALL","Throughput(ops/sec)",true,throughputdrop,0))
+			{
+				regressions++;
+			}
+			for (String op : getOperations(first))
+			{
+				for (String measurement : getLatencyMeasurements(first,op))
+				{
+					if (compare(baseline,result,op,measurement,false,latencyrise,LATENCY_MIN_RISE))
+					{
+						regressions++;
+					}
+				}
+			}
+		}
+
+		System.out.println();
+		if (regressions>0)
+		{
+			System.out.println(regressions+" regression(s) found.");
+			System.exit(1);
+		}
+		System.out.println("No regressions found.");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurementHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A thread that searches for the number of client threads giving the most throughput while a latency
+ * percentile stays within a target. It uses additive increase, multiplicative decrease: after each
+ * window of the run, if the latency percentile of the window was within the target it adds a few threads,
+ * otherwise it parks a fraction of them. Threads are created (with their own DB instance) as they are
+ * needed, and parked threads keep their DB instance so they can be resumed cheaply.
+ *
+ * Properties to control the tuner:
+ * <UL>
+ * <LI><b>autotune</b>: adjust the number of threads during the run (default: false). The run starts with threadcount threads.
+ * <LI><b>autotune.maxthreads</b>: the most threads to use (default: 64)
+ * <LI><b>autotune.interval</b>: the length in ms of the window over which throughput and latency are measured before each adjustment (default: 10000)
+ * <LI><b>autotune.step</b>: the number of threads to add when the latency target is met (default: 1)
+ * <LI><b>autotune.decrease</b>: the fraction of the threads to keep when the latency target is missed (default: 0.5)
+ * <LI><b>autotune.latencytarget</b>: the latency target in ms (default: 100)
+ * <LI><b>autotune.percentile</b>: the latency percentile the target applies to (default: 99)
+ * <LI><b>autotune.operation</b>: the operation whose latency is checked, e.g. READ (default: all operations together)
+ * </UL>
+ */
+class ConcurrencyTuner extends Thread
+{
+	public static final String AUTOTUNE_PROPERTY="autotune";
+	public static final String AUTOTUNE_PROPERTY_DEFAULT="false";
+
+	public static final String MAX_THREADS_PROPERTY="autotune.maxthreads";
+	public static final String MAX_THREADS_PROPERTY_DEFAULT="64";
+
+	public static final String INTERVAL_PROPERTY="autotune.interval";
+	public static final String INTERVAL_PROPERTY_DEFAULT="10000";
+
+	public static final String STEP_PROPERTY="autotune.step";
+	public static final String STEP_PROPERTY_DEFAULT="1";
+
+	public static final String DECREASE_PROPERTY="autotune.decrease";
+	public static final String DECREASE_PROPERTY_DEFAULT="0.5";
+
+	public static final String LATENCY_TARGET_PROPERTY="autotune.latencytarget";
+	public static final String LATENCY_TARGET_PROPERTY_DEFAULT="100";
+
+	public static final String PERCENTILE_PROPERTY="autotune.percentile";
+	public static final String PERCENTILE_PROPERTY_DEFAULT="99";
+
+	public static final String OPERATION_PROPERTY="autotune.operation";
+
+	/**
+	 * What was measured while running with one particular number of threads.
+	 */
+	static class Level
+	{
+		int windows;
+		int violations;
+		double totalthroughput;
+		long totallatency;
+
+		double getThroughput()
+		{
+			return totalthroughput/windows;
+		}
+
+		double getLatency()
+		{
+			return ((double)totallatency)/windows;
+		}
+	}
+
+	Vector<Thread> _threads;
+	String _dbname;
+	Properties _props;
+	Client.Operation _operation;
+	Workload _workload;
+	OperationBudget _budget;
+
+	int _maxthreads;
+	long _interval;
+	int _step;
+	double _decrease;
+	int _latencytarget;
+	double _percentile;
+	String _measuredop;
+
+	ClientMonitor _monitor;
+
+	int _active;
+	TreeMap<Integer,Level> _levels;
+
+	int _bestthreads;
+	double _bestthroughput;
+	int _bestlatency;
+
+	/**
+	 * Create a tuner for the given threads, which must all have been created with maxthreads as their thread count.
+	 *
+	 * @param threads the client threads; the tuner adds new threads to the end of this list
+	 * @param dbname the DB class to instantiate for new threads
+	 * @param props the properties defining the experiment
+	 * @param operation the phase being run
+	 * @param workload the workload the threads are running
+	 * @param budget the operation budget the threads share
+	 */
+	public ConcurrencyTuner(Vector<Thread> threads, String dbname, Properties props, Client.Operation operation, Workload workload, OperationBudget budget)
+	{
+		_threads=threads;
+		_dbname=dbname;
+		_props=props;
+		_operation=operation;
+		_workload=workload;
+		_budget=budget;
+
+		_maxthreads=getMaxThreads(props);
+		_interval=Long.parseLong(props.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT));
+		_step=Integer.parseInt(props.getProperty(STEP_PROPERTY,STEP_PROPERTY_DEFAULT));
+		_decrease=Double.parseDouble(props.getProperty(DECREASE_PROPERTY,DECREASE_PROPERTY_DEFAULT));
+		_latencytarget=Integer.parseInt(props.getProperty(LATENCY_TARGET_PROPERTY,LATENCY_TARGET_PROPERTY_DEFAULT));
+		_percentile=Double.parseDouble(props.getProperty(PERCENTILE_PROPERTY,PERCENTILE_PROPERTY_DEFAULT));
+		_measuredop=props.getProperty(OPERATION_PROPERTY);
+
+		_active=threads.size();
+		_levels=new TreeMap<Integer,Level>();
+		_bestthreads=-1;
+	}
+
+	/**
+	 * Set the monitor to tell about the threads the tuner creates, or null if there is none.
+	 */
+	public void setMonitor(ClientMonitor monitor)
+	{
+		_monitor=monitor;
+	}
+
+	public static boolean isEnabled(Properties props)
+	{
+		return Boolean.parseBoolean(props.getProperty(AUTOTUNE_PROPERTY,AUTOTUNE_PROPERTY_DEFAULT));
+	}
+
+	public static int getMaxThreads(Properties props)
+	{
+		return Integer.parseInt(props.getProperty(MAX_THREADS_PROPERTY,MAX_THREADS_PROPERTY_DEFAULT));
+	}
+
+	long getOpsDone()
+	{
+		long ops=0;
+		for (Thread t : new Vector<Thread>(_threads))
+		{
+			ops+=((ClientThread)t).getOpsDone();
+		}
+		return ops;
+	}
+
+	/**
+	 * Return true if any of the unparked threads is still running.
+	 */
+	boolean anyActive()
+	{
+		for (Thread t : new Vector<Thread>(_threads))
+		{
+			if ( (!((ClientThread)t).isParked()) && (t.getState()!=Thread.State.TERMINATED) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Unpark or create threads, or park them, so that exactly count threads are issuing operations.
+	 */
+	void setActive(int count)
+	{
+		while (_threads.size()<count)
+		{
+			DB db=null;
+			try
+			{
+				db=DBFactory.newDB(_dbname,_props,_threads.size());
+			}
+			catch (UnknownDBException e)
+			{
+				//can't happen, the initial threads were created the same way
+			}
+			if (db==null)
+			{
+				System.err.println("Autotune: could not create another DB instance, staying at "+_threads.size()+" threads");
+				count=_threads.size();
+				break;
+			}
+
+			ClientThread t=new ClientThread(db,_operation,_workload,_threads.size(),_maxthreads,_props,_budget,-1);
+			t.setParked(true);
+			_threads.add(t);
+			t.start();
+		}
+
+		for (int i=0; i<_threads.size(); i++)
+		{
+			((ClientThread)_threads.get(i)).setParked(i>=count);
+		}
+		_active=count;
+
+		if (_monitor!=null)
+		{
+			_monitor.registerThreads();
+		}
+	}
+
+	/**
+	 * Run and adjust the number of threads after each window, until all the operations have been claimed.
+	 */
+	public void run()
+	{
+		DecimalFormat d = new DecimalFormat("#.##");
+
+		long lasttime=System.currentTimeMillis();
+		long lastops=getOpsDone();
+		long[] lasthistogram=Measurements.getMeasurements().getHistogramSnapshot(_measuredop);
+
+		while ( (!_budget.isExhausted()) && (anyActive()) )
+		{
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+
+			if (_budget.isExhausted())
+			{
+				//the threads are winding down, so this window says nothing about the number of threads
+				break;
+			}
+
+			long now=System.currentTimeMillis();
+			long ops=getOpsDone();
+			long[] histogram=Measurements.getMeasurements().getHistogramSnapshot(_measuredop);
+
+			if ( (histogram==null) || (now<=lasttime) )
+			{
+				//nothing measured yet
+				continue;
+			}
+
+			long[] window=histogram.clone();
+			boolean reset=false;
+			if (lasthistogram!=null)
+			{
+				reset=(window.length!=lasthistogram.length);
+				for (int i=0; (!reset) && (i<window.length); i++)
+				{
+					window[i]-=lasthistogram[i];
+					reset=(window[i]<0);
+				}
+			}
+
+			if (reset)
+			{
+				//the measurements were reset (over JMX) during the window, so it can't be told apart from what came
+				//before: start again from this snapshot, and judge the next window
+				lasttime=now;
+				lastops=ops;
+				lasthistogram=histogram;
+				continue;
+			}
+
+			double throughput=1000.0*((double)(ops-lastops))/((double)(now-lasttime));
+			int latency=OneMeasurementHistogram.percentile(window,_percentile);
+
+			lasttime=now;
+			lastops=ops;
+			lasthistogram=histogram;
+
+			if (latency<0)
+			{
+				continue;
+			}
+
+			boolean met=(latency<=_latencytarget);
+
+			Level level=_levels.get(_active);
+			if (level==null)
+			{
+				level=new Level();
+				_levels.put(_active,level);
+			}
+			level.windows++;
+			level.totalthroughput+=throughput;
+			level.totallatency+=latency;
+			if (!met)
+			{
+				level.violations++;
+			}
+
+			if ( (met) && (throughput>_bestthroughput) )
+			{
+				_bestthreads=_active;
+				_bestthroughput=throughput;
+				_bestlatency=latency;
+			}
+
+			int next;
+			if (met)
+			{
+				next=Math.min(_maxthreads,_active+_step);
+			}
+			else
+			{
+				next=Math.max(1,(int)(_active*_decrease));
+			}
+
+			System.err.println("Autotune: "+_active+" threads, "+d.format(throughput)+" ops/sec, "+d.format(_percentile)+"th percentile latency "+latency+" ms"+(met ? "" : " (over target)")+" -> "+next+" threads");
+
+			if (next!=_active)
+			{
+				setActive(next);
+			}
+		}
+
+		//let the parked threads see that the budget is exhausted, so they can finish
+		for (Thread t : new Vector<Thread>(_threads))
+		{
+			((ClientThread)t).setParked(false);
+		}
+	}
+
+	/**
+	 * Export the best number of threads found, and the throughput and latency measured at each number of threads tried.
+	 */
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		DecimalFormat d = new DecimalFormat("#.##");
+		String latencyname=d.format(_percentile)+"thPercentileLatency(ms)";
+
+		exporter.write("AUTOTUNE", "LatencyTarget(ms)", _latencytarget);
+		exporter.write("AUTOTUNE", "BestThreadCount", _bestthreads);
+		if (_bestthreads>0)
+		{
+			exporter.write("AUTOTUNE", "BestThroughput(ops/sec)", _bestthroughput);
+			exporter.write("AUTOTUNE", "Best"+latencyname, _bestlatency);
+		}
+
+		for (Integer threads : _levels.keySet())
+		{
+			Level level=_levels.get(threads);
+			String metric="AUTOTUNE "+threads+" THREADS";
+			String[] measurements={"Windows","Throughput(ops/sec)",latencyname,"WindowsOverTarget"};
+			double[] values={level.windows,level.getThroughput(),level.getLatency(),level.violations};
+			exporter.writeRow(metric, measurements, values);
+		}
+	}
+}
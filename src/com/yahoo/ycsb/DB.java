@@ -43,6 +43,12 @@ import java.util.Vector;
  */
 public abstract class DB
 {
+	/**
+	 * The property holding the id of the client thread a DB instance belongs to, set by the client on each
+	 * instance's own copy of the properties.
+	 */
+	public static final String THREAD_ID_PROPERTY="threadid";
+
 	/**
 	 * Properties for configuring this DB.
 	 */
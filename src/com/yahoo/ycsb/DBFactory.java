@@ -17,10 +17,13 @@
 
 package com.yahoo.ycsb;
 
+import java.io.IOException;
+import java.util.Enumeration;
 import java.util.Properties;
 
 /**
- * Creates a DB layer by dynamically classloading the specified DB class.
+ * Creates a DB layer by dynamically classloading the specified DB class, wrapped to measure its operations and, if
+ * the trace.file property is set, to record them.
  */
 public class DBFactory
 {
@@ -46,7 +49,41 @@ public class DBFactory
 	 
 	 ret.setProperties(properties);
 
-	 return new DBWrapper(ret);
+	 DB db=new DBWrapper(ret);
+
+	 //record the operations, if asked to
+	 String tracefile=properties.getProperty(TraceDB.TRACE_FILE_PROPERTY);
+	 if (tracefile!=null)
+	 {
+	    try
+	    {
+	       db=new TraceDB(db,TraceDB.getWriter(tracefile));
+	    }
+	    catch (IOException e)
+	    {
+	       e.printStackTrace();
+	       return null;
+	    }
+	 }
+
+	 return db;
+      }
+
+	/**
+	 * Create the DB layer of a client thread, with its own copy of the properties, in which DB.THREAD_ID_PROPERTY
+	 * is the thread's id.
+	 */
+	public static DB newDB(String dbname, Properties properties, int threadid) throws UnknownDBException
+      {
+	 Properties p=new Properties();
+	 for (Enumeration<?> e=properties.propertyNames(); e.hasMoreElements(); )
+	 {
+	    String prop=(String)e.nextElement();
+	    p.setProperty(prop,properties.getProperty(prop));
+	 }
+	 p.setProperty(DB.THREAD_ID_PROPERTY,Integer.toString(threadid));
+
+	 return newDB(dbname,p);
       }
       
 }
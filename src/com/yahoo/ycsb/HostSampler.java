@@ -0,0 +1,575 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A thread that samples the resource usage of the client host from /proc (Linux only) during the run, so
+ * that a client that is itself the bottleneck can be told apart from a slow server without running sar
+ * next to the benchmark. Each interval it records the CPU used by the client process and by the whole host,
+ * the context switches of the client process, the load average, disk throughput and utilization, and the
+ * throughput of each network interface. The intervals are exported as the HOST time series, next to the
+ * time series of the operations, with a summary of the run.
+ *
+ * The host is reported as saturated when in more than half of the intervals its CPU, or the traffic on a
+ * network interface relative to the interface's speed, was above the saturation threshold.
+ *
+ * Properties to control the sampler:
+ * <UL>
+ * <LI><b>hoststats</b>: sample the resource usage of the host (default: false)
+ * <LI><b>hoststats.interval</b>: the time in ms between samples (default: 10000, the status interval)
+ * <LI><b>hoststats.saturation</b>: the fraction of the capacity of the CPU or of a network interface above which it counts as saturated (default: 0.9)
+ * <LI><b>hoststats.linkspeed</b>: the speed of the network interfaces in Mbit/s (default: read from /sys/class/net; without it network saturation isn't checked)
+ * </UL>
+ */
+class HostSampler extends Thread
+{
+	public static final String HOST_STATS_PROPERTY="hoststats";
+	public static final String HOST_STATS_PROPERTY_DEFAULT="false";
+
+	public static final String INTERVAL_PROPERTY="hoststats.interval";
+	public static final String INTERVAL_PROPERTY_DEFAULT=Long.toString(StatusThread.sleeptime);
+
+	public static final String SATURATION_PROPERTY="hoststats.saturation";
+	public static final String SATURATION_PROPERTY_DEFAULT="0.9";
+
+	public static final String LINK_SPEED_PROPERTY="hoststats.linkspeed";
+
+	/**
+	 * The unit of the CPU times in /proc (USER_HZ), which is 100 on all the usual Linux platforms.
+	 */
+	public static final double CLOCK_TICKS_PER_SECOND=100;
+
+	public static final String PROCESS_CPU="ProcessCPU(%)";
+	public static final String HOST_CPU="HostCPU(%)";
+	public static final String CONTEXT_SWITCHES="ContextSwitches/sec";
+	public static final String LOAD_AVERAGE="LoadAverage";
+	public static final String DISK_READ="DiskReadKB/sec";
+	public static final String DISK_WRITE="DiskWriteKB/sec";
+	public static final String DISK_BUSY="DiskBusy(%)";
+
+	/**
+	 * The counters read from /proc at one point in time.
+	 */
+	static class Counters
+	{
+		long time;
+		long processticks;
+		long hostbusyticks;
+		long hostticks;
+		long contextswitches;
+		double loadaverage;
+		/**
+		 * Bytes received and sent, by interface.
+		 */
+		LinkedHashMap<String,long[]> net=new LinkedHashMap<String,long[]>();
+		/**
+		 * Sectors read, sectors written and ms spent doing I/O, by disk.
+		 */
+		LinkedHashMap<String,long[]> disks=new LinkedHashMap<String,long[]>();
+	}
+
+	long _start;
+	long _interval;
+	double _saturation;
+	int _cpus;
+	/**
+	 * The speed of each network interface in Mbit/s, for those whose speed is known.
+	 */
+	LinkedHashMap<String,Double> _linkspeeds=new LinkedHashMap<String,Double>();
+
+	Counters _last;
+
+	/**
+	 * The samples taken so far, by the time since the start of the run of the start of their interval.
+	 */
+	LinkedHashMap<Long,LinkedHashMap<String,Double>> _samples=new LinkedHashMap<Long,LinkedHashMap<String,Double>>();
+
+	/**
+	 * Return true if host sampling was requested and /proc can be read.
+	 */
+	static boolean isEnabled(Properties props)
+	{
+		if (!Boolean.parseBoolean(props.getProperty(HOST_STATS_PROPERTY,HOST_STATS_PROPERTY_DEFAULT)))
+		{
+			return false;
+		}
+		if (!new File("/proc/self/stat").canRead())
+		{
+			System.err.println("Host statistics need /proc, which this system doesn't have; not sampling the host");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param props the properties defining the experiment
+	 * @param start the time the run started
+	 */
+	HostSampler(Properties props, long start)
+	{
+		super("hostsampler");
+		setDaemon(true);
+		_start=start;
+		_interval=Long.parseLong(props.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT));
+		_saturation=Double.parseDouble(props.getProperty(SATURATION_PROPERTY,SATURATION_PROPERTY_DEFAULT));
+		_cpus=Runtime.getRuntime().availableProcessors();
+
+		String linkspeed=props.getProperty(LINK_SPEED_PROPERTY);
+		try
+		{
+			_last=read();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read host statistics, error: "+e.getMessage());
+		}
+		if (_last!=null)
+		{
+			for (String iface : _last.net.keySet())
+			{
+				double speed=(linkspeed!=null) ? Double.parseDouble(linkspeed) : readLinkSpeed(iface);
+				if (speed>0)
+				{
+					_linkspeeds.put(iface,speed);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the speed of a network interface in Mbit/s, or -1 if it isn't known (as for virtual interfaces).
+	 */
+	static double readLinkSpeed(String iface)
+	{
+		try
+		{
+			String speed=readLine("/sys/class/net/"+iface+"/speed");
+			return speed==null ? -1 : Double.parseDouble(speed.trim());
+		}
+		catch (IOException e)
+		{
+			return -1;
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	static String readLine(String file) throws IOException
+	{
+		BufferedReader r=new BufferedReader(new FileReader(file));
+		try
+		{
+			return r.readLine();
+		}
+		finally
+		{
+			r.close();
+		}
+	}
+
+	/**
+	 * Read the counters of the client process and the host from /proc.
+	 */
+	static Counters read() throws IOException
+	{
+		Counters c=new Counters();
+		c.time=System.currentTimeMillis();
+
+		//the fields after the command name, which is in parentheses and may contain spaces; utime and stime are the 14th and 15th fields
+		String stat=readLine("/proc/self/stat");
+		String[] fields=stat.substring(stat.lastIndexOf(')')+2).split(" ");
+		c.processticks=Long.parseLong(fields[11])+Long.parseLong(fields[12]);
+
+		BufferedReader r=new BufferedReader(new FileReader("/proc/stat"));
+		try
+		{
+			String line;
+			while ((line=r.readLine())!=null)
+			{
+				if (line.startsWith("cpu "))
+				{
+					//user nice system idle iowait irq softirq steal ...
+					String[] ticks=line.substring(4).trim().split("\\s+");
+					for (int i=0; i<ticks.length; i++)
+					{
+						long t=Long.parseLong(ticks[i]);
+						//guest time is already counted in user time
+						if (i<8)
+						{
+							c.hostticks+=t;
+							if ( (i!=3) && (i!=4) )
+							{
+								c.hostbusyticks+=t;
+							}
+						}
+					}
+				}
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+
+		//the context switches of the process are the sum of those of its threads
+		File[] tasks=new File("/proc/self/task").listFiles();
+		if (tasks!=null)
+		{
+			for (File task : tasks)
+			{
+				try
+				{
+					r=new BufferedReader(new FileReader(new File(task,"status")));
+				}
+				catch (IOException e)
+				{
+					//the thread has exited
+					continue;
+				}
+				try
+				{
+					String line;
+					while ((line=r.readLine())!=null)
+					{
+						if (line.indexOf("ctxt_switches:")>=0)
+						{
+							c.contextswitches+=Long.parseLong(line.substring(line.indexOf(':')+1).trim());
+						}
+					}
+				}
+				finally
+				{
+					r.close();
+				}
+			}
+		}
+
+		c.loadaverage=Double.parseDouble(readLine("/proc/loadavg").split(" ")[0]);
+
+		r=new BufferedReader(new FileReader("/proc/net/dev"));
+		try
+		{
+			String line;
+			while ((line=r.readLine())!=null)
+			{
+				int colon=line.indexOf(':');
+				if (colon<0)
+				{
+					continue;
+				}
+				String iface=line.substring(0,colon).trim();
+				if (iface.equals("lo"))
+				{
+					continue;
+				}
+				String[] counters=line.substring(colon+1).trim().split("\\s+");
+				long[] bytes={Long.parseLong(counters[0]),Long.parseLong(counters[8])};
+				c.net.put(iface,bytes);
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+
+		r=new BufferedReader(new FileReader("/proc/diskstats"));
+		try
+		{
+			String line;
+			while ((line=r.readLine())!=null)
+			{
+				String[] counters=line.trim().split("\\s+");
+				String disk=counters[2];
+				//only whole disks, so that partitions aren't counted twice
+				if ( (disk.startsWith("loop")) || (disk.startsWith("ram")) || (!new File("/sys/block/"+disk).exists()) )
+				{
+					continue;
+				}
+				long[] io={Long.parseLong(counters[5]),Long.parseLong(counters[9]),Long.parseLong(counters[12])};
+				c.disks.put(disk,io);
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+
+		return c;
+	}
+
+	/**
+	 * Turn the difference between two readings of the counters into rates and utilizations.
+	 */
+	LinkedHashMap<String,Double> getSample(Counters a, Counters b)
+	{
+		LinkedHashMap<String,Double> sample=new LinkedHashMap<String,Double>();
+		double seconds=((double)(b.time-a.time))/1000.0;
+
+		sample.put(PROCESS_CPU,100.0*((double)(b.processticks-a.processticks))/(CLOCK_TICKS_PER_SECOND*seconds*_cpus));
+		long hostticks=b.hostticks-a.hostticks;
+		sample.put(HOST_CPU,hostticks>0 ? 100.0*((double)(b.hostbusyticks-a.hostbusyticks))/((double)hostticks) : 0);
+		//threads that exited take their context switches with them
+		sample.put(CONTEXT_SWITCHES,Math.max(0,b.contextswitches-a.contextswitches)/seconds);
+		sample.put(LOAD_AVERAGE,b.loadaverage);
+
+		double read=0;
+		double write=0;
+		double busy=0;
+		for (String disk : b.disks.keySet())
+		{
+			long[] before=a.disks.get(disk);
+			long[] after=b.disks.get(disk);
+			if (before==null)
+			{
+				continue;
+			}
+			read+=(after[0]-before[0])*512.0/1024.0;
+			write+=(after[1]-before[1])*512.0/1024.0;
+			busy=Math.max(busy,100.0*(after[2]-before[2])/(seconds*1000.0));
+		}
+		sample.put(DISK_READ,read/seconds);
+		sample.put(DISK_WRITE,write/seconds);
+		sample.put(DISK_BUSY,Math.min(100,busy));
+
+		for (String iface : b.net.keySet())
+		{
+			long[] before=a.net.get(iface);
+			long[] after=b.net.get(iface);
+			if (before==null)
+			{
+				continue;
+			}
+			double rx=(after[0]-before[0])/seconds;
+			double tx=(after[1]-before[1])/seconds;
+			sample.put(getRxName(iface),rx/1024.0);
+			sample.put(getTxName(iface),tx/1024.0);
+			Double speed=_linkspeeds.get(iface);
+			if (speed!=null)
+			{
+				sample.put(getUtilizationName(iface),100.0*Math.max(rx,tx)*8.0/(speed*1000000.0));
+			}
+		}
+		return sample;
+	}
+
+	static String getRxName(String iface)
+	{
+		return "NetRxKB/sec("+iface+")";
+	}
+
+	static String getTxName(String iface)
+	{
+		return "NetTxKB/sec("+iface+")";
+	}
+
+	static String getUtilizationName(String iface)
+	{
+		return "NetUtilization(%)("+iface+")";
+	}
+
+	/**
+	 * Take a sample: read the counters and record the rates since the last reading.
+	 */
+	synchronized void sample()
+	{
+		if (_last==null)
+		{
+			return;
+		}
+		Counters now;
+		try
+		{
+			now=read();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read host statistics, error: "+e.getMessage());
+			return;
+		}
+		if (now.time<=_last.time)
+		{
+			return;
+		}
+		_samples.put(_last.time-_start,getSample(_last,now));
+		_last=now;
+	}
+
+	public void run()
+	{
+		while (true)
+		{
+			try
+			{
+				sleep(_interval);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			sample();
+		}
+	}
+
+	/**
+	 * Stop sampling at the end of the run, taking a last sample of the time since the previous one, and warn if the host was saturated.
+	 */
+	public void end()
+	{
+		interrupt();
+		synchronized (this)
+		{
+			//don't let a tiny last interval skew the results
+			if ( (_last!=null) && (System.currentTimeMillis()-_last.time>=Math.min(_interval,1000)) )
+			{
+				sample();
+			}
+			String saturation=describeSaturation();
+			if (saturation.length()>0)
+			{
+				System.err.println("The client host may have been saturated, so the results may understate what the server can do: "+saturation);
+			}
+		}
+	}
+
+	/**
+	 * Return the values of a measurement in all the samples that have it.
+	 */
+	synchronized double[] getValues(String measurement)
+	{
+		double[] values=new double[_samples.size()];
+		int n=0;
+		for (LinkedHashMap<String,Double> sample : _samples.values())
+		{
+			Double d=sample.get(measurement);
+			if (d!=null)
+			{
+				values[n++]=d;
+			}
+		}
+		return Arrays.copyOf(values,n);
+	}
+
+	static double max(double[] values)
+	{
+		double max=0;
+		for (double v : values)
+		{
+			max=Math.max(max,v);
+		}
+		return max;
+	}
+
+	/**
+	 * Return true if the measurement was above the saturation threshold (given in percent) in more than half of the samples.
+	 */
+	boolean isSaturated(String measurement)
+	{
+		double[] values=getValues(measurement);
+		if (values.length==0)
+		{
+			return false;
+		}
+		int above=0;
+		for (double v : values)
+		{
+			if (v>=_saturation*100.0)
+			{
+				above++;
+			}
+		}
+		return above*2>values.length;
+	}
+
+	/**
+	 * Describe the resources of the host that were saturated, or return an empty string if none were.
+	 */
+	String describeSaturation()
+	{
+		DecimalFormat d=new DecimalFormat("#.##");
+		String ret="";
+		if (isSaturated(HOST_CPU))
+		{
+			ret+=" CPU (median "+d.format(StatusThread.median(getValues(HOST_CPU)))+"% busy)";
+		}
+		for (String iface : _linkspeeds.keySet())
+		{
+			if (isSaturated(getUtilizationName(iface)))
+			{
+				ret+=" network "+iface+" (median "+d.format(StatusThread.median(getValues(getUtilizationName(iface))))+"% of "+d.format(_linkspeeds.get(iface))+" Mbit/s)";
+			}
+		}
+		return ret.trim();
+	}
+
+	/**
+	 * Export the samples as the HOST time series, and a summary of them.
+	 */
+	public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		if (_samples.size()==0)
+		{
+			return;
+		}
+
+		boolean networksaturated=false;
+		for (String iface : _linkspeeds.keySet())
+		{
+			networksaturated|=isSaturated(getUtilizationName(iface));
+		}
+
+		exporter.write("HOST", "Samples", _samples.size());
+		exporter.write("HOST", "CPUs", _cpus);
+		exporter.write("HOST", "AverageProcessCPU(%)", Statistics.mean(getValues(PROCESS_CPU)));
+		exporter.write("HOST", "MaxProcessCPU(%)", max(getValues(PROCESS_CPU)));
+		exporter.write("HOST", "AverageHostCPU(%)", Statistics.mean(getValues(HOST_CPU)));
+		exporter.write("HOST", "MaxHostCPU(%)", max(getValues(HOST_CPU)));
+		exporter.write("HOST", "MaxLoadAverage", max(getValues(LOAD_AVERAGE)));
+		for (String iface : _linkspeeds.keySet())
+		{
+			exporter.write("HOST", "Max"+getUtilizationName(iface), max(getValues(getUtilizationName(iface))));
+		}
+		exporter.write("HOST", "CPUSaturated", isSaturated(HOST_CPU) ? 1 : 0);
+		exporter.write("HOST", "NetworkSaturated", networksaturated ? 1 : 0);
+
+		for (Long time : _samples.keySet())
+		{
+			LinkedHashMap<String,Double> sample=_samples.get(time);
+			String[] measurements=sample.keySet().toArray(new String[0]);
+			double[] values=new double[measurements.length];
+			for (int i=0; i<values.length; i++)
+			{
+				values[i]=sample.get(measurements[i]);
+			}
+			exporter.writeInterval("HOST", time, measurements, values);
+		}
+	}
+}
@@ -0,0 +1,698 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsReader;
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Writes a single static HTML page (charts are inline SVG, nothing is loaded from elsewhere) from the exported
+ * results of one or more runs, with the runs overlaid in each chart:
+ * <UL>
+ * <LI>throughput over time, from the intervals of the timeseries measurement type
+ * <LI>the latency percentiles of each operation over time, also from the intervals
+ * <LI>the latency percentile distribution of each operation, from the histogram measurement type
+ * <LI>the return codes of each operation
+ * </UL>
+ * Charts are left out when no run has the data for them, e.g. there is no distribution for runs done with
+ * measurementtype=timeseries. The results can be in any format an exporter writes.
+ */
+public class HtmlReport
+{
+	static final String[] COLORS={"#1f77b4","#d62728","#2ca02c","#ff7f0e","#9467bd","#8c564b","#e377c2","#7f7f7f","#bcbd22","#17becf"};
+
+	static final int WIDTH=800;
+	static final int HEIGHT=320;
+	static final int LEFT=70;
+	static final int RIGHT=170;
+	static final int TOP=30;
+	static final int BOTTOM=45;
+
+	/**
+	 * The highest percentile shown in the distribution chart is 100-10^-DISTRIBUTION_NINES.
+	 */
+	static final int DISTRIBUTION_NINES=4;
+
+	/**
+	 * A line of a chart.
+	 */
+	static class Series
+	{
+		String name;
+		String color;
+		boolean dashed;
+		Vector<double[]> points=new Vector<double[]>();
+
+		Series(String name, String color, boolean dashed)
+		{
+			this.name=name;
+			this.color=color;
+			this.dashed=dashed;
+		}
+
+		void add(double x, double y)
+		{
+			if ( (!Double.isNaN(y)) && (!Double.isInfinite(y)) )
+			{
+				points.add(new double[] {x,y});
+			}
+		}
+	}
+
+	Vector<String> _names;
+	Vector<MemoryMeasurementsExporter> _runs;
+	String _title;
+	PrintWriter _out;
+
+	public HtmlReport(String title, Vector<String> names, Vector<MemoryMeasurementsExporter> runs)
+	{
+		_title=title;
+		_names=names;
+		_runs=runs;
+	}
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.HtmlReport [options] result [result ...]");
+		System.out.println("Each result is an exported results file, optionally preceded by a name for it: name=file");
+		System.out.println("Options:");
+		System.out.println("  -o file: write the report to file (default: standard output)");
+		System.out.println("  -title title: the title of the report (default: YCSB report)");
+	}
+
+	static String escape(String s)
+	{
+		return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;").replace("\"","&quot;");
+	}
+
+	/**
+	 * Return the operations measured in any of the runs, in the order they were first seen.
+	 */
+	Vector<String> getOperations()
+	{
+		Vector<String> ops=new Vector<String>();
+		for (MemoryMeasurementsExporter m : _runs)
+		{
+			for (String metric : m.getMetrics())
+			{
+				if ( (!ops.contains(metric)) && (m.getValue(metric,"Operations")!=null) && (m.getValue(metric,"AverageLatency(ms)")!=null) && (!metric.startsWith("THREAD")) && (!metric.startsWith("AUTOTUNE")) )
+				{
+					ops.add(metric);
+				}
+			}
+			for (String metric : m.getIntervalMetrics())
+			{
+				if ( (!ops.contains(metric)) && (!metric.equals("HOST")) )
+				{
+					ops.add(metric);
+				}
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Return the time between consecutive intervals of a time series (the granularity it was recorded with).
+	 */
+	static long getGranularity(LinkedHashMap<Long,LinkedHashMap<String,Double>> intervals)
+	{
+		long granularity=Long.MAX_VALUE;
+		long last=-1;
+		for (Long time : intervals.keySet())
+		{
+			if ( (last>=0) && (time>last) )
+			{
+				granularity=Math.min(granularity,time-last);
+			}
+			last=time;
+		}
+		return granularity==Long.MAX_VALUE ? 1000 : granularity;
+	}
+
+	/**
+	 * Write the report. Charts with no data in any run are left out.
+	 */
+	public void write(OutputStream os) throws IOException
+	{
+		_out=new PrintWriter(new BufferedWriter(new OutputStreamWriter(os,"UTF-8")));
+
+		_out.println("<!DOCTYPE html>");
+		_out.println("<html><head><meta charset=\"utf-8\"><title>"+escape(_title)+"</title>");
+		_out.println("<style>body{font-family:sans-serif;margin:20px} table{border-collapse:collapse} td,th{border:1px solid #ccc;padding:3px 8px;text-align:right} th{background:#eee} td.name{text-align:left} svg{display:block;margin:10px 0 25px 0}</style>");
+		_out.println("</head><body>");
+		_out.println("<h1>"+escape(_title)+"</h1>");
+
+		Vector<String> ops=getOperations();
+
+		writeSummary(ops);
+		writeThroughput();
+		for (String op : ops)
+		{
+			writeLatencyOverTime(op);
+		}
+		for (String op : ops)
+		{
+			writeDistribution(op);
+		}
+		writeReturnCodes(ops);
+		writeHost();
+
+		_out.println("</body></html>");
+		_out.flush();
+	}
+
+	String format(Double d)
+	{
+		if ( (d==null) || (Double.isNaN(d)) )
+		{
+			return "";
+		}
+		return new DecimalFormat("#,##0.##").format(d);
+	}
+
+	void writeSummary(Vector<String> ops)
+	{
+		_out.println("<h2>Summary</h2>");
+		_out.println("<table><tr><th>Run</th><th>RunTime(ms)</th><th>Throughput(ops/sec)</th>");
+		for (String op : ops)
+		{
+			_out.println("<th>"+escape(op)+" Operations</th><th>"+escape(op)+" AverageLatency(ms)</th><th>"+escape(op)+" 99thPercentileLatency(ms)</th>");
+		}
+		_out.println("</tr>");
+		for (int r=0; r<_runs.size(); r++)
+		{
+			MemoryMeasurementsExporter m=_runs.get(r);
+			_out.print("<tr><td class=\"name\" style=\"color:"+COLORS[r%COLORS.length]+"\">"+escape(_names.get(r))+"</td>");
+			_out.print("<td>"+format(m.getValue("OVERALL","RunTime(ms)"))+"</td><td>"+format(m.getValue("OVERALL","Throughput(ops/sec)"))+"</td>");
+			for (String op : ops)
+			{
+				_out.print("<td>"+format(m.getValue(op,"Operations"))+"</td><td>"+format(m.getValue(op,"AverageLatency(ms)"))+"</td><td>"+format(m.getValue(op,"99thPercentileLatency(ms)"))+"</td>");
+			}
+			_out.println("</tr>");
+		}
+		_out.println("</table>");
+
+		for (int r=0; r<_runs.size(); r++)
+		{
+			MemoryMeasurementsExporter m=_runs.get(r);
+			Double cpu=m.getValue("HOST","CPUSaturated");
+			Double network=m.getValue("HOST","NetworkSaturated");
+			String saturated="";
+			if ( (cpu!=null) && (cpu>0) )
+			{
+				saturated+=" CPU";
+			}
+			if ( (network!=null) && (network>0) )
+			{
+				saturated+=(saturated.length()>0 ? " and" : "")+" network";
+			}
+			if (saturated.length()>0)
+			{
+				_out.println("<p><b>Warning:</b> the client host of "+escape(_names.get(r))+" was saturated ("+saturated.trim()+"), so its results may understate what the server can do.</p>");
+			}
+		}
+	}
+
+	/**
+	 * The CPU use of the client host over time, when it was sampled: the client process solid, the whole host dashed.
+	 */
+	void writeHost()
+	{
+		Vector<Series> series=new Vector<Series>();
+		for (int r=0; r<_runs.size(); r++)
+		{
+			LinkedHashMap<Long,LinkedHashMap<String,Double>> intervals=_runs.get(r).getIntervals("HOST");
+			if (intervals==null)
+			{
+				continue;
+			}
+			String color=COLORS[r%COLORS.length];
+			Series process=new Series(_names.get(r)+" client",color,false);
+			Series host=new Series(_names.get(r)+" host",color,true);
+			for (Long time : intervals.keySet())
+			{
+				LinkedHashMap<String,Double> interval=intervals.get(time);
+				Double p=interval.get(HostSampler.PROCESS_CPU);
+				Double h=interval.get(HostSampler.HOST_CPU);
+				if (p!=null)
+				{
+					process.add(time/1000.0,p);
+				}
+				if (h!=null)
+				{
+					host.add(time/1000.0,h);
+				}
+			}
+			series.add(process);
+			series.add(host);
+		}
+
+		if (series.size()>0)
+		{
+			_out.println("<h2>Client host CPU over time</h2>");
+			writeChart(series,"Time (s)","CPU (%)",false);
+		}
+	}
+
+	/**
+	 * Throughput over time: the operations of all the operation types in each interval.
+	 */
+	void writeThroughput()
+	{
+		Vector<Series> series=new Vector<Series>();
+		for (int r=0; r<_runs.size(); r++)
+		{
+			MemoryMeasurementsExporter m=_runs.get(r);
+			TreeMap<Long,Double> ops=new TreeMap<Long,Double>();
+			long granularity=Long.MAX_VALUE;
+			for (String metric : m.getIntervalMetrics())
+			{
+				LinkedHashMap<Long,LinkedHashMap<String,Double>> intervals=m.getIntervals(metric);
+				granularity=Math.min(granularity,getGranularity(intervals));
+				for (Long time : intervals.keySet())
+				{
+					Double count=intervals.get(time).get("Operations");
+					if (count!=null)
+					{
+						Double sum=ops.get(time);
+						ops.put(time,(sum==null ? 0 : sum)+count);
+					}
+				}
+			}
+			if (ops.size()==0)
+			{
+				continue;
+			}
+
+			Series s=new Series(_names.get(r),COLORS[r%COLORS.length],false);
+			for (Long time : ops.keySet())
+			{
+				s.add(time/1000.0,ops.get(time)*1000.0/granularity);
+			}
+			series.add(s);
+		}
+
+		if (series.size()>0)
+		{
+			_out.println("<h2>Throughput over time</h2>");
+			writeChart(series,"Time (s)","Throughput (ops/sec)",false);
+		}
+	}
+
+	/**
+	 * The latency percentiles of an operation over time: the 99th percentile solid, the median dashed.
+	 */
+	void writeLatencyOverTime(String op)
+	{
+		Vector<Series> series=new Vector<Series>();
+		for (int r=0; r<_runs.size(); r++)
+		{
+			LinkedHashMap<Long,LinkedHashMap<String,Double>> intervals=_runs.get(r).getIntervals(op);
+			if (intervals==null)
+			{
+				continue;
+			}
+			String color=COLORS[r%COLORS.length];
+			Series p99=new Series(_names.get(r)+" 99th",color,false);
+			Series p50=new Series(_names.get(r)+" 50th",color,true);
+			for (Long time : intervals.keySet())
+			{
+				LinkedHashMap<String,Double> interval=intervals.get(time);
+				Double v99=interval.get("99thPercentileLatency(ms)");
+				Double v50=interval.get("50thPercentileLatency(ms)");
+				if (v99==null)
+				{
+					//exported before the time series had percentiles
+					v99=interval.get("AverageLatency(ms)");
+				}
+				if (v99!=null)
+				{
+					p99.add(time/1000.0,v99);
+				}
+				if (v50!=null)
+				{
+					p50.add(time/1000.0,v50);
+				}
+			}
+			series.add(p99);
+			if (p50.points.size()>0)
+			{
+				series.add(p50);
+			}
+		}
+
+		if (series.size()>0)
+		{
+			_out.println("<h2>"+escape(op)+" latency over time</h2>");
+			writeChart(series,"Time (s)","Latency (ms)",false);
+		}
+	}
+
+	/**
+	 * The latency percentile distribution of an operation, with the percentiles on a log scale so the tail shows.
+	 */
+	void writeDistribution(String op)
+	{
+		Vector<Series> series=new Vector<Series>();
+		double maxx=DISTRIBUTION_NINES;
+		for (int r=0; r<_runs.size(); r++)
+		{
+			long[] counts=_runs.get(r).getHistogram(op);
+			if (counts==null)
+			{
+				continue;
+			}
+			long total=0;
+			for (long c : counts)
+			{
+				total+=c;
+			}
+			if (total==0)
+			{
+				continue;
+			}
+
+			Series s=new Series(_names.get(r),COLORS[r%COLORS.length],false);
+			long cumulative=0;
+			double lastx=0;
+			s.add(0,0);
+			for (int i=0; i<counts.length; i++)
+			{
+				if (counts[i]==0)
+				{
+					continue;
+				}
+				//the step up to this bucket, then along it to the fraction it completes
+				s.add(lastx,i);
+				cumulative+=counts[i];
+				double fraction=((double)cumulative)/total;
+				double x=(fraction>=1) ? Math.log10(total) : -Math.log10(1-fraction);
+				x=Math.min(x,maxx);
+				s.add(x,i);
+				lastx=x;
+			}
+			series.add(s);
+		}
+
+		if (series.size()>0)
+		{
+			_out.println("<h2>"+escape(op)+" latency percentile distribution</h2>");
+			writeChart(series,"Percentile","Latency (ms)",true);
+		}
+	}
+
+	void writeReturnCodes(Vector<String> ops)
+	{
+		//the return codes seen for each operation
+		LinkedHashMap<String,Vector<String>> codes=new LinkedHashMap<String,Vector<String>>();
+		for (String op : ops)
+		{
+			Vector<String> c=new Vector<String>();
+			for (MemoryMeasurementsExporter m : _runs)
+			{
+				if (m.getValue(op,"Operations")==null)
+				{
+					continue;
+				}
+				for (String measurement : m.getMeasurements(op))
+				{
+					if ( (measurement.startsWith("Return=")) && (!c.contains(measurement)) )
+					{
+						c.add(measurement);
+					}
+				}
+			}
+			if (c.size()>0)
+			{
+				codes.put(op,c);
+			}
+		}
+		if (codes.size()==0)
+		{
+			return;
+		}
+
+		_out.println("<h2>Return codes</h2>");
+		_out.println("<table><tr><th>Run</th><th>Operation</th><th>Return code</th><th>Count</th><th>Share</th></tr>");
+		for (int r=0; r<_runs.size(); r++)
+		{
+			MemoryMeasurementsExporter m=_runs.get(r);
+			for (String op : codes.keySet())
+			{
+				Double total=m.getValue(op,"Operations");
+				for (String code : codes.get(op))
+				{
+					Double count=m.getValue(op,code);
+					if (count==null)
+					{
+						continue;
+					}
+					String share=( (total!=null) && (total>0) ) ? format(100.0*count/total)+"%" : "";
+					boolean error=!code.equals("Return=0");
+					_out.println("<tr"+(error ? " style=\"color:#d62728\"" : "")+"><td class=\"name\">"+escape(_names.get(r))+"</td><td class=\"name\">"+escape(op)+"</td><td>"+escape(code.substring("Return=".length()))+"</td><td>"+format(count)+"</td><td>"+share+"</td></tr>");
+				}
+			}
+		}
+		_out.println("</table>");
+	}
+
+	/**
+	 * Return about five round tick values from 0 to at least max.
+	 */
+	static double[] getTicks(double max)
+	{
+		if (max<=0)
+		{
+			max=1;
+		}
+		double raw=max/5;
+		double magnitude=Math.pow(10,Math.floor(Math.log10(raw)));
+		double step=magnitude;
+		if (raw/magnitude>5)
+		{
+			step=10*magnitude;
+		}
+		else if (raw/magnitude>2)
+		{
+			step=5*magnitude;
+		}
+		else if (raw/magnitude>1)
+		{
+			step=2*magnitude;
+		}
+		int n=(int)Math.ceil(max/step);
+		double[] ticks=new double[n+1];
+		for (int i=0; i<=n; i++)
+		{
+			ticks[i]=i*step;
+		}
+		return ticks;
+	}
+
+	static String percentileLabel(int nines)
+	{
+		if (nines==0)
+		{
+			return "0%";
+		}
+		if (nines==1)
+		{
+			return "90%";
+		}
+		String s="99";
+		for (int i=2; i<nines; i++)
+		{
+			s+=(i==2 ? "." : "")+"9";
+		}
+		return s+"%";
+	}
+
+	/**
+	 * Write an SVG line chart with a legend on the right. The axes start at 0.
+	 *
+	 * @param percentilex the x values are -log10(1-percentile), labelled as percentiles
+	 */
+	void writeChart(Vector<Series> series, String xlabel, String ylabel, boolean percentilex)
+	{
+		DecimalFormat d=new DecimalFormat("#,##0.##");
+
+		double maxx=0;
+		double maxy=0;
+		for (Series s : series)
+		{
+			for (double[] p : s.points)
+			{
+				maxx=Math.max(maxx,p[0]);
+				maxy=Math.max(maxy,p[1]);
+			}
+		}
+
+		double[] xticks;
+		if (percentilex)
+		{
+			xticks=new double[DISTRIBUTION_NINES+1];
+			for (int i=0; i<=DISTRIBUTION_NINES; i++)
+			{
+				xticks[i]=i;
+			}
+		}
+		else
+		{
+			xticks=getTicks(maxx);
+		}
+		double[] yticks=getTicks(maxy);
+		double xmax=xticks[xticks.length-1];
+		double ymax=yticks[yticks.length-1];
+
+		int plotwidth=WIDTH-LEFT-RIGHT;
+		int plotheight=HEIGHT-TOP-BOTTOM;
+
+		_out.println("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""+WIDTH+"\" height=\""+HEIGHT+"\" font-size=\"11\">");
+
+		//grid and axis labels
+		for (int i=0; i<xticks.length; i++)
+		{
+			double x=LEFT+plotwidth*xticks[i]/xmax;
+			_out.println("<line x1=\""+coord(x)+"\" y1=\""+TOP+"\" x2=\""+coord(x)+"\" y2=\""+(TOP+plotheight)+"\" stroke=\"#e0e0e0\"/>");
+			String label=percentilex ? percentileLabel(i) : d.format(xticks[i]);
+			_out.println("<text x=\""+coord(x)+"\" y=\""+(TOP+plotheight+15)+"\" text-anchor=\"middle\">"+label+"</text>");
+		}
+		for (int i=0; i<yticks.length; i++)
+		{
+			double y=TOP+plotheight-plotheight*yticks[i]/ymax;
+			_out.println("<line x1=\""+LEFT+"\" y1=\""+coord(y)+"\" x2=\""+(LEFT+plotwidth)+"\" y2=\""+coord(y)+"\" stroke=\"#e0e0e0\"/>");
+			_out.println("<text x=\""+(LEFT-5)+"\" y=\""+coord(y+4)+"\" text-anchor=\"end\">"+d.format(yticks[i])+"</text>");
+		}
+		_out.println("<rect x=\""+LEFT+"\" y=\""+TOP+"\" width=\""+plotwidth+"\" height=\""+plotheight+"\" fill=\"none\" stroke=\"#888\"/>");
+		_out.println("<text x=\""+(LEFT+plotwidth/2)+"\" y=\""+(HEIGHT-8)+"\" text-anchor=\"middle\">"+escape(xlabel)+"</text>");
+		_out.println("<text x=\"15\" y=\""+(TOP+plotheight/2)+"\" text-anchor=\"middle\" transform=\"rotate(-90 15 "+(TOP+plotheight/2)+")\">"+escape(ylabel)+"</text>");
+
+		//lines and legend
+		for (int i=0; i<series.size(); i++)
+		{
+			Series s=series.get(i);
+			String dash=s.dashed ? " stroke-dasharray=\"5,3\"" : "";
+
+			StringBuilder points=new StringBuilder();
+			for (double[] p : s.points)
+			{
+				double x=LEFT+plotwidth*p[0]/xmax;
+				double y=TOP+plotheight-plotheight*p[1]/ymax;
+				points.append(coord(x)).append(',').append(coord(y)).append(' ');
+			}
+			_out.println("<polyline fill=\"none\" stroke=\""+s.color+"\" stroke-width=\"1.5\""+dash+" points=\""+points.toString().trim()+"\"><title>"+escape(s.name)+"</title></polyline>");
+
+			int ly=TOP+10+i*16;
+			_out.println("<line x1=\""+(WIDTH-RIGHT+10)+"\" y1=\""+ly+"\" x2=\""+(WIDTH-RIGHT+30)+"\" y2=\""+ly+"\" stroke=\""+s.color+"\" stroke-width=\"2\""+dash+"/>");
+			_out.println("<text x=\""+(WIDTH-RIGHT+35)+"\" y=\""+(ly+4)+"\">"+escape(s.name)+"</text>");
+		}
+
+		_out.println("</svg>");
+	}
+
+	/**
+	 * Format a coordinate.
+	 */
+	static String coord(double v)
+	{
+		return Double.toString(Math.round(v*10)/10.0);
+	}
+
+	public static void main(String[] args)
+	{
+		String output=null;
+		String title="YCSB report";
+
+		int argindex=0;
+		while ( (argindex<args.length) && (args[argindex].startsWith("-")) )
+		{
+			if ( (args[argindex].compareTo("-o")==0) && (argindex+1<args.length) )
+			{
+				output=args[argindex+1];
+				argindex+=2;
+			}
+			else if ( (args[argindex].compareTo("-title")==0) && (argindex+1<args.length) )
+			{
+				title=args[argindex+1];
+				argindex+=2;
+			}
+			else
+			{
+				usageMessage();
+				System.exit(0);
+			}
+		}
+
+		if (argindex>=args.length)
+		{
+			usageMessage();
+			System.exit(0);
+		}
+
+		Vector<String> names=new Vector<String>();
+		Vector<MemoryMeasurementsExporter> runs=new Vector<MemoryMeasurementsExporter>();
+		for (int i=argindex; i<args.length; i++)
+		{
+			String name=args[i];
+			String file=args[i];
+			int eq=args[i].indexOf('=');
+			if (eq>0)
+			{
+				name=args[i].substring(0,eq);
+				file=args[i].substring(eq+1);
+			}
+			try
+			{
+				runs.add(MeasurementsReader.read(file));
+				names.add(name);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not read results "+file+", error: "+e.getMessage());
+				System.exit(-1);
+			}
+		}
+
+		try
+		{
+			OutputStream out=(output==null) ? System.out : new FileOutputStream(output);
+			new HtmlReport(title,names,runs).write(out);
+			if (output!=null)
+			{
+				out.close();
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not write report, error: "+e.getMessage());
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Runs a phase of the workload several times in a row, and summarizes the results: for every
+ * measurement that is a single number (throughput, run time, average latency, each latency percentile
+ * of each operation, ...) the mean over the iterations, the standard deviation and the half width of
+ * the 95% confidence interval of the mean are exported. Identifiers, such as the seed, are exported unchanged. Iterations whose results are outliers compared
+ * to the others are flagged (this needs at least 5 iterations).
+ *
+ * Properties to control the iterations:
+ * <UL>
+ * <LI><b>iterations</b>: the number of times to run the phase (default: 1)
+ * <LI><b>iterations.cooldown</b>: the time in ms to wait between iterations, e.g. to let the server finish compactions (default: 0)
+ * </UL>
+ */
+class Iterations
+{
+	public static final String ITERATIONS_PROPERTY="iterations";
+	public static final String ITERATIONS_PROPERTY_DEFAULT="1";
+
+	public static final String COOLDOWN_PROPERTY="iterations.cooldown";
+	public static final String COOLDOWN_PROPERTY_DEFAULT="0";
+
+	/**
+	 * The suffixes of the names of the measurements written for each summarized measurement, besides the mean.
+	 */
+	public static final String STDDEV_SUFFIX=" StdDev";
+	public static final String CI_SUFFIX=" CI95(+/-)";
+
+	/**
+	 * The measurements that identify a run rather than measure it, such as the seed it was run with. They are the
+	 * same in every iteration, and are written as they are instead of being summarized.
+	 */
+	static final String[] IDENTIFIERS={"Seed"};
+
+	public static int getIterations(Properties props)
+	{
+		return Integer.parseInt(props.getProperty(ITERATIONS_PROPERTY,ITERATIONS_PROPERTY_DEFAULT));
+	}
+
+	/**
+	 * Run the phase as many times as configured, with fresh measurements each time.
+	 *
+	 * @return the measurements of each iteration
+	 */
+	public static Vector<MemoryMeasurementsExporter> run(Properties props, Workload workload, Client.Operation operation, boolean status, String label)
+	{
+		int iterations=getIterations(props);
+		long cooldown=Long.parseLong(props.getProperty(COOLDOWN_PROPERTY,COOLDOWN_PROPERTY_DEFAULT));
+
+		Vector<MemoryMeasurementsExporter> results=new Vector<MemoryMeasurementsExporter>();
+		for (int i=0; i<iterations; i++)
+		{
+			if ( (i>0) && (cooldown>0) )
+			{
+				try
+				{
+					Thread.sleep(cooldown);
+				}
+				catch (InterruptedException e)
+				{
+					//do nothing
+				}
+			}
+
+			Measurements.resetMeasurements(props);
+
+			if (iterations>1)
+			{
+				System.err.println("Iteration "+(i+1)+" of "+iterations);
+			}
+			System.err.println("Starting test.");
+			Client.Run run=Client.runPhase(props,workload,operation,status,label);
+
+			MemoryMeasurementsExporter m=new MemoryMeasurementsExporter();
+			try
+			{
+				Client.writeMeasurements(m,props,run);
+			}
+			catch (IOException e)
+			{
+				//can't happen, the measurements are kept in memory
+			}
+			results.add(m);
+		}
+		return results;
+	}
+
+	/**
+	 * Return true if the measurement identifies the run, rather than measuring it.
+	 */
+	static boolean isIdentifier(String measurement)
+	{
+		for (String id : IDENTIFIERS)
+		{
+			if (measurement.equals(id))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return true if the measurement should be summarized: it has to be a single number, not a histogram
+	 * bucket or a point of a time series, not the breakdown of a single client thread, and not an identifier.
+	 */
+	static boolean isSummarized(String metric, String measurement)
+	{
+		if ( (metric.startsWith("THREAD")) && (!metric.equals("THREADS")) )
+		{
+			return false;
+		}
+		if (isIdentifier(measurement))
+		{
+			return false;
+		}
+		return (!measurement.startsWith(">")) && (!measurement.matches("[0-9]+"));
+	}
+
+	/**
+	 * Return true if an iteration should be flagged when its value of the measurement is an outlier: only
+	 * throughput and latency are checked, not counts such as the mix of operations, which vary by chance.
+	 */
+	static boolean isCheckedForOutliers(String measurement)
+	{
+		return (measurement.startsWith("Throughput")) || (measurement.startsWith("RunTime")) || (measurement.indexOf("Latency")>=0);
+	}
+
+	/**
+	 * Return the value of a measurement in each iteration, or null if it is missing from any of them.
+	 */
+	public static double[] getValues(Vector<MemoryMeasurementsExporter> results, String metric, String measurement)
+	{
+		double[] values=new double[results.size()];
+		for (int i=0; i<values.length; i++)
+		{
+			Double d=results.get(i).getValue(metric,measurement);
+			if (d==null)
+			{
+				return null;
+			}
+			values[i]=d;
+		}
+		return values;
+	}
+
+	/**
+	 * Write the mean, standard deviation and 95% confidence interval of each summarized measurement, and flag the
+	 * iterations that are outliers. The histograms of the iterations are added up. If there was only one
+	 * iteration, its measurements are written unchanged.
+	 */
+	public static void writeSummary(MeasurementsExporter exporter, Vector<MemoryMeasurementsExporter> results)
+			throws IOException
+	{
+		MemoryMeasurementsExporter first=results.get(0);
+		if (results.size()==1)
+		{
+			first.writeTo(exporter);
+			return;
+		}
+
+		String[] outliers=new String[results.size()];
+		for (String metric : first.getMetrics())
+		{
+			for (String measurement : first.getMeasurements(metric))
+			{
+				if (isIdentifier(measurement))
+				{
+					Long id=first.getLong(metric,measurement);
+					if (id!=null)
+					{
+						exporter.write(metric, measurement, id.longValue());
+					}
+					continue;
+				}
+				if (!isSummarized(metric,measurement))
+				{
+					continue;
+				}
+				double[] values=getValues(results,metric,measurement);
+				if (values==null)
+				{
+					continue;
+				}
+
+				exporter.write(metric, measurement, Statistics.mean(values));
+				exporter.write(metric, measurement+STDDEV_SUFFIX, Statistics.stddev(values));
+				exporter.write(metric, measurement+CI_SUFFIX, Statistics.confidenceInterval(values));
+
+				if (!isCheckedForOutliers(measurement))
+				{
+					continue;
+				}
+				boolean[] flagged=Statistics.outliers(values);
+				for (int i=0; i<flagged.length; i++)
+				{
+					if (flagged[i])
+					{
+						outliers[i]=(outliers[i]==null ? "" : outliers[i]+", ")+metric+" "+measurement;
+					}
+				}
+			}
+		}
+
+		for (String metric : first.getHistogramMetrics())
+		{
+			long[] total=first.getHistogram(metric).clone();
+			for (int i=1; i<results.size(); i++)
+			{
+				long[] counts=results.get(i).getHistogram(metric);
+				for (int j=0; (counts!=null) && (j<Math.min(counts.length,total.length)); j++)
+				{
+					total[j]+=counts[j];
+				}
+			}
+			exporter.writeHistogram(metric, total);
+		}
+
+		exporter.write("ITERATIONS", "Iterations", results.size());
+		for (int i=0; i<results.size(); i++)
+		{
+			String metric="ITERATION"+(i+1);
+			exporter.write(metric, "RunTime(ms)", results.get(i).getValue("OVERALL","RunTime(ms)"));
+			exporter.write(metric, "Throughput(ops/sec)", results.get(i).getValue("OVERALL","Throughput(ops/sec)"));
+			exporter.write(metric, "Outlier", outliers[i]==null ? 0 : 1);
+			if (outliers[i]!=null)
+			{
+				System.err.println("Iteration "+(i+1)+" is an outlier in: "+outliers[i]);
+			}
+		}
+	}
+
+	/**
+	 * Return the measurements among the given ones whose values differ significantly between two sets of iterations,
+	 * or an empty list if none do (or if either set has only one iteration, in which case nothing can be said).
+	 *
+	 * @param metrics the metric of each measurement to compare
+	 * @param measurements the names of the measurements to compare
+	 */
+	public static Vector<String> getDifferences(Vector<MemoryMeasurementsExporter> a, Vector<MemoryMeasurementsExporter> b, Vector<String> metrics, Vector<String> measurements)
+	{
+		Vector<String> ret=new Vector<String>();
+		for (int i=0; i<metrics.size(); i++)
+		{
+			double[] va=getValues(a,metrics.get(i),measurements.get(i));
+			double[] vb=getValues(b,metrics.get(i),measurements.get(i));
+			if ( (va!=null) && (vb!=null) && (Statistics.differ(va,vb)) )
+			{
+				ret.add(metrics.get(i)+" "+measurements.get(i));
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,143 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * A permutation of key numbers, used to insert records in an order that looks random ("hashed" insert order)
+ * without two key numbers ever mapping to the same key. Hashing key numbers can't guarantee that: distinct
+ * numbers collide, and then inserts overwrite each other and the dataset ends up smaller than configured.
+ *
+ * The permutation is a Feistel network over the non-negative longs, 0 to 2^63-1, split into a high half of
+ * 32 bits and a low half of 31 bits. Each round xors one half with a keyed hash of the other, alternating
+ * between the halves, so every round can be undone whatever the hash: the permutation is one to one, and can
+ * be inverted to find the key number a key came from. Since the domain is fixed, the keys of consecutive key
+ * numbers are spread over all of it, instead of being a shuffle of the numbers 0 to recordcount-1, whose names
+ * crowd into a few lexicographic regions of the key space. Records inserted during the run map the same way as
+ * the ones loaded.
+ */
+public class KeyPermutation
+{
+	/**
+	 * The number of Feistel rounds, half of them on each half; must be even. Four rounds are enough for the permutation to be
+	 * indistinguishable from random for a round function like this one; a couple more spread the low bits of
+	 * nearby numbers better.
+	 */
+	public static final int ROUNDS=6;
+
+	/**
+	 * The seed the round keys are derived from when none is given, so that the same key numbers map to the
+	 * same keys in every run.
+	 */
+	public static final long DEFAULT_SEED=0x5DEECE66DL;
+
+	/**
+	 * The number of bits of the low half; the high half has the remaining 32 of the 63.
+	 */
+	static final int LOW_BITS=31;
+	static final long LOW_MASK=(1L<<LOW_BITS)-1;
+	static final long HIGH_MASK=(1L<<(63-LOW_BITS))-1;
+
+	long[] _keys;
+
+	/**
+	 * Create a permutation of the non-negative longs.
+	 */
+	public KeyPermutation()
+	{
+		this(DEFAULT_SEED);
+	}
+
+	/**
+	 * Create a permutation of the non-negative longs, with round keys derived from the given seed.
+	 */
+	public KeyPermutation(long seed)
+	{
+		_keys=new long[ROUNDS];
+		long s=seed;
+		for (int i=0; i<ROUNDS; i++)
+		{
+			s+=0x9E3779B97F4A7C15L;
+			_keys[i]=mix(s);
+		}
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, which makes every bit of the result depend on every bit of the input.
+	 */
+	static long mix(long x)
+	{
+		x^=x>>>33;
+		x*=0xff51afd7ed558ccdL;
+		x^=x>>>33;
+		x*=0xc4ceb9fe1a85ec53L;
+		x^=x>>>33;
+		return x;
+	}
+
+	/**
+	 * Map a key number to the number its key is built from. Even rounds change the high half, odd rounds the
+	 * low one.
+	 *
+	 * @param keynum a key number, 0 or more
+	 */
+	public long permute(long keynum)
+	{
+		long high=keynum>>>LOW_BITS;
+		long low=keynum&LOW_MASK;
+		for (int i=0; i<ROUNDS; i+=2)
+		{
+			high^=mix(low^_keys[i])&HIGH_MASK;
+			low^=mix(high^_keys[i+1])&LOW_MASK;
+		}
+		return (high<<LOW_BITS)|low;
+	}
+
+	/**
+	 * Map the number a key was built from back to its key number; the inverse of permute().
+	 */
+	public long invert(long permuted)
+	{
+		long high=permuted>>>LOW_BITS;
+		long low=permuted&LOW_MASK;
+		for (int i=ROUNDS-2; i>=0; i-=2)
+		{
+			low^=mix(high^_keys[i+1])&LOW_MASK;
+			high^=mix(low^_keys[i])&HIGH_MASK;
+		}
+		return (high<<LOW_BITS)|low;
+	}
+
+	/**
+	 * Print the key number each of the given keys was inserted as, to check a dataset loaded in hashed order.
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length<1)
+		{
+			System.out.println("Usage: java com.yahoo.ycsb.KeyPermutation key [key ...]");
+			System.out.println("Prints the key number of each key (e.g. user1234) of a dataset loaded with insertorder=hashed.");
+			System.exit(1);
+		}
+		KeyPermutation permutation=new KeyPermutation();
+		for (int i=0; i<args.length; i++)
+		{
+			String digits=args[i].replaceFirst("^[^0-9]*","");
+			System.out.println(args[i]+"\t"+permutation.invert(Long.parseLong(digits)));
+		}
+	}
+}
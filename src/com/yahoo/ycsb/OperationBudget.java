@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of operations left to do in a run, shared by all the client threads. Rather than giving
+ * every thread a fixed share of the operations up front, threads claim operations from this budget
+ * in small chunks until it is exhausted. A thread that is stuck on a slow connection therefore
+ * just claims fewer chunks, instead of leaving the other threads idle while it finishes its share.
+ *
+ * Claiming is lock-free; a thread only touches the shared counter once per chunk.
+ *
+ * With fixedshares=true, each thread gets a budget of its own instead, of an equal share of the operations.
+ * That gives up the balancing, but each thread then does the same number of operations in every run, so that
+ * a run with the same seed and thread count makes the same choices (see Workload.SEED_PROPERTY).
+ */
+public class OperationBudget
+{
+	/**
+	 * The name of the property for the number of operations a thread claims from the budget at a time.
+	 */
+	public static final String CHUNK_SIZE_PROPERTY="operationchunksize";
+
+	/**
+	 * The largest chunk used when the chunk size is not specified. Smaller chunks are used for small
+	 * runs, so that each thread gets to claim several chunks.
+	 */
+	public static final int CHUNK_SIZE_MAX_DEFAULT=100;
+
+	/**
+	 * The name of the property to give each thread a fixed share of the operations, rather than one shared budget.
+	 */
+	public static final String FIXED_SHARES_PROPERTY="fixedshares";
+	public static final String FIXED_SHARES_PROPERTY_DEFAULT="false";
+
+	AtomicLong _remaining;
+	boolean _unlimited;
+	int _chunksize;
+
+	/**
+	 * Create a budget of the given number of operations.
+	 *
+	 * @param opcount the total number of operations to do, or 0 for no limit
+	 * @param chunksize the number of operations a thread claims at a time
+	 */
+	public OperationBudget(long opcount, int chunksize)
+	{
+		_remaining=new AtomicLong(opcount);
+		_unlimited=(opcount==0);
+		_chunksize=Math.max(1,chunksize);
+	}
+
+	/**
+	 * Pick a chunk size for the given run: the configured one if there is one, otherwise one that
+	 * gives each thread about ten chunks, but no more than CHUNK_SIZE_MAX_DEFAULT operations each.
+	 */
+	public static int chunkSize(Properties props, long opcount, int threadcount)
+	{
+		String chunk=props.getProperty(CHUNK_SIZE_PROPERTY);
+		if (chunk!=null)
+		{
+			return Integer.parseInt(chunk);
+		}
+		long perthread=opcount/(Math.max(1,threadcount)*10L);
+		return (int)Math.max(1,Math.min(CHUNK_SIZE_MAX_DEFAULT,perthread));
+	}
+
+	/**
+	 * Create the budget of one thread's fixed share of opcount operations: an equal share, with the first
+	 * opcount%threadcount threads doing one more.
+	 */
+	public static OperationBudget fixedShare(long opcount, int threadid, int threadcount, int chunksize)
+	{
+		long share=opcount/threadcount;
+		if (threadid<opcount%threadcount)
+		{
+			share++;
+		}
+		OperationBudget ret=new OperationBudget(share,chunksize);
+		//a share of nothing is not "no limit", unless the run has none
+		ret._unlimited=(opcount==0);
+		return ret;
+	}
+
+	/**
+	 * Claim the next chunk of operations.
+	 *
+	 * @return the number of operations the caller may do, 0 once the budget is exhausted
+	 */
+	public int claim()
+	{
+		if (_unlimited)
+		{
+			return _chunksize;
+		}
+
+		while (true)
+		{
+			long remaining=_remaining.get();
+			if (remaining<=0)
+			{
+				return 0;
+			}
+			int claimed=(int)Math.min(remaining,_chunksize);
+			if (_remaining.compareAndSet(remaining,remaining-claimed))
+			{
+				return claimed;
+			}
+		}
+	}
+
+	/**
+	 * Give back operations that were claimed but will not be done, so that other threads can claim them.
+	 */
+	public void release(int ops)
+	{
+		if ( (!_unlimited) && (ops>0) )
+		{
+			_remaining.addAndGet(ops);
+		}
+	}
+
+	/**
+	 * Return true if every operation has been claimed (never, for an unlimited budget).
+	 */
+	public boolean isExhausted()
+	{
+		return (!_unlimited) && (_remaining.get()<=0);
+	}
+
+	/**
+	 * Return the number of operations that have not been claimed yet (0 for an unlimited budget).
+	 */
+	public long getRemaining()
+	{
+		return _unlimited ? 0 : Math.max(0,_remaining.get());
+	}
+}
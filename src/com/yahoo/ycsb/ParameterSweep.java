@@ -0,0 +1,504 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.impl.DefaultPrettyPrinter;
+
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Runs a phase of the workload (usually the transaction phase) once for every combination of a set of
+ * property values, in a single client, and writes one table with the throughput and latency of each run.
+ * The loaded data set is reused by all the runs, and the workload is only re-initialized when a property
+ * it uses changes between runs (so, for example, sweeping the number of threads or the target throughput
+ * does not recompute the zipfian constants each time).
+ *
+ * If the iterations property is more than 1, each point is run that many times. The table then has the mean
+ * of each value, the half width of its 95% confidence interval, and whether the throughput or latency of the
+ * point differs significantly from that of the previous point.
+ *
+ * Properties to control the sweep:
+ * <UL>
+ * <LI><b>sweep.</b><i>property</i>: a comma separated list of values for <i>property</i>, e.g. sweep.threadcount=1,2,4,8 or
+ *     sweep.readproportion=0.5,0.95. Any number of properties can be swept; every combination of their values is run.
+ * <LI><b>sweep.exportfile</b>: the file to write the table of results to (default: standard output)
+ * <LI><b>sweep.format</b>: the format of the table, csv or json (default: json if the export file name ends in .json, csv otherwise)
+ * </UL>
+ */
+public class ParameterSweep
+{
+	public static final String SWEEP_PROPERTY_PREFIX="sweep.";
+
+	public static final String EXPORT_FILE_PROPERTY="sweep.exportfile";
+
+	public static final String FORMAT_PROPERTY="sweep.format";
+
+	/**
+	 * Properties that only the client uses, so changing them does not need a new workload.
+	 */
+	static final String[] CLIENT_PROPERTIES={"threadcount","target"};
+
+	/**
+	 * The per-operation measurements that go in the table.
+	 */
+	static final String[] OPERATION_MEASUREMENTS={"Operations","AverageLatency(ms)","50thPercentileLatency(ms)","99thPercentileLatency(ms)","99.9thPercentileLatency(ms)"};
+
+	Properties _props;
+	Client.Operation _operation;
+	boolean _status;
+	String _label;
+
+	/**
+	 * The names of the swept properties, and the values for each.
+	 */
+	Vector<String> _names;
+	Vector<String[]> _values;
+
+	public ParameterSweep(Properties props, Client.Operation operation, boolean status, String label)
+	{
+		_props=props;
+		_operation=operation;
+		_status=status;
+		_label=label;
+
+		_names=new Vector<String>();
+		_values=new Vector<String[]>();
+		for (String name : getSweptProperties(props))
+		{
+			String[] values=props.getProperty(SWEEP_PROPERTY_PREFIX+name).split(",");
+			for (int i=0; i<values.length; i++)
+			{
+				values[i]=values[i].trim();
+			}
+			_names.add(name);
+			_values.add(values);
+		}
+	}
+
+	/**
+	 * Return the names of the properties to sweep over, in alphabetical order.
+	 */
+	static Vector<String> getSweptProperties(Properties props)
+	{
+		Vector<String> ret=new Vector<String>();
+		for (Enumeration<?> e=props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			if ( (prop.startsWith(SWEEP_PROPERTY_PREFIX)) && (!prop.equals(EXPORT_FILE_PROPERTY)) && (!prop.equals(FORMAT_PROPERTY)) )
+			{
+				ret.add(prop.substring(SWEEP_PROPERTY_PREFIX.length()));
+			}
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	public static boolean isEnabled(Properties props)
+	{
+		return getSweptProperties(props).size()>0;
+	}
+
+	static boolean isClientProperty(String name)
+	{
+		for (String p : CLIENT_PROPERTIES)
+		{
+			if (p.equals(name))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return every combination of the swept values, the last swept property varying fastest.
+	 */
+	Vector<String[]> getPoints()
+	{
+		Vector<String[]> points=new Vector<String[]>();
+		points.add(new String[0]);
+		for (String[] values : _values)
+		{
+			Vector<String[]> next=new Vector<String[]>();
+			for (String[] point : points)
+			{
+				for (String value : values)
+				{
+					String[] p=new String[point.length+1];
+					System.arraycopy(point,0,p,0,point.length);
+					p[point.length]=value;
+					next.add(p);
+				}
+			}
+			points=next;
+		}
+		return points;
+	}
+
+	/**
+	 * Return a copy of the properties, with the swept properties set to the values of the given point.
+	 */
+	Properties getPointProperties(String[] point)
+	{
+		Properties p=new Properties();
+		for (Enumeration<?> e=_props.propertyNames(); e.hasMoreElements(); )
+		{
+			String prop=(String)e.nextElement();
+			p.setProperty(prop,_props.getProperty(prop));
+		}
+		for (int i=0; i<point.length; i++)
+		{
+			p.setProperty(_names.get(i),point[i]);
+		}
+		return p;
+	}
+
+	String describe(String[] point)
+	{
+		String ret="";
+		for (int i=0; i<point.length; i++)
+		{
+			ret+=(i>0 ? " " : "")+_names.get(i)+"="+point[i];
+		}
+		return ret;
+	}
+
+	/**
+	 * Run every point of the sweep and write the table of results. Exits if the workload or the DB can't be set up.
+	 */
+	public void run()
+	{
+		Vector<String[]> points=getPoints();
+		Vector<MemoryMeasurementsExporter> results=new Vector<MemoryMeasurementsExporter>();
+		Vector<Vector<MemoryMeasurementsExporter>> iterations=new Vector<Vector<MemoryMeasurementsExporter>>();
+
+		Workload workload=null;
+		String[] workloadpoint=null;
+
+		for (int i=0; i<points.size(); i++)
+		{
+			String[] point=points.get(i);
+			Properties p=getPointProperties(point);
+
+			System.err.println("Sweep point "+(i+1)+" of "+points.size()+": "+describe(point));
+
+			if ( (workload==null) || (needsNewWorkload(workloadpoint,point)) )
+			{
+				cleanup(workload);
+				workload=Client.loadWorkload(p);
+				workloadpoint=point;
+			}
+
+			Vector<MemoryMeasurementsExporter> runs=Iterations.run(p,workload,_operation,_status,(_label+" "+describe(point)).trim());
+
+			MemoryMeasurementsExporter m=new MemoryMeasurementsExporter();
+			try
+			{
+				Iterations.writeSummary(m,runs);
+			}
+			catch (IOException e)
+			{
+				//can't happen, the measurements are kept in memory
+			}
+			results.add(m);
+			iterations.add(runs);
+		}
+
+		cleanup(workload);
+
+		try
+		{
+			writeResults(points,results,iterations);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not export sweep results, error: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	}
+
+	boolean needsNewWorkload(String[] previous, String[] point)
+	{
+		for (int i=0; i<point.length; i++)
+		{
+			if ( (!isClientProperty(_names.get(i))) && (!point[i].equals(previous[i])) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void cleanup(Workload workload)
+	{
+		if (workload==null)
+		{
+			return;
+		}
+		try
+		{
+			workload.cleanup();
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+	}
+
+	/**
+	 * Return the operations measured in any of the runs, in the order they were first seen.
+	 */
+	static Vector<String> getOperations(Vector<MemoryMeasurementsExporter> results)
+	{
+		Vector<String> ops=new Vector<String>();
+		for (MemoryMeasurementsExporter m : results)
+		{
+			for (String metric : m.getMetrics())
+			{
+				if ( (!ops.contains(metric)) && (m.getValue(metric,"AverageLatency(ms)")!=null) && (!metric.startsWith("THREAD")) && (!metric.startsWith("AUTOTUNE")) )
+				{
+					ops.add(metric);
+				}
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Return the column names of the table, and fill in the rows: for each point, the value of each
+	 * column, or null if it was not measured for that point. With several iterations per point, the
+	 * values are means, each followed by the half width of its confidence interval, and a last column
+	 * says whether the point differs significantly from the previous one (1) or not (0).
+	 */
+	Vector<String> getTable(Vector<MemoryMeasurementsExporter> results, Vector<Vector<MemoryMeasurementsExporter>> iterations, Vector<Double[]> rows)
+	{
+		Vector<String> ops=getOperations(results);
+		boolean repeated=Iterations.getIterations(_props)>1;
+
+		//the metric and measurement of each value in the table
+		Vector<String> metrics=new Vector<String>();
+		Vector<String> measurements=new Vector<String>();
+		metrics.add("OVERALL");
+		measurements.add("RunTime(ms)");
+		metrics.add("OVERALL");
+		measurements.add("Throughput(ops/sec)");
+		for (String op : ops)
+		{
+			for (String measurement : OPERATION_MEASUREMENTS)
+			{
+				metrics.add(op);
+				measurements.add(measurement);
+			}
+		}
+
+		Vector<String> columns=new Vector<String>();
+		for (int i=0; i<metrics.size(); i++)
+		{
+			String name=(metrics.get(i).equals("OVERALL") ? "" : metrics.get(i)+" ")+measurements.get(i);
+			columns.add(name);
+			if (repeated)
+			{
+				columns.add(name+Iterations.CI_SUFFIX);
+			}
+		}
+		if (repeated)
+		{
+			columns.add("DiffersFromPrevious");
+		}
+
+		//the values compared between consecutive points: throughput and latency, not the counts
+		Vector<String> comparedmetrics=new Vector<String>();
+		Vector<String> comparedmeasurements=new Vector<String>();
+		for (int i=0; i<metrics.size(); i++)
+		{
+			if ( (!measurements.get(i).equals("RunTime(ms)")) && (!measurements.get(i).equals("Operations")) )
+			{
+				comparedmetrics.add(metrics.get(i));
+				comparedmeasurements.add(measurements.get(i));
+			}
+		}
+
+		for (int r=0; r<results.size(); r++)
+		{
+			MemoryMeasurementsExporter m=results.get(r);
+			Double[] row=new Double[columns.size()];
+			int c=0;
+			for (int i=0; i<metrics.size(); i++)
+			{
+				row[c++]=m.getValue(metrics.get(i),measurements.get(i));
+				if (repeated)
+				{
+					row[c++]=m.getValue(metrics.get(i),measurements.get(i)+Iterations.CI_SUFFIX);
+				}
+			}
+			if ( (repeated) && (r>0) )
+			{
+				Vector<String> differences=Iterations.getDifferences(iterations.get(r-1),iterations.get(r),comparedmetrics,comparedmeasurements);
+				row[c++]=differences.size()>0 ? 1.0 : 0.0;
+				if (differences.size()>0)
+				{
+					System.err.println("Sweep point "+(r+1)+" differs significantly from point "+r+" in: "+differences);
+				}
+			}
+			rows.add(row);
+		}
+		return columns;
+	}
+
+	void writeResults(Vector<String[]> points, Vector<MemoryMeasurementsExporter> results, Vector<Vector<MemoryMeasurementsExporter>> iterations) throws IOException
+	{
+		Vector<Double[]> rows=new Vector<Double[]>();
+		Vector<String> columns=getTable(results,iterations,rows);
+
+		String exportfile=_props.getProperty(EXPORT_FILE_PROPERTY);
+		String defaultformat=( (exportfile!=null) && (exportfile.endsWith(".json")) ) ? "json" : "csv";
+		String format=_props.getProperty(FORMAT_PROPERTY,defaultformat);
+
+		OutputStream out;
+		if (exportfile==null)
+		{
+			out=System.out;
+		}
+		else
+		{
+			out=new FileOutputStream(exportfile);
+		}
+
+		if (format.compareTo("json")==0)
+		{
+			writeJSON(out,points,columns,rows);
+		}
+		else
+		{
+			writeCSV(out,points,columns,rows);
+		}
+	}
+
+	static String formatValue(Double d)
+	{
+		if (d==null)
+		{
+			return "";
+		}
+		if ( (d==Math.rint(d)) && (Math.abs(d)<1e15) )
+		{
+			return Long.toString(d.longValue());
+		}
+		return d.toString();
+	}
+
+	static String quoteCSV(String s)
+	{
+		if ( (s.indexOf(',')<0) && (s.indexOf('"')<0) )
+		{
+			return s;
+		}
+		return "\""+s.replace("\"","\"\"")+"\"";
+	}
+
+	void writeCSV(OutputStream out, Vector<String[]> points, Vector<String> columns, Vector<Double[]> rows) throws IOException
+	{
+		BufferedWriter bw=new BufferedWriter(new OutputStreamWriter(out));
+
+		String header="";
+		for (String name : _names)
+		{
+			header+=quoteCSV(name)+",";
+		}
+		for (int c=0; c<columns.size(); c++)
+		{
+			header+=(c>0 ? "," : "")+quoteCSV(columns.get(c));
+		}
+		bw.write(header);
+		bw.newLine();
+
+		for (int r=0; r<rows.size(); r++)
+		{
+			String line="";
+			for (String value : points.get(r))
+			{
+				line+=quoteCSV(value)+",";
+			}
+			Double[] row=rows.get(r);
+			for (int c=0; c<row.length; c++)
+			{
+				line+=(c>0 ? "," : "")+formatValue(row[c]);
+			}
+			bw.write(line);
+			bw.newLine();
+		}
+		bw.flush();
+		if (out!=System.out)
+		{
+			bw.close();
+		}
+	}
+
+	void writeJSON(OutputStream out, Vector<String[]> points, Vector<String> columns, Vector<Double[]> rows) throws IOException
+	{
+		BufferedWriter bw=new BufferedWriter(new OutputStreamWriter(out));
+		JsonGenerator g=new JsonFactory().createJsonGenerator(bw);
+		g.setPrettyPrinter(new DefaultPrettyPrinter());
+
+		g.writeStartArray();
+		for (int r=0; r<rows.size(); r++)
+		{
+			g.writeStartObject();
+			String[] point=points.get(r);
+			for (int i=0; i<point.length; i++)
+			{
+				g.writeStringField(_names.get(i),point[i]);
+			}
+			Double[] row=rows.get(r);
+			for (int c=0; c<row.length; c++)
+			{
+				if (row[c]!=null)
+				{
+					g.writeNumberField(columns.get(c),row[c]);
+				}
+			}
+			g.writeEndObject();
+		}
+		g.writeEndArray();
+		g.flush();
+		if (out!=System.out)
+		{
+			g.close();
+		}
+		else
+		{
+			bw.newLine();
+			bw.flush();
+		}
+	}
+}
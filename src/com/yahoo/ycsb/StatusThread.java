@@ -0,0 +1,255 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
+ * 
+ * @author cooperb
+ *
+ */
+class StatusThread extends Thread
+{
+	public enum StatusType {
+		STDERR,
+		STDOUT,
+		STDOUT_TABDELIMITED,
+	}
+	
+	/**
+	 * The name of the property for the relative deviation from the median per-thread throughput
+	 * beyond which a thread is flagged as imbalanced in the status output.
+	 */
+	public static final String IMBALANCE_THRESHOLD_PROPERTY="status.imbalancethreshold";
+
+	/**
+	 * The default imbalance threshold (flag threads more than 50% away from the median).
+	 */
+	public static final String IMBALANCE_THRESHOLD_PROPERTY_DEFAULT="0.5";
+
+	Vector<Thread> _threads;
+	String _label;
+	StatusType _statusType;
+	double _imbalancethreshold;
+	
+	/**
+	 * The interval for reporting status.
+	 */
+	public static final long sleeptime=10000;
+
+	public StatusThread(Vector<Thread> threads, String label, StatusType statusType, double imbalancethreshold)
+	{
+		_threads=threads;
+		_label=label;
+		_statusType=statusType;
+		_imbalancethreshold=imbalancethreshold;
+	}
+
+	/**
+	 * Return the median of the given values. The array is sorted in place.
+	 */
+	static double median(double[] values)
+	{
+		if (values.length==0)
+		{
+			return 0;
+		}
+		Arrays.sort(values);
+		int mid=values.length/2;
+		if (values.length%2==1)
+		{
+			return values[mid];
+		}
+		return (values[mid-1]+values[mid])/2.0;
+	}
+
+	/**
+	 * Describe the threads whose throughput departs from the median of all the given rates by more than
+	 * the threshold (as a fraction of the median). Returns an empty string if all threads are in line.
+	 * 
+	 * @param threadids the ids of the threads the rates belong to
+	 * @param rates the throughput of each thread, in ops/sec
+	 * @param threshold the allowed relative deviation from the median
+	 */
+	static String describeImbalance(int[] threadids, double[] rates, double threshold)
+	{
+		double median=median(rates.clone());
+		if ( (median<=0) || (threshold<=0) )
+		{
+			return "";
+		}
+
+		DecimalFormat d = new DecimalFormat("#.##");
+		String slow="";
+		String fast="";
+		for (int i=0; i<rates.length; i++)
+		{
+			if (rates[i]<median*(1.0-threshold))
+			{
+				slow+=" "+threadids[i]+"="+d.format(rates[i]);
+			}
+			else if (rates[i]>median*(1.0+threshold))
+			{
+				fast+=" "+threadids[i]+"="+d.format(rates[i]);
+			}
+		}
+
+		if ( (slow.length()==0) && (fast.length()==0) )
+		{
+			return "";
+		}
+
+		String ret="[IMBALANCE median="+d.format(median)+" ops/sec";
+		if (slow.length()>0)
+		{
+			ret+=" slow:"+slow;
+		}
+		if (fast.length()>0)
+		{
+			ret+=" fast:"+fast;
+		}
+		return ret+"]";
+	}
+
+	/**
+	 * Run and periodically report status.
+	 */
+	public void run()
+	{
+		long st=System.currentTimeMillis();
+
+		long lasten=st;
+		long lasttotalops=0;
+		HashMap<Thread,Long> lastthreadops=new HashMap<Thread,Long>();
+		
+		boolean alldone;
+
+		do 
+		{
+			alldone=true;
+
+			long totalops=0;
+
+			long en=System.currentTimeMillis();
+
+			//threads may be added while we are running (see ConcurrencyTuner), so work on a copy
+			Vector<Thread> threads=new Vector<Thread>(_threads);
+
+			int[] threadids=new int[threads.size()];
+			double[] threadrates=new double[threads.size()];
+			int running=0;
+
+			//terminate this thread when all the worker threads are done
+			for (Thread t : threads)
+			{
+				ClientThread ct=(ClientThread)t;
+				long threadops=ct.getOpsDone();
+				totalops+=threadops;
+
+				Long lastops=lastthreadops.get(t);
+				lastthreadops.put(t,threadops);
+
+				if (t.getState()!=Thread.State.TERMINATED)
+				{
+					alldone=false;
+
+					//only compare threads that are still issuing operations; finished or parked ones would always look stalled
+					if ( (lastops!=null) && (en>lasten) && (!ct.isParked()) )
+					{
+						threadids[running]=ct.getThreadId();
+						threadrates[running]=1000.0*((double)(threadops-lastops))/((double)(en-lasten));
+						running++;
+					}
+				}
+			}
+
+			String imbalance=describeImbalance(Arrays.copyOf(threadids,running),Arrays.copyOf(threadrates,running),_imbalancethreshold);
+
+			long interval=en-st;
+			//double throughput=1000.0*((double)totalops)/((double)interval);
+
+			double curthroughput=1000.0*(((double)(totalops-lasttotalops))/((double)(en-lasten)));
+			
+			lasttotalops=totalops;
+			lasten=en;
+			
+			DecimalFormat d = new DecimalFormat("#.##");
+			
+			if(_statusType.equals(StatusType.STDERR)) {
+				if (totalops==0) {
+					System.err.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary()+imbalance);
+				}
+				else
+				{
+					System.err.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary()+imbalance);
+				}
+			}
+			else if (_statusType.equals(StatusType.STDOUT))
+			{
+				if (totalops==0)
+				{
+					System.out.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+Measurements.getMeasurements().getSummary()+imbalance);
+				}
+				else
+				{
+					System.out.println(_label+" "+(interval/1000)+" sec: "+totalops+" operations; "+d.format(curthroughput)+" current ops/sec; "+Measurements.getMeasurements().getSummary()+imbalance);
+				}
+			}
+			else if(_statusType.equals(StatusType.STDOUT_TABDELIMITED)) {
+				if (totalops==0)
+				{
+					if(_label != null) 
+					{
+						System.out.println("test\tseconds\toperations\toperations/sec\toperation type");
+						System.out.println(_label+"\t"+(interval/1000)+"\t"+totalops+"\tnone yet\t"+Measurements.getMeasurements().getSummary()+imbalance);
+					} else {
+						System.out.println("seconds\toperations\toperations/sec\toperation type");
+						System.out.println((interval/1000)+"\t"+totalops+"\tnone yet\t"+Measurements.getMeasurements().getSummary()+imbalance);
+					}
+				}
+				else
+				{
+					if(_label != null) 
+					{
+						System.out.println(_label+"\t"+(interval/1000)+"\t"+totalops+"\t"+d.format(curthroughput)+"\t"+Measurements.getMeasurements().getSummary()+imbalance);
+					} else {
+						System.out.println((interval/1000)+"\t"+totalops+"\t"+d.format(curthroughput)+"\t"+Measurements.getMeasurements().getSummary()+imbalance);
+					}
+				}
+			}
+
+			try
+			{
+				sleep(sleeptime);
+			}
+			catch (InterruptedException e)
+			{
+				//do nothing
+			}
+
+		}
+		while (!alldone);
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * Exposes the statistics of a client thread through JMX.
+ */
+public class ThreadStatistics implements ThreadStatisticsMBean
+{
+	ClientThread _thread;
+
+	ThreadStatistics(ClientThread thread)
+	{
+		_thread=thread;
+	}
+
+	public int getThreadId()
+	{
+		return _thread.getThreadId();
+	}
+
+	public long getOperations()
+	{
+		return _thread.getOpsDone();
+	}
+
+	public long getInitTime()
+	{
+		return _thread.getInitTime();
+	}
+
+	public long getRunTime()
+	{
+		return _thread.getRunTime();
+	}
+
+	public double getThroughput()
+	{
+		long runtime=_thread.getRunTime();
+		if (runtime<=0)
+		{
+			return 0;
+		}
+		return 1000.0*((double)_thread.getOpsDone())/((double)runtime);
+	}
+
+	public double getAverageLatency()
+	{
+		return _thread.getAverageLatency();
+	}
+
+	public double getMaxLatency()
+	{
+		return _thread.getMaxLatency();
+	}
+
+	public boolean isParked()
+	{
+		return _thread.isParked();
+	}
+
+	public boolean isPaused()
+	{
+		return _thread.isPaused();
+	}
+
+	public String getState()
+	{
+		return _thread.getState().toString();
+	}
+}
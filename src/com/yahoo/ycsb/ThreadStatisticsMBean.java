@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * The JMX management interface with the statistics of one client thread.
+ */
+public interface ThreadStatisticsMBean
+{
+	public int getThreadId();
+
+	public long getOperations();
+
+	/**
+	 * Return the time in ms the thread spent initializing its DB and workload state.
+	 */
+	public long getInitTime();
+
+	/**
+	 * Return the time in ms the thread has been issuing operations, not counting the time it was parked or paused.
+	 */
+	public long getRunTime();
+
+	public double getThroughput();
+
+	/**
+	 * Return the average latency in ms of the operations issued by the thread.
+	 */
+	public double getAverageLatency();
+
+	/**
+	 * Return the maximum latency in ms of the operations issued by the thread.
+	 */
+	public double getMaxLatency();
+
+	public boolean isParked();
+
+	public boolean isPaused();
+
+	/**
+	 * Return the state of the thread, e.g. RUNNABLE or TERMINATED.
+	 */
+	public String getState();
+}
@@ -0,0 +1,270 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Converts a text log of operations into a trace that TraceWorkload can replay. Each line of the log is one
+ * operation, as
+ * 
+ * <pre>time operation key [count] [fields]</pre>
+ * 
+ * separated by spaces or tabs, where the time is a number (with decimals if needed) in the time unit given,
+ * the operation is read, scan, update, insert or delete (in any case), the count is the number of records to
+ * scan, for a scan only, and the fields are a comma separated list, of field names for a read or scan, or of
+ * name=length, the length of the value written, for an update or insert. A read or scan without fields reads
+ * all of them; an update or insert without fields writes the default fields, like CoreWorkload's. Blank lines
+ * and lines starting with # are ignored, and other lines that aren't operations are skipped and counted.
+ */
+public class TraceConverter
+{
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.TraceConverter [options] log trace");
+		System.out.println("Converts a text log of operations (\"-\" for stdin) into a trace for com.yahoo.ycsb.workloads.TraceWorkload.");
+		System.out.println("Options:");
+		System.out.println("  -timeunit s|ms|us|ns: the unit of the times in the log (default: ms)");
+		System.out.println("  -fieldcount n: the number of fields written by updates and inserts without fields (default: "+DEFAULT_FIELD_COUNT+")");
+		System.out.println("  -fieldlength n: the length of the values they write (default: "+DEFAULT_FIELD_LENGTH+")");
+	}
+
+	public static final int DEFAULT_FIELD_COUNT=10;
+	public static final int DEFAULT_FIELD_LENGTH=100;
+
+	/**
+	 * Return the number of nanoseconds in a time unit.
+	 */
+	static double getUnit(String unit)
+	{
+		if (unit.equals("s"))
+		{
+			return 1e9;
+		}
+		else if (unit.equals("ms"))
+		{
+			return 1e6;
+		}
+		else if (unit.equals("us"))
+		{
+			return 1e3;
+		}
+		else if (unit.equals("ns"))
+		{
+			return 1;
+		}
+		throw new IllegalArgumentException("Unknown time unit \""+unit+"\"");
+	}
+
+	String[] _defaultfields;
+	int[] _defaultlengths;
+	double _unit;
+
+	/**
+	 * The time of the first operation, in the unit of the log, which the trace starts at.
+	 */
+	double _start=Double.NaN;
+
+	long _operations;
+	long _skipped;
+
+	public TraceConverter(double unit, int fieldcount, int fieldlength)
+	{
+		_unit=unit;
+		_defaultfields=new String[fieldcount];
+		_defaultlengths=new int[fieldcount];
+		for (int i=0; i<fieldcount; i++)
+		{
+			_defaultfields[i]="field"+i;
+			_defaultlengths[i]=fieldlength;
+		}
+	}
+
+	/**
+	 * Convert the operations of a log.
+	 */
+	public void convert(BufferedReader r, TraceWriter w) throws IOException
+	{
+		String line;
+		while ((line=r.readLine())!=null)
+		{
+			line=line.trim();
+			if ( (line.length()==0) || (line.startsWith("#")) )
+			{
+				continue;
+			}
+			try
+			{
+				if (convert(line.split("\\s+"),w))
+				{
+					_operations++;
+					continue;
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				//not an operation
+			}
+			_skipped++;
+		}
+	}
+
+	/**
+	 * Convert one line of a log.
+	 * 
+	 * @return false if it isn't an operation
+	 */
+	boolean convert(String[] parts, TraceWriter w) throws IOException
+	{
+		if (parts.length<3)
+		{
+			return false;
+		}
+		double time=Double.parseDouble(parts[0]);
+		int op=TraceRecord.getOperation(parts[1]);
+		if (op<0)
+		{
+			return false;
+		}
+		String key=parts[2];
+		int next=3;
+
+		int count=0;
+		if (op==TraceRecord.SCAN)
+		{
+			if (parts.length<4)
+			{
+				return false;
+			}
+			count=Integer.parseInt(parts[next++]);
+		}
+		if (parts.length>next+1)
+		{
+			return false;
+		}
+
+		String[] fields=null;
+		int[] lengths=null;
+		if (parts.length>next)
+		{
+			fields=parts[next].split(",");
+			if (TraceRecord.hasValues(op))
+			{
+				lengths=new int[fields.length];
+				for (int i=0; i<fields.length; i++)
+				{
+					int eq=fields[i].lastIndexOf('=');
+					if (eq<=0)
+					{
+						return false;
+					}
+					lengths[i]=Integer.parseInt(fields[i].substring(eq+1));
+					fields[i]=fields[i].substring(0,eq);
+				}
+			}
+		}
+		else if (TraceRecord.hasValues(op))
+		{
+			fields=_defaultfields;
+			lengths=_defaultlengths;
+		}
+
+		if (Double.isNaN(_start))
+		{
+			_start=time;
+		}
+		w.append(op,(long)((time-_start)*_unit),key,count,fields,lengths);
+		return true;
+	}
+
+	public static void main(String[] args)
+	{
+		String unit="ms";
+		int fieldcount=DEFAULT_FIELD_COUNT;
+		int fieldlength=DEFAULT_FIELD_LENGTH;
+
+		int argindex=0;
+		try
+		{
+			while ( (argindex<args.length-2) && (args[argindex].startsWith("-")) )
+			{
+				if (args[argindex].equals("-timeunit"))
+				{
+					unit=args[argindex+1];
+				}
+				else if (args[argindex].equals("-fieldcount"))
+				{
+					fieldcount=Integer.parseInt(args[argindex+1]);
+				}
+				else if (args[argindex].equals("-fieldlength"))
+				{
+					fieldlength=Integer.parseInt(args[argindex+1]);
+				}
+				else
+				{
+					System.out.println("Unknown option "+args[argindex]);
+					usageMessage();
+					System.exit(2);
+				}
+				argindex+=2;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Not a number: "+e.getMessage());
+			usageMessage();
+			System.exit(2);
+		}
+		if (argindex!=args.length-2)
+		{
+			usageMessage();
+			System.exit(2);
+		}
+
+		try
+		{
+			TraceConverter c=new TraceConverter(getUnit(unit),fieldcount,fieldlength);
+			String log=args[argindex];
+			BufferedReader r=new BufferedReader(log.equals("-") ? new InputStreamReader(System.in) : new FileReader(log));
+			TraceWriter w=new TraceWriter(args[argindex+1]);
+			try
+			{
+				c.convert(r,w);
+			}
+			finally
+			{
+				w.close();
+				r.close();
+			}
+			System.err.println("Converted "+c._operations+" operations, skipped "+c._skipped+" lines");
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(e.getMessage());
+			usageMessage();
+			System.exit(2);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not convert the log: "+e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Wrapper around a DB that records every operation issued through it in a trace file, which TraceWorkload can
+ * replay. All the client threads record into the same trace, set by the trace.file property. It wraps the
+ * DBWrapper, so that recording isn't counted in the latencies.
+ */
+public class TraceDB extends DB
+{
+	/**
+	 * The name of the property for the trace file to record operations in. When it is not set, they aren't recorded.
+	 */
+	public static final String TRACE_FILE_PROPERTY="trace.file";
+
+	/**
+	 * The writers of the trace files being recorded in the current run, by file.
+	 */
+	static HashMap<String,TraceWriter> _writers=new HashMap<String,TraceWriter>();
+
+	/**
+	 * Return the writer of a trace file, creating the file when it is first asked for in a run.
+	 */
+	public static synchronized TraceWriter getWriter(String file) throws IOException
+	{
+		TraceWriter w=_writers.get(file);
+		if (w==null)
+		{
+			w=new TraceWriter(file);
+			_writers.put(file,w);
+		}
+		return w;
+	}
+
+	/**
+	 * Close the trace files of the run that has just ended, once every thread has stopped recording, so that the
+	 * next run (another iteration, or the next point of a sweep) starts a trace of its own instead of adding to
+	 * this one.
+	 */
+	public static synchronized void closeWriters() throws IOException
+	{
+		try
+		{
+			for (TraceWriter w : _writers.values())
+			{
+				w.close();
+			}
+		}
+		finally
+		{
+			_writers.clear();
+		}
+	}
+
+	DB _db;
+	TraceWriter _writer;
+
+	public TraceDB(DB db, TraceWriter writer)
+	{
+		_db=db;
+		_writer=writer;
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	/**
+	 * Write out the operations recorded so far, so that the trace is complete once every thread has finished.
+	 */
+	public void cleanup() throws DBException
+	{
+		try
+		{
+			_writer.flush();
+		}
+		catch (IOException e)
+		{
+			throw new DBException(e);
+		}
+		finally
+		{
+			_db.cleanup();
+		}
+	}
+
+	void record(int op, String key, int count, Set<String> fields, HashMap<String,String> values)
+	{
+		try
+		{
+			_writer.record(op,key,count,fields,values);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not record the trace",e);
+		}
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,String> result)
+	{
+		record(TraceRecord.READ,key,0,fields,null);
+		return _db.read(table,key,fields,result);
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,String>> result)
+	{
+		record(TraceRecord.SCAN,startkey,recordcount,fields,null);
+		return _db.scan(table,startkey,recordcount,fields,result);
+	}
+
+	public int update(String table, String key, HashMap<String,String> values)
+	{
+		record(TraceRecord.UPDATE,key,0,null,values);
+		return _db.update(table,key,values);
+	}
+
+	public int insert(String table, String key, HashMap<String,String> values)
+	{
+		record(TraceRecord.INSERT,key,0,null,values);
+		return _db.insert(table,key,values);
+	}
+
+	public int delete(String table, String key)
+	{
+		record(TraceRecord.DELETE,key,0,null,null);
+		return _db.delete(table,key);
+	}
+
+	public int truncate(String table)
+	{
+		return _db.truncate(table);
+	}
+}
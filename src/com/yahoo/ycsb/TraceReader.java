@@ -0,0 +1,130 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trace of operations (see TraceRecord for the format) by mapping the file into memory, a window of up
+ * to WINDOW_SIZE bytes at a time, and decoding each operation from the mapping into a TraceRecord, without
+ * copying the file through buffers of its own.
+ */
+public class TraceReader
+{
+	public static final int WINDOW_SIZE=1<<30;
+
+	FileChannel _channel;
+	long _size;
+
+	MappedByteBuffer _window;
+
+	/**
+	 * Where the window starts in the file.
+	 */
+	long _windowstart;
+
+	public TraceReader(String file) throws IOException
+	{
+		RandomAccessFile f=new RandomAccessFile(file,"r");
+		_channel=f.getChannel();
+		_size=_channel.size();
+		map(0);
+		if ( (_size<8) || (_window.getInt()!=TraceRecord.MAGIC) )
+		{
+			close();
+			throw new IOException(file+" is not a trace");
+		}
+		int version=_window.getInt();
+		if (version!=TraceRecord.VERSION)
+		{
+			close();
+			throw new IOException(file+" is a version "+version+" trace, not "+TraceRecord.VERSION);
+		}
+	}
+
+	void map(long start) throws IOException
+	{
+		_windowstart=start;
+		_window=_channel.map(FileChannel.MapMode.READ_ONLY,start,Math.min(WINDOW_SIZE,_size-start));
+	}
+
+	/**
+	 * Read the next operation into a record.
+	 * 
+	 * @return false at the end of the trace
+	 */
+	public boolean next(TraceRecord r) throws IOException
+	{
+		int position=_window.position();
+		if (_windowstart+position>=_size)
+		{
+			return false;
+		}
+		try
+		{
+			decode(r);
+		}
+		catch (BufferUnderflowException e)
+		{
+			if (_windowstart+_window.limit()>=_size)
+			{
+				throw new IOException("The trace ends in the middle of an operation");
+			}
+			//the operation runs past the end of the window, so move the window to start with it
+			map(_windowstart+position);
+			decode(r);
+		}
+		return true;
+	}
+
+	void decode(TraceRecord r)
+	{
+		MappedByteBuffer b=_window;
+		r.op=b.get();
+		r.time=b.getLong();
+		r.keylength=b.getShort()&0xFFFF;
+		r.ensureKey(r.keylength);
+		b.get(r.key,0,r.keylength);
+		r.count=(r.op==TraceRecord.SCAN) ? b.getInt() : 0;
+		int n=b.getShort()&0xFFFF;
+		if (n==TraceRecord.ALL_FIELDS)
+		{
+			r.fieldcount=-1;
+			return;
+		}
+		r.fieldcount=n;
+		r.ensureFields(n);
+		boolean values=TraceRecord.hasValues(r.op);
+		for (int i=0; i<n; i++)
+		{
+			int length=b.getShort()&0xFFFF;
+			r.ensureField(i,length);
+			b.get(r.fields[i],0,length);
+			r.fieldlengths[i]=length;
+			r.valuelengths[i]=values ? b.getInt() : 0;
+		}
+	}
+
+	public void close() throws IOException
+	{
+		_channel.close();
+	}
+}
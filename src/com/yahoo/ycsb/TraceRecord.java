@@ -0,0 +1,138 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb;
+
+/**
+ * One operation of a trace, as read back by TraceReader. A record is decoded in place, into the same arrays
+ * every time, so that reading a trace doesn't allocate once they have grown to the largest record.
+ * 
+ * A trace file starts with MAGIC and VERSION (4 bytes each), followed by the operations in the order they were
+ * issued. Numbers are big endian and strings are UTF-8, prefixed by their length as an unsigned 2-byte number.
+ * Each operation is:
+ * <ul>
+ * <li>the operation, one byte: READ, SCAN, UPDATE, INSERT or DELETE
+ * <li>when it was issued, 8 bytes: nanoseconds since the start of the trace
+ * <li>the key
+ * <li>for a scan, the number of records to scan, 4 bytes
+ * <li>the number of fields, 2 bytes (ALL_FIELDS for a read or scan of all the fields), and each field's name,
+ * followed, for an update or insert, by the length of its value, 4 bytes (the values themselves aren't recorded)
+ * </ul>
+ */
+public class TraceRecord
+{
+	public static final int MAGIC=0x59435354;
+	public static final int VERSION=1;
+
+	public static final int READ=0;
+	public static final int SCAN=1;
+	public static final int UPDATE=2;
+	public static final int INSERT=3;
+	public static final int DELETE=4;
+
+	/**
+	 * The names of the operations, by operation.
+	 */
+	public static final String[] NAMES={"READ","SCAN","UPDATE","INSERT","DELETE"};
+
+	/**
+	 * The field count of a read or scan of all the fields.
+	 */
+	public static final int ALL_FIELDS=0xFFFF;
+
+	public int op;
+	public long time;
+
+	public byte[] key=new byte[32];
+	public int keylength;
+
+	/**
+	 * The number of records to scan.
+	 */
+	public int count;
+
+	/**
+	 * The number of fields, or -1 for all the fields.
+	 */
+	public int fieldcount;
+	public byte[][] fields=new byte[0][];
+	public int[] fieldlengths=new int[0];
+	public int[] valuelengths=new int[0];
+
+	/**
+	 * Return the operation named (in any case), or -1 if there is no such operation.
+	 */
+	public static int getOperation(String name)
+	{
+		for (int i=0; i<NAMES.length; i++)
+		{
+			if (NAMES[i].equalsIgnoreCase(name))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return true if the operation has values, whose lengths are recorded with its fields.
+	 */
+	public static boolean hasValues(int op)
+	{
+		return (op==UPDATE) || (op==INSERT);
+	}
+
+	/**
+	 * Make room for a key of the given length.
+	 */
+	void ensureKey(int length)
+	{
+		if (key.length<length)
+		{
+			key=new byte[Math.max(length,key.length*2)];
+		}
+	}
+
+	/**
+	 * Make room for the given number of fields.
+	 */
+	void ensureFields(int n)
+	{
+		if (fields.length<n)
+		{
+			byte[][] f=new byte[Math.max(n,fields.length*2)][];
+			System.arraycopy(fields,0,f,0,fields.length);
+			for (int i=fields.length; i<f.length; i++)
+			{
+				f[i]=new byte[16];
+			}
+			fields=f;
+			fieldlengths=new int[f.length];
+			valuelengths=new int[f.length];
+		}
+	}
+
+	/**
+	 * Make room for a name of the given length for field i.
+	 */
+	void ensureField(int i, int length)
+	{
+		if (fields[i].length<length)
+		{
+			fields[i]=new byte[Math.max(length,fields[i].length*2)];
+		}
+	}
+}
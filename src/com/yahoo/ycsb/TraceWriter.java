@@ -0,0 +1,240 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Writes a trace of operations (see TraceRecord for the format). Operations are encoded into a large direct
+ * buffer, which is written to the file's channel whenever it fills up. A writer can be shared by any number of
+ * threads: each thread encodes its operation into a buffer of its own, then it is timestamped and copied to the
+ * shared buffer under the writer's lock, so the trace is in the order the operations were issued in while the lock
+ * is only held for the copy.
+ */
+public class TraceWriter
+{
+	public static final int BUFFER_SIZE=1024*1024;
+
+	/**
+	 * The initial size of the buffer each thread encodes its operations into; it grows to the largest operation.
+	 */
+	public static final int ENCODE_BUFFER_SIZE=4096;
+
+	static final Charset UTF8=Charset.forName("UTF-8");
+
+	/**
+	 * The offset of the time in an encoded operation, after the operation byte.
+	 */
+	static final int TIME_OFFSET=1;
+
+	/**
+	 * Each thread's buffer to encode operations into.
+	 */
+	static final ThreadLocal<ByteBuffer> ENCODE_BUFFER=new ThreadLocal<ByteBuffer>()
+	{
+		@Override
+		protected ByteBuffer initialValue()
+		{
+			return ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+		}
+	};
+
+	FileChannel _channel;
+	ByteBuffer _buffer;
+
+	/**
+	 * When the trace started, by System.nanoTime().
+	 */
+	long _start;
+
+	/**
+	 * Create a trace file, replacing any that exists.
+	 */
+	public TraceWriter(String file) throws IOException
+	{
+		_channel=new FileOutputStream(file).getChannel();
+		_buffer=ByteBuffer.allocateDirect(BUFFER_SIZE);
+		_buffer.putInt(TraceRecord.MAGIC);
+		_buffer.putInt(TraceRecord.VERSION);
+		_start=System.nanoTime();
+	}
+
+	/**
+	 * Append an operation issued now.
+	 * 
+	 * @param fields the fields read or scanned, or null for all of them
+	 * @param values the values written, for an update or insert
+	 */
+	public void record(int op, String key, int count, Set<String> fields, HashMap<String,String> values) throws IOException
+	{
+		String[] names=null;
+		int[] lengths=null;
+		if (values!=null)
+		{
+			names=values.keySet().toArray(new String[values.size()]);
+			lengths=new int[names.length];
+			for (int i=0; i<names.length; i++)
+			{
+				lengths[i]=values.get(names[i]).length();
+			}
+		}
+		else if (fields!=null)
+		{
+			names=fields.toArray(new String[fields.size()]);
+		}
+		//the time is filled in under the lock, so that times never go backwards in the trace
+		ByteBuffer b=encode(op,0,key,count,names,lengths);
+		synchronized (this)
+		{
+			b.putLong(TIME_OFFSET,System.nanoTime()-_start);
+			put(b);
+		}
+	}
+
+	/**
+	 * Append an operation issued at the given time, in nanoseconds since the start of the trace.
+	 * 
+	 * @param fields the fields of the operation, or null for a read or scan of all of them
+	 * @param valuelengths the lengths of the values of the fields, for an update or insert
+	 */
+	public void append(int op, long time, String key, int count, String[] fields, int[] valuelengths) throws IOException
+	{
+		ByteBuffer b=encode(op,time,key,count,fields,valuelengths);
+		synchronized (this)
+		{
+			put(b);
+		}
+	}
+
+	/**
+	 * Encode an operation into the calling thread's buffer, and return the buffer, ready to be read.
+	 */
+	static ByteBuffer encode(int op, long time, String key, int count, String[] fields, int[] valuelengths) throws IOException
+	{
+		boolean values=TraceRecord.hasValues(op);
+		byte[] k=key.getBytes(UTF8);
+		if ( (k.length>0xFFFF) || ((fields!=null) && (fields.length>=TraceRecord.ALL_FIELDS)) )
+		{
+			throw new IOException("Operation on "+key+" is too large for a trace");
+		}
+		int size=1+8+2+k.length+((op==TraceRecord.SCAN) ? 4 : 0)+2;
+		byte[][] names=null;
+		if (fields!=null)
+		{
+			names=new byte[fields.length][];
+			for (int i=0; i<fields.length; i++)
+			{
+				names[i]=fields[i].getBytes(UTF8);
+				if (names[i].length>0xFFFF)
+				{
+					throw new IOException("Field "+fields[i]+" is too long for a trace");
+				}
+				size+=2+names[i].length+(values ? 4 : 0);
+			}
+		}
+
+		ByteBuffer b=ENCODE_BUFFER.get();
+		if (b.capacity()<size)
+		{
+			b=ByteBuffer.allocate(size);
+			ENCODE_BUFFER.set(b);
+		}
+		b.clear();
+
+		b.put((byte)op);
+		b.putLong(time);
+		b.putShort((short)k.length);
+		b.put(k);
+		if (op==TraceRecord.SCAN)
+		{
+			b.putInt(count);
+		}
+		if (names==null)
+		{
+			b.putShort((short)TraceRecord.ALL_FIELDS);
+		}
+		else
+		{
+			b.putShort((short)names.length);
+			for (int i=0; i<names.length; i++)
+			{
+				b.putShort((short)names[i].length);
+				b.put(names[i]);
+				if (values)
+				{
+					b.putInt(valuelengths[i]);
+				}
+			}
+		}
+		b.flip();
+		return b;
+	}
+
+	/**
+	 * Copy an encoded operation to the shared buffer, writing the buffer out first if it is too full. The caller
+	 * holds the lock.
+	 */
+	void put(ByteBuffer b) throws IOException
+	{
+		if (_buffer.remaining()<b.remaining())
+		{
+			drain();
+			if (_buffer.capacity()<b.remaining())
+			{
+				//too large for the buffer
+				write(b);
+				return;
+			}
+		}
+		_buffer.put(b);
+	}
+
+	void write(ByteBuffer b) throws IOException
+	{
+		while (b.hasRemaining())
+		{
+			_channel.write(b);
+		}
+	}
+
+	void drain() throws IOException
+	{
+		_buffer.flip();
+		write(_buffer);
+		_buffer.clear();
+	}
+
+	/**
+	 * Write out the operations appended so far.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		drain();
+	}
+
+	public synchronized void close() throws IOException
+	{
+		drain();
+		_channel.close();
+	}
+}
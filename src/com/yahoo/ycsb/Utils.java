@@ -30,6 +30,15 @@ public class Utils
        * Generate a random ASCII string of a given length.
        */
       public static String ASCIIString(int length)
+      {
+	 return ASCIIString(length,random);
+      }
+
+      /**
+       * Generate a random ASCII string of a given length, drawing the random bytes from the given source
+       * (typically the calling thread's own stream, rather than the one shared by all threads).
+       */
+      public static String ASCIIString(int length, Random random)
       {
 	 int interval='~'-' '+1;
 	
@@ -46,11 +55,12 @@ public class Utils
       }
       
       /**
-       * Hash an integer value.
+       * Hash a long value, e.g. a key number. The hash is 64 bits wide, so that keyspaces of more than
+       * 2^31 records hash without collisions piling up.
        */
-      public static int hash(int val)
+      public static long hash(long val)
       {
-	 return FNVhash32(val);
+	 return FNVhash64(val);
       }
 	
       public static final int FNV_offset_basis_32=0x811c9dc5;
@@ -17,8 +17,11 @@
 
 package com.yahoo.ycsb;
 
+import java.io.IOException;
 import java.util.Properties;
 
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
 /**
  * One experiment scenario. One object of this type will
  * be instantiated and shared among all client threads. This class
@@ -32,12 +35,21 @@ import java.util.Properties;
  * 2 machines, the first machine should have insertstart=0 and the second insertstart=500000. Additionally,
  * the "insertcount" property, which is interpreted by Client, can be used to tell each instance of the
  * client how many inserts to do. In the example above, both clients should have insertcount=500000.
+ * 
+ * You should also support the "seed" property, by drawing all random choices from streams derived from the
+ * seed and the thread id (see RandomStream.forThread()), so that a run can be replayed. Client sets a seed
+ * of its own, and records it with the results, when none is given.
  */
 public abstract class Workload
 {
 	public static final String INSERT_START_PROPERTY="insertstart";
 	
 	public static final String INSERT_START_PROPERTY_DEFAULT="0";
+
+	/**
+	 * The seed from which each thread's random choices are derived.
+	 */
+	public static final String SEED_PROPERTY="seed";
 	
       /**
        * Initialize the scenario. Create any generators and other shared objects here.
@@ -64,6 +76,22 @@ public abstract class Workload
 	 return null;
       }
       
+      /**
+       * Clean up the state of a client thread, once it has done all its operations. Called in that thread, with
+       * the object initThread() returned for it, for example to give back resources it has reserved but not used.
+       */
+      public void cleanupThread(Object threadstate) throws WorkloadException
+      {
+      }
+
+      /**
+       * Export measurements of the workload's own, such as of work it does outside the client threads. Called
+       * when the client exports its measurements, after those of the operations.
+       */
+      public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+      {
+      }
+
       /**
        * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
        */
@@ -0,0 +1,128 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter whose values have to be acknowledged before they count as generated: lastValue() is the highest value
+ * below which every value has been acknowledged. Used for insert keys, so that a key is handed out for an insert
+ * right away, but readers (which choose keys up to lastValue()) only see it once its insert, and the inserts of all
+ * the keys before it, have completed.
+ * 
+ * Acknowledgements are kept in a ring covering the window of values from lastValue()+1 on: the slot of each value
+ * holds the value once acknowledged. Whoever acknowledges the value just past lastValue() moves it on, one
+ * compare-and-swap per value, over every acknowledged value that follows. None of this takes a lock. A value
+ * that is a whole window ahead of lastValue() has to wait to be acknowledged until lastValue() catches up.
+ */
+public class AcknowledgedCounterGenerator extends CounterGenerator
+{
+	/**
+	 * The default number of values that can be acknowledged ahead of lastValue().
+	 */
+	public static final int WINDOW_SIZE_DEFAULT=1<<20;
+
+	AtomicLongArray _acks;
+	int _window;
+
+	/**
+	 * One more than lastValue(): the lowest value not acknowledged yet.
+	 */
+	AtomicLong _limit;
+
+	volatile boolean _warned;
+
+	/**
+	 * Create a counter that starts at countstart, with the default window.
+	 */
+	public AcknowledgedCounterGenerator(long countstart)
+	{
+		this(countstart,WINDOW_SIZE_DEFAULT);
+	}
+
+	/**
+	 * Create a counter that starts at countstart, allowing values up to window ahead of lastValue() to be acknowledged.
+	 */
+	public AcknowledgedCounterGenerator(long countstart, int window)
+	{
+		super(countstart);
+		_window=window;
+		_acks=new AtomicLongArray(window);
+		//no value is in its slot yet; every value is at least countstart
+		for (int i=0; i<window; i++)
+		{
+			_acks.set(i,countstart-1);
+		}
+		_limit=new AtomicLong(countstart);
+	}
+
+	/**
+	 * Mark a value as done (for example, its insert has completed), so that lastValue() can move past it.
+	 */
+	public void acknowledge(long value)
+	{
+		while (value>=_limit.get()+_window)
+		{
+			if (!_warned)
+			{
+				_warned=true;
+				System.err.println("WARNING: more than "+_window+" keys acknowledged ahead of the oldest key still in flight; waiting for it");
+			}
+			Thread.yield();
+		}
+		_acks.set(slot(value),value);
+
+		//move the limit over every acknowledged value that follows it. If the value just past the limit is being
+		//acknowledged by another thread right now, either it sees our value or we see its, so the limit can't get stuck
+		while (true)
+		{
+			long limit=_limit.get();
+			if (_acks.get(slot(limit))!=limit)
+			{
+				return;
+			}
+			_limit.compareAndSet(limit,limit+1);
+		}
+	}
+
+	/**
+	 * Acknowledge the values from first up to (but not including) end, for example the rest of a lease that will
+	 * not be used, so that they don't hold lastValue() back.
+	 */
+	public void acknowledge(long first, long end)
+	{
+		for (long v=first; v<end; v++)
+		{
+			acknowledge(v);
+		}
+	}
+
+	int slot(long value)
+	{
+		return (int)(value%_window);
+	}
+
+	/**
+	 * Return the highest value below which every value has been acknowledged.
+	 */
+	@Override
+	public long lastValue()
+	{
+		return _limit.get()-1;
+	}
+}
@@ -0,0 +1,115 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.Random;
+
+/**
+ * Draws positions 0..n-1 with given weights by Walker's alias method. Each position has a column in the table,
+ * holding some of its own probability and the rest of another position's (its alias). A draw picks a column
+ * uniformly and then either the position or its alias, so it takes one random number and constant time however
+ * many positions there are. The table is never changed once built, so any number of threads can draw from it.
+ */
+class AliasTable
+{
+	double[] _prob;
+	int[] _alias;
+
+	/**
+	 * Build the table for the given weights, which needn't add up to 1 but must add up to more than 0.
+	 */
+	AliasTable(double[] weights)
+	{
+		int n=weights.length;
+		_prob=new double[n];
+		_alias=new int[n];
+
+		double sum=0;
+		for (double w : weights)
+		{
+			sum+=w;
+		}
+
+		//scale the probabilities so that they average 1, then pair each column below 1 with one above 1
+		double[] scaled=new double[n];
+		int[] small=new int[n];
+		int[] large=new int[n];
+		int nsmall=0;
+		int nlarge=0;
+		for (int i=0; i<n; i++)
+		{
+			scaled[i]=weights[i]*n/sum;
+			if (scaled[i]<1.0)
+			{
+				small[nsmall++]=i;
+			}
+			else
+			{
+				large[nlarge++]=i;
+			}
+		}
+
+		while ( (nsmall>0) && (nlarge>0) )
+		{
+			int s=small[--nsmall];
+			int l=large[--nlarge];
+			_prob[s]=scaled[s];
+			_alias[s]=l;
+			scaled[l]=(scaled[l]+scaled[s])-1.0;
+			if (scaled[l]<1.0)
+			{
+				small[nsmall++]=l;
+			}
+			else
+			{
+				large[nlarge++]=l;
+			}
+		}
+
+		//what is left is 1 but for rounding
+		while (nlarge>0)
+		{
+			int l=large[--nlarge];
+			_prob[l]=1.0;
+			_alias[l]=l;
+		}
+		while (nsmall>0)
+		{
+			int s=small[--nsmall];
+			_prob[s]=1.0;
+			_alias[s]=s;
+		}
+	}
+
+	/**
+	 * Return the number of positions.
+	 */
+	int size()
+	{
+		return _prob.length;
+	}
+
+	/**
+	 * Draw a position.
+	 */
+	int next(Random random)
+	{
+		double u=random.nextDouble()*_prob.length;
+		int column=(int)u;
+		return (u-column<_prob[column]) ? column : _alias[column];
+	}
+}
@@ -17,33 +17,67 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Generates a sequence of integers 0, 1, ...
+ * Generates a sequence of integers 0, 1, ... Drawing is lock-free, so threads sharing a counter don't queue for it.
  */
 public class CounterGenerator extends IntegerGenerator
 {
-	int counter;
+	AtomicLong counter;
 
 	/**
 	 * Create a counter that starts at countstart
 	 */
-	public CounterGenerator(int countstart)
+	public CounterGenerator(long countstart)
 	{
-		counter=countstart;
-		setLastInt(countstart-1);
+		counter=new AtomicLong(countstart);
 	}
 	
 	/**
-	 * If the generator returns numeric (integer) values, return the next value as an int. Default is to return -1, which
-	 * is appropriate for generators that do not return numeric values.
+	 * Return the next value of the counter.
+	 */
+	public long nextValue() 
+	{
+		return counter.getAndIncrement();
+	}
+
+	/**
+	 * Take the next n values of the counter at once, and return the first of them. The caller hands them out
+	 * itself, so that a thread needing many values touches the shared counter once for all of them.
+	 */
+	public long lease(int n)
+	{
+		return counter.getAndAdd(n);
+	}
+
+	/**
+	 * Return the highest value handed out so far, by nextValue() or lease(). It is read off the counter rather
+	 * than recorded by each draw, so that it never goes backwards when threads draw concurrently.
 	 */
-	public synchronized int nextInt() 
+	@Override
+	public long lastValue()
 	{
-		int lastint=counter;
-		counter++;
-		setLastInt(lastint);
-		return lastint;
+		return counter.get()-1;
 	}
 
+	@Override
+	public int lastInt()
+	{
+		return (int)lastValue();
+	}
+
+	@Override
+	public String lastString()
+	{
+		return Long.toString(lastValue());
+	}
 
+	/**
+	 * A counter keeps growing, so it has no mean.
+	 */
+	public double mean()
+	{
+		throw new UnsupportedOperationException("A counter has no mean");
+	}
 }
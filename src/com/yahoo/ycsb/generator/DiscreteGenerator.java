@@ -24,62 +24,113 @@ import com.yahoo.ycsb.WorkloadException;
 
 /**
  * Generates a distribution by choosing from a discrete set of values.
+ * 
+ * Values are drawn with Walker's alias method (see AliasTable), from a table built once the values have been added,
+ * so a draw takes one random number and constant time however many values there are. nextIndex() returns the position of the value drawn, in the order the
+ * values were added, so that callers can look up what to do in a table of their own instead of comparing strings.
  */
 public class DiscreteGenerator extends Generator
 {
-	class Pair
+	/**
+	 * The alias table and the values it draws from. It is rebuilt after values are added, and never changed once
+	 * built, so that threads drawing from it need no locking.
+	 */
+	static class Table extends AliasTable
 	{
-		public double _weight;
-		public String _value;
+		String[] _values;
+
+		Table(Vector<Double> weights, Vector<String> values)
+		{
+			super(toArray(weights));
+			_values=values.toArray(new String[values.size()]);
+		}
 
-		Pair(double weight, String value)
+		static double[] toArray(Vector<Double> weights)
 		{
-			_weight=weight;
-			_value=value;
+			double[] ret=new double[weights.size()];
+			for (int i=0; i<ret.length; i++)
+			{
+				ret[i]=weights.get(i);
+			}
+			return ret;
 		}
 	}
 
-	Vector<Pair> _values;
+	Vector<Double> _weights;
+	Vector<String> _values;
+	volatile Table _table;
 	Random _random;
 	String _lastvalue;
 
 	public DiscreteGenerator()
 	{
-		_values=new Vector<Pair>();
+		_weights=new Vector<Double>();
+		_values=new Vector<String>();
 		_random=new Random();
 		_lastvalue=null;
 	}
 
 	/**
-	 * Generate the next string in the distribution.
+	 * Return the alias table, building it if values have been added since it was last built.
 	 */
-	public String nextString()
+	Table getTable()
 	{
-		double sum=0;
-
-		for (Pair p : _values)
+		Table table=_table;
+		if (table==null)
 		{
-			sum+=p._weight;
-		}
-
-		double val=_random.nextDouble();
-
-		for (Pair p : _values)
-		{
-			if (val<p._weight/sum)
+			synchronized (this)
 			{
-				return p._value;
+				if (_table==null)
+				{
+					if (_values.size()==0)
+					{
+						//should never get here.
+						System.out.println("oops. should not get here.");
+
+						System.exit(0);
+					}
+					_table=new Table(_weights,_values);
+				}
+				table=_table;
 			}
-
-			val-=p._weight/sum;
 		}
+		return table;
+	}
 
-		//should never get here.
-		System.out.println("oops. should not get here.");
+	/**
+	 * Return the position of the next value in the distribution, in the order the values were added.
+	 */
+	public int nextIndex()
+	{
+		return getTable().next(_random);
+	}
+
+	/**
+	 * Return the position of the next value in the distribution, drawing the random number from the given source.
+	 */
+	public int nextIndex(Random random)
+	{
+		return getTable().next(random);
+	}
 
-		System.exit(0);
+	/**
+	 * Generate the next string in the distribution.
+	 */
+	public String nextString()
+	{
+		return nextString(_random);
+	}
 
-		return null;
+	/**
+	 * Generate the next string in the distribution, drawing the random number from the given source.
+	 */
+	@Override
+	public String nextString(Random random)
+	{
+		Table table=getTable();
+		String ret=table._values[table.next(random)];
+		_lastvalue=ret;
+		return ret;
 	}
 
 	/**
@@ -107,9 +158,30 @@ public class DiscreteGenerator extends Generator
 		return _lastvalue;
 	}
 
-	public void addValue(double weight, String value)
+	/**
+	 * Add a value, to be drawn with probability proportional to weight. Add all the values before drawing any.
+	 */
+	public synchronized void addValue(double weight, String value)
+	{
+		_weights.add(weight);
+		_values.add(value);
+		_table=null;
+	}
+
+	/**
+	 * Return the number of values added.
+	 */
+	public int size()
+	{
+		return _values.size();
+	}
+
+	/**
+	 * Return the value at the given position, as returned by nextIndex().
+	 */
+	public String getValue(int index)
 	{
-		_values.add(new Pair(weight,value));
+		return _values.get(index);
 	}
 
 }
@@ -0,0 +1,97 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.Random;
+
+/**
+ * Generates non-negative integers with an exponentially decaying distribution: 0 is the most likely, and each
+ * larger integer a constant factor less likely than the one before. Subtracted from the newest key, this gives
+ * the recency of time series reads, which fall off with age more steeply than under SkewedLatestGenerator.
+ * 
+ * The distribution is set either by its mean, or by saying that a given percentile of the values lie below a
+ * range (for example, 95% of them below 1000). A draw is one logarithm, by inverting the distribution function.
+ */
+public class ExponentialGenerator extends IntegerGenerator
+{
+	/**
+	 * The rate of the distribution: the mean is 1/gamma.
+	 */
+	double _gamma;
+
+	Random _random;
+
+	/**
+	 * Create a generator with the given mean.
+	 */
+	public ExponentialGenerator(double mean)
+	{
+		if (mean<=0)
+		{
+			throw new IllegalArgumentException("The mean of an exponential distribution must be positive");
+		}
+		_gamma=1.0/mean;
+		_random=new Random();
+	}
+
+	/**
+	 * Create a generator for which the given percentile of the values are below range.
+	 * 
+	 * @param percentile the percentile, between 0 and 100 (exclusive)
+	 * @param range the value below which that percentile of the values lie
+	 */
+	public ExponentialGenerator(double percentile, double range)
+	{
+		this(meanFor(percentile,range));
+	}
+
+	/**
+	 * Return the mean of the distribution for which the given percentile of the values are below range.
+	 */
+	static double meanFor(double percentile, double range)
+	{
+		if ( (percentile<=0) || (percentile>=100) )
+		{
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		}
+		return range/-Math.log(1.0-percentile/100.0);
+	}
+
+	@Override
+	public long nextValue()
+	{
+		return nextValue(_random);
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		//1-u is in (0,1], so the logarithm is finite
+		long ret=(long)(-Math.log(1.0-random.nextDouble())/_gamma);
+		setLastValue(ret);
+		return ret;
+	}
+
+	/**
+	 * The mean of the integers drawn, which are the continuous values rounded down: 1/(e^gamma-1).
+	 */
+	@Override
+	public double mean()
+	{
+		return 1.0/Math.expm1(_gamma);
+	}
+}
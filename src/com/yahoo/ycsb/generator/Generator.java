@@ -17,6 +17,8 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.Random;
+
 /**
  * An expression that generates a sequence of string values, following some distribution (Uniform, Zipfian, Sequential, etc.)
  */
@@ -27,6 +29,16 @@ public abstract class Generator
 	 */
 	public abstract String nextString();
 
+	/**
+	 * Generate the next string in the distribution, drawing any randomness from the given source rather than the
+	 * generator's own, which all the threads using the generator would share. Generators that don't draw random
+	 * numbers needn't override this.
+	 */
+	public String nextString(Random random)
+	{
+		return nextString();
+	}
+
 	/**
 	 * Return the previous string generated by the distribution; e.g., returned from the last nextString() call. 
 	 * Calling lastString() should not advance the distribution or have any side effects. If nextString() has not yet 
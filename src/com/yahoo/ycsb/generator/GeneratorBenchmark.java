@@ -0,0 +1,332 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import com.yahoo.ycsb.measurements.Statistics;
+
+/**
+ * Measures how long each generator takes to produce a value, in ns per call, so that changes to the generators
+ * can be checked for speed. Each generator is warmed up first so that the JIT has compiled it, then timed over
+ * several rounds; the mean and 95% confidence interval over the rounds are reported. The values generated are
+ * folded into a result that is printed at the end, so the JIT can't drop the calls being timed.
+ *
+ * With -threads, that many threads draw from the same generators at once, and the time reported is the wall clock
+ * time per value over all the threads, so a generator that scales gets faster as threads are added. The "-stream"
+ * benchmarks draw from each thread's own RandomStream, the others from the generator's shared Random.
+ *
+ * Run it with "ant bench", or directly:
+ *
+ *   java -cp build/ycsb.jar com.yahoo.ycsb.generator.GeneratorBenchmark [-rounds n] [-ops n] [-threads n] [name ...]
+ */
+public class GeneratorBenchmark
+{
+	public static final String ROUNDS_DEFAULT="10";
+	public static final String OPS_DEFAULT="2000000";
+	public static final String THREADS_DEFAULT="1";
+	public static final int ITEMS=10000000;
+
+	/**
+	 * Folded into by every call timed.
+	 */
+	static long _sink;
+
+	static synchronized void fold(long sink)
+	{
+		_sink+=sink;
+	}
+
+	/**
+	 * One benchmark: draw ops values from a generator.
+	 */
+	static abstract class Benchmark
+	{
+		String _name;
+		boolean _stream;
+
+		Benchmark(String name, boolean stream)
+		{
+			_name=name;
+			_stream=stream;
+		}
+
+		/**
+		 * Draw ops values, from the calling thread's random stream if this benchmark uses one.
+		 */
+		abstract void run(int ops, Random random);
+	}
+
+	/**
+	 * Draw primitive values from a numeric generator.
+	 */
+	static class ValueBenchmark extends Benchmark
+	{
+		IntegerGenerator _gen;
+
+		ValueBenchmark(String name, IntegerGenerator gen, boolean stream)
+		{
+			super(name,stream);
+			_gen=gen;
+		}
+
+		void run(int ops, Random random)
+		{
+			long sink=0;
+			if (_stream)
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextValue(random);
+				}
+			}
+			else
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextValue();
+				}
+			}
+			fold(sink);
+		}
+	}
+
+	/**
+	 * Draw strings from a generator.
+	 */
+	static class StringBenchmark extends Benchmark
+	{
+		Generator _gen;
+
+		StringBenchmark(String name, Generator gen, boolean stream)
+		{
+			super(name,stream);
+			_gen=gen;
+		}
+
+		void run(int ops, Random random)
+		{
+			long sink=0;
+			if (_stream)
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextString(random).length();
+				}
+			}
+			else
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextString().length();
+				}
+			}
+			fold(sink);
+		}
+	}
+
+	/**
+	 * Draw positions from a discrete generator, as a workload choosing its next operation does.
+	 */
+	static class IndexBenchmark extends Benchmark
+	{
+		DiscreteGenerator _gen;
+
+		IndexBenchmark(String name, DiscreteGenerator gen, boolean stream)
+		{
+			super(name,stream);
+			_gen=gen;
+		}
+
+		void run(int ops, Random random)
+		{
+			long sink=0;
+			if (_stream)
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextIndex(random);
+				}
+			}
+			else
+			{
+				for (int i=0; i<ops; i++)
+				{
+					sink+=_gen.nextIndex();
+				}
+			}
+			fold(sink);
+		}
+	}
+
+	/**
+	 * Run a benchmark in several threads at once, each with its own stream, and return the wall clock time in ns.
+	 */
+	static long runThreads(final Benchmark b, final int ops, int threads, RandomStream root)
+	{
+		Thread[] t=new Thread[threads];
+		for (int i=0; i<threads; i++)
+		{
+			final Random random=root.split();
+			t[i]=new Thread()
+			{
+				public void run()
+				{
+					b.run(ops,random);
+				}
+			};
+		}
+
+		long st=System.nanoTime();
+		for (int i=0; i<threads; i++)
+		{
+			t[i].start();
+		}
+		for (int i=0; i<threads; i++)
+		{
+			try
+			{
+				t[i].join();
+			}
+			catch (InterruptedException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return System.nanoTime()-st;
+	}
+
+	static Benchmark[] getBenchmarks()
+	{
+		DiscreteGenerator discrete=new DiscreteGenerator();
+		discrete.addValue(0.5,"READ");
+		discrete.addValue(0.45,"UPDATE");
+		discrete.addValue(0.05,"INSERT");
+
+		CounterGenerator basis=new CounterGenerator(ITEMS);
+
+		//a histogram of 1000 buckets of varying weight
+		double[] buckets=new double[1000];
+		Random weights=new RandomStream(0);
+		for (int i=0; i<buckets.length; i++)
+		{
+			buckets[i]=weights.nextDouble();
+		}
+
+		Benchmark[] ret={
+			new ValueBenchmark("counter",new CounterGenerator(0),false),
+			new ValueBenchmark("uniform",new UniformIntegerGenerator(0,ITEMS-1),false),
+			new ValueBenchmark("uniform-stream",new UniformIntegerGenerator(0,ITEMS-1),true),
+			new ValueBenchmark("zipfian",new ZipfianGenerator(ITEMS),false),
+			new ValueBenchmark("zipfian-stream",new ZipfianGenerator(ITEMS),true),
+			new ValueBenchmark("scrambledzipfian",new ScrambledZipfianGenerator(ITEMS),false),
+			new ValueBenchmark("scrambledzipfian-stream",new ScrambledZipfianGenerator(ITEMS),true),
+			new ValueBenchmark("latest",new SkewedLatestGenerator(basis),false),
+			new ValueBenchmark("latest-stream",new SkewedLatestGenerator(basis),true),
+			new ValueBenchmark("hotspot-stream",new HotspotIntegerGenerator(0,ITEMS-1,0.2,0.8),true),
+			new ValueBenchmark("movinghotspot-stream",new MovingHotspotGenerator(0,ITEMS-1,0.2,0.8,1000,10000),true),
+			new ValueBenchmark("exponential-stream",new ExponentialGenerator(95,ITEMS),true),
+			new ValueBenchmark("sequential",new SequentialGenerator(0,ITEMS-1),false),
+			new ValueBenchmark("empirical-stream",new HistogramGenerator(0,ITEMS-1,buckets),true),
+			new StringBenchmark("uniform-string",new UniformIntegerGenerator(0,ITEMS-1),false),
+			new StringBenchmark("discrete",discrete,false),
+			new StringBenchmark("discrete-stream",discrete,true),
+			new IndexBenchmark("discrete-index",discrete,false),
+			new IndexBenchmark("discrete-index-stream",discrete,true),
+		};
+		return ret;
+	}
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.generator.GeneratorBenchmark [options] [benchmark ...]");
+		System.out.println("Options:");
+		System.out.println("  -rounds n: the number of timed rounds for each generator (default: "+ROUNDS_DEFAULT+")");
+		System.out.println("  -ops n: the number of values drawn in each round, by each thread (default: "+OPS_DEFAULT+")");
+		System.out.println("  -threads n: the number of threads drawing values at once (default: "+THREADS_DEFAULT+")");
+		System.out.print("Benchmarks (default: all):");
+		for (Benchmark b : getBenchmarks())
+		{
+			System.out.print(" "+b._name);
+		}
+		System.out.println();
+	}
+
+	public static void main(String[] args)
+	{
+		int rounds=Integer.parseInt(ROUNDS_DEFAULT);
+		int ops=Integer.parseInt(OPS_DEFAULT);
+		int threads=Integer.parseInt(THREADS_DEFAULT);
+
+		int argindex=0;
+		while ( (argindex<args.length) && (args[argindex].startsWith("-")) )
+		{
+			if ( (args[argindex].compareTo("-rounds")==0) && (argindex+1<args.length) )
+			{
+				rounds=Integer.parseInt(args[argindex+1]);
+				argindex+=2;
+			}
+			else if ( (args[argindex].compareTo("-ops")==0) && (argindex+1<args.length) )
+			{
+				ops=Integer.parseInt(args[argindex+1]);
+				argindex+=2;
+			}
+			else if ( (args[argindex].compareTo("-threads")==0) && (argindex+1<args.length) )
+			{
+				threads=Integer.parseInt(args[argindex+1]);
+				argindex+=2;
+			}
+			else
+			{
+				usageMessage();
+				System.exit(1);
+			}
+		}
+
+		RandomStream root=new RandomStream();
+		DecimalFormat d=new DecimalFormat("0.00");
+		System.out.println("Benchmark\tns/op\tCI95(+/-)");
+		for (Benchmark b : getBenchmarks())
+		{
+			boolean selected=(argindex==args.length);
+			for (int i=argindex; i<args.length; i++)
+			{
+				selected|=args[i].equals(b._name);
+			}
+			if (!selected)
+			{
+				continue;
+			}
+
+			//warm up, so that what is timed is the compiled code
+			for (int i=0; i<3; i++)
+			{
+				runThreads(b,ops,threads,root);
+			}
+
+			double[] nsperop=new double[rounds];
+			for (int r=0; r<rounds; r++)
+			{
+				nsperop[r]=((double)runThreads(b,ops,threads,root))/((double)ops*threads);
+			}
+			System.out.println(b._name+"\t"+d.format(Statistics.mean(nsperop))+"\t"+d.format(Statistics.confidenceInterval(nsperop)));
+		}
+		System.out.println("(result "+_sink+")");
+	}
+}
@@ -0,0 +1,175 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Generates integers from an interval following an empirical histogram, such as one of the keys accessed in a
+ * production log. The histogram's buckets split the interval into equal ranges, in order, so a histogram captured
+ * over one keyspace can be replayed over one of any size; within a bucket, integers are drawn uniformly. Buckets
+ * are drawn with an alias table, so a draw takes constant time however many buckets there are.
+ * 
+ * The histogram file has one bucket per line, either just its count, in bucket order, or "bucket count" (separated
+ * by whitespace or a comma), where the buckets are numbered from 0 and missing ones are empty. Blank lines and
+ * lines starting with # are skipped.
+ */
+public class HistogramGenerator extends IntegerGenerator
+{
+	long _lb,_interval;
+	AliasTable _table;
+	Random _random;
+	double _mean;
+
+	/**
+	 * Create a generator for the integers lb to ub (inclusive), following the given bucket weights.
+	 */
+	public HistogramGenerator(long lb, long ub, double[] buckets)
+	{
+		double sum=0;
+		for (double b : buckets)
+		{
+			if (b<0)
+			{
+				throw new IllegalArgumentException("A histogram bucket can't have a negative count");
+			}
+			sum+=b;
+		}
+		if (sum<=0)
+		{
+			throw new IllegalArgumentException("The histogram is empty");
+		}
+		if (ub-lb+1<buckets.length)
+		{
+			throw new IllegalArgumentException("The histogram has more buckets ("+buckets.length+") than there are values ("+(ub-lb+1)+")");
+		}
+
+		_lb=lb;
+		_interval=ub-lb+1;
+		_table=new AliasTable(buckets);
+		_random=new Random();
+
+		_mean=0;
+		for (int i=0; i<buckets.length; i++)
+		{
+			_mean+=(buckets[i]/sum)*((bucketStart(i)+bucketStart(i+1)-1)/2.0);
+		}
+		_mean+=_lb;
+	}
+
+	/**
+	 * Create a generator for the integers lb to ub (inclusive), following the histogram in a file.
+	 */
+	public HistogramGenerator(long lb, long ub, String file) throws IOException
+	{
+		this(lb,ub,readHistogram(file));
+	}
+
+	/**
+	 * Read the bucket counts from a histogram file.
+	 */
+	public static double[] readHistogram(String file) throws IOException
+	{
+		TreeMap<Integer,Double> buckets=new TreeMap<Integer,Double>();
+		BufferedReader r=new BufferedReader(new FileReader(file));
+		try
+		{
+			String line;
+			int next=0;
+			while ((line=r.readLine())!=null)
+			{
+				line=line.trim();
+				if ( (line.length()==0) || (line.startsWith("#")) )
+				{
+					continue;
+				}
+				String[] parts=line.split("[\\s,]+");
+				try
+				{
+					if (parts.length==1)
+					{
+						buckets.put(next++,Double.parseDouble(parts[0]));
+					}
+					else
+					{
+						next=Integer.parseInt(parts[0]);
+						buckets.put(next++,Double.parseDouble(parts[1]));
+					}
+				}
+				catch (NumberFormatException e)
+				{
+					throw new IOException("Bad histogram line in "+file+": "+line);
+				}
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+
+		if (buckets.size()==0)
+		{
+			throw new IOException("No histogram buckets in "+file);
+		}
+		double[] ret=new double[buckets.lastKey()+1];
+		for (Integer b : buckets.keySet())
+		{
+			if (b<0)
+			{
+				throw new IOException("Negative histogram bucket in "+file+": "+b);
+			}
+			ret[b]=buckets.get(b);
+		}
+		return ret;
+	}
+
+	/**
+	 * Return the offset of the first integer of a bucket; bucket n (one past the last) starts at the end.
+	 */
+	long bucketStart(int bucket)
+	{
+		//in two steps, so that large intervals don't overflow
+		long n=_table.size();
+		return (_interval/n)*bucket+((_interval%n)*bucket)/n;
+	}
+
+	@Override
+	public long nextValue()
+	{
+		return nextValue(_random);
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		int bucket=_table.next(random);
+		long start=bucketStart(bucket);
+		long ret=_lb+start+UniformIntegerGenerator.nextLong(random,bucketStart(bucket+1)-start);
+		setLastValue(ret);
+		return ret;
+	}
+
+	@Override
+	public double mean()
+	{
+		return _mean;
+	}
+}
@@ -0,0 +1,108 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.Random;
+
+/**
+ * Generates integers from an interval, a fraction of which (the hot set) gets a given fraction of the draws.
+ * Both the hot set and the rest (the cold set) are drawn from uniformly. The hot set is the lowest integers of
+ * the interval; a workload that scatters its keys (hashed insert order) scatters the hot set with them.
+ * 
+ * For example, a data fraction of 0.2 and an operation fraction of 0.8 send 80% of the draws to the lowest 20%
+ * of the interval.
+ */
+public class HotspotIntegerGenerator extends IntegerGenerator
+{
+	long _lb,_ub;
+	long _hotinterval,_coldinterval;
+	double _hotopnfraction;
+	Random _random;
+
+	/**
+	 * Create a generator for integers between lb and ub (inclusive).
+	 * 
+	 * @param lb the lower bound (inclusive) of generated values
+	 * @param ub the upper bound (inclusive) of generated values
+	 * @param hotsetfraction the fraction of the interval that is hot, between 0 and 1
+	 * @param hotopnfraction the fraction of the draws that go to the hot set, between 0 and 1
+	 */
+	public HotspotIntegerGenerator(long lb, long ub, double hotsetfraction, double hotopnfraction)
+	{
+		if ( (hotsetfraction<0) || (hotsetfraction>1) || (hotopnfraction<0) || (hotopnfraction>1) )
+		{
+			throw new IllegalArgumentException("Hotspot fractions must be between 0 and 1");
+		}
+		_lb=lb;
+		_ub=ub;
+		long interval=_ub-_lb+1;
+		_hotinterval=(long)(interval*hotsetfraction);
+		_coldinterval=interval-_hotinterval;
+		_hotopnfraction=hotopnfraction;
+		_random=new Random();
+	}
+
+	@Override
+	public long nextValue()
+	{
+		return nextValue(_random);
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		long ret=_lb+nextOffset(random);
+		setLastValue(ret);
+		return ret;
+	}
+
+	/**
+	 * Draw an offset into the interval: into the hot set with the hot operation fraction, otherwise into the rest.
+	 */
+	long nextOffset(Random random)
+	{
+		if ( (_coldinterval==0) || ( (_hotinterval>0) && (random.nextDouble()<_hotopnfraction) ) )
+		{
+			return UniformIntegerGenerator.nextLong(random,_hotinterval);
+		}
+		return _hotinterval+UniformIntegerGenerator.nextLong(random,_coldinterval);
+	}
+
+	/**
+	 * Return the number of integers in the hot set.
+	 */
+	public long getHotSetSize()
+	{
+		return _hotinterval;
+	}
+
+	@Override
+	public double mean()
+	{
+		double hotmean=_lb+(_hotinterval-1)/2.0;
+		double coldmean=_lb+_hotinterval+(_coldinterval-1)/2.0;
+		if (_coldinterval==0)
+		{
+			return hotmean;
+		}
+		if (_hotinterval==0)
+		{
+			return coldmean;
+		}
+		return _hotopnfraction*hotmean+(1-_hotopnfraction)*coldmean;
+	}
+}
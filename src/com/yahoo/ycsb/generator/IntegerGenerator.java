@@ -17,36 +17,83 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.Random;
+
 /**
- * A generator that is capable of generating ints as well as strings
+ * A generator that is capable of generating numbers as well as strings. Numbers are generated as primitive
+ * longs (nextValue() and lastValue()), so that drawing a number doesn't allocate anything; the string and int
+ * forms are derived from them. Generators that draw random numbers can be given a source to draw from on each
+ * call (typically the calling thread's own RandomStream), so that threads sharing a generator don't contend for one.
  * 
  * @author cooperb
  *
  */
 public abstract class IntegerGenerator extends Generator 
 {
-	int lastint;
+	long lastvalue;
 	
 	/**
 	 * Set the last value generated. IntegerGenerator subclasses must use this call
-	 * to properly set the last string value, or the lastString() and lastInt() calls won't work.
+	 * to properly set the last value, or the lastValue(), lastString() and lastInt() calls won't work.
+	 */
+	public void setLastValue(long last)
+	{
+		lastvalue=last;
+	}
+
+	/**
+	 * Same as setLastValue(long).
 	 */
 	public void setLastInt(int last)
 	{
-		lastint=last;
+		lastvalue=last;
 	}
 	
 	/**
-	 * Return the next value as an int. When overriding this method, be sure to call setLastString() properly, or the lastString() call won't work.
+	 * Return the next value. When overriding this method, be sure to call setLastValue() properly, or the lastValue() call won't work.
+	 */
+	public abstract long nextValue();
+
+	/**
+	 * Return the next value, drawing any randomness from the given source rather than the generator's own.
+	 * Generators that don't draw random numbers needn't override this.
+	 */
+	public long nextValue(Random random)
+	{
+		return nextValue();
+	}
+
+	/**
+	 * Return the next value as an int.
+	 */
+	public int nextInt()
+	{
+		return (int)nextValue();
+	}
+
+	/**
+	 * Return the next value as an int, drawing any randomness from the given source.
 	 */
-	public abstract int nextInt();
+	public int nextInt(Random random)
+	{
+		return (int)nextValue(random);
+	}
 	
 	/**
 	 * Generate the next string in the distribution.
 	 */
 	public String nextString()
 	{
-		return ""+nextInt();
+		return Long.toString(nextValue());
+	}
+
+	/**
+	 * Generate the next string in the distribution, drawing any randomness from the given source.
+	 */
+	@Override
+	public String nextString(Random random)
+	{
+		return Long.toString(nextValue(random));
 	}
 	
 	/**
@@ -56,15 +103,30 @@ public abstract class IntegerGenerator extends Generator
 	 */
 	public String lastString()
 	{
-		return ""+lastint;
+		return Long.toString(lastvalue);
+	}
+
+	/**
+	 * Return the previous value generated by the distribution. Calling lastValue() does not advance the distribution
+	 * or have any side effects.
+	 */
+	public long lastValue()
+	{
+		return lastvalue;
 	}
 	
 	/**
-	 * Return the previous int generated by the distribution. This call is unique to IntegerGenerator subclasses, and assumes
-	 * IntegerGenerator subclasses always return ints for nextInt() (e.g. not arbitrary strings).
+	 * Return the previous value generated by the distribution as an int.
 	 */
 	public int lastInt()
 	{
-		return lastint;
+		return (int)lastvalue;
 	}
+
+	/**
+	 * Return the expected value (mean) of the values this generator returns.
+	 * 
+	 * @throws UnsupportedOperationException if the distribution has no fixed mean, or it isn't known
+	 */
+	public abstract double mean();
 }
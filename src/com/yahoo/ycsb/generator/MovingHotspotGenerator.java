@@ -0,0 +1,100 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.Random;
+
+/**
+ * A hotspot distribution whose hot set moves over the interval as time passes, to see how caches and latency
+ * react when the working set changes. The hot set can drift, by a number of integers per second, and it can
+ * jump, by its own size (so to integers that were all cold) at a fixed interval; the two add up. Whatever moves
+ * off the top of the interval comes back in at the bottom.
+ * 
+ * Time is counted from the first draw, so that the hot set doesn't move while the client is still setting up.
+ */
+public class MovingHotspotGenerator extends HotspotIntegerGenerator
+{
+	long _interval;
+	double _shiftrate;
+	long _jumpinterval;
+
+	/**
+	 * When the first draw was made, in ms, or -1 before that.
+	 */
+	volatile long _start=-1;
+
+	/**
+	 * Create a generator for integers between lb and ub (inclusive).
+	 * 
+	 * @param lb the lower bound (inclusive) of generated values
+	 * @param ub the upper bound (inclusive) of generated values
+	 * @param hotsetfraction the fraction of the interval that is hot, between 0 and 1
+	 * @param hotopnfraction the fraction of the draws that go to the hot set, between 0 and 1
+	 * @param shiftrate how many integers per second the hot set drifts by, or 0 not to drift
+	 * @param jumpinterval how often, in ms, the hot set jumps to the next set of integers, or 0 not to jump
+	 */
+	public MovingHotspotGenerator(long lb, long ub, double hotsetfraction, double hotopnfraction, double shiftrate, long jumpinterval)
+	{
+		super(lb,ub,hotsetfraction,hotopnfraction);
+		if ( (shiftrate<0) || (jumpinterval<0) )
+		{
+			throw new IllegalArgumentException("The hotspot shift rate and jump interval can't be negative");
+		}
+		_interval=_ub-_lb+1;
+		_shiftrate=shiftrate;
+		_jumpinterval=jumpinterval;
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		long ret=_lb+(nextOffset(random)+getShift(System.currentTimeMillis()))%_interval;
+		setLastValue(ret);
+		return ret;
+	}
+
+	/**
+	 * Return how far the hot set has moved by the given time, starting the clock if this is the first draw.
+	 */
+	long getShift(long now)
+	{
+		long start=_start;
+		if (start<0)
+		{
+			//if several threads start the clock at once, they all start it within a few ms of each other
+			start=now;
+			_start=now;
+		}
+		long elapsed=now-start;
+
+		double shift=_shiftrate*elapsed/1000.0;
+		if (_jumpinterval>0)
+		{
+			shift+=((double)(elapsed/_jumpinterval))*_hotinterval;
+		}
+		return (long)(shift%_interval);
+	}
+
+	/**
+	 * The hot set moves, so the distribution has no fixed mean.
+	 */
+	@Override
+	public double mean()
+	{
+		throw new UnsupportedOperationException("A moving hotspot has no fixed mean");
+	}
+}
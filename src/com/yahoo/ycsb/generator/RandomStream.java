@@ -0,0 +1,223 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast random number generator for the use of one thread at a time, so that client threads don't all draw from
+ * one shared java.util.Random (whose every call is a compare-and-swap on the same seed). It is SplitMix64: the state
+ * advances by a fixed odd increment and each output is the state put through a 64 bit finalizer. It passes BigCrush,
+ * and costs a few ns per value.
+ *
+ * Streams for several threads are made with split(), which seeds a new stream from this one's output with a
+ * different increment, so that the streams are statistically independent (the same construction as the JDK's
+ * SplittableRandom). forThread() gives the stream of a numbered thread directly, so that a run with the same seed
+ * and thread count draws the same values in each thread however the threads happen to start. A stream extends
+ * Random so that it can be passed anywhere a Random is taken, but it is not thread safe: give each thread its own.
+ */
+public class RandomStream extends Random
+{
+	private static final long serialVersionUID=1L;
+
+	/**
+	 * The increment of streams that aren't split from another one: the golden ratio, as a 64 bit fraction.
+	 */
+	public static final long GOLDEN_GAMMA=0x9e3779b97f4a7c15L;
+
+	/**
+	 * Makes the default seeds of streams created at the same moment differ.
+	 */
+	static final AtomicLong _seeduniquifier=new AtomicLong(System.currentTimeMillis());
+
+	long _state;
+	long _gamma;
+
+	/**
+	 * Create a stream with a seed that differs from those of other streams.
+	 */
+	public RandomStream()
+	{
+		this(mix64(_seeduniquifier.addAndGet(GOLDEN_GAMMA)^System.nanoTime()));
+	}
+
+	/**
+	 * Create a stream that always produces the same values for the same seed.
+	 */
+	public RandomStream(long seed)
+	{
+		this(seed,GOLDEN_GAMMA);
+	}
+
+	RandomStream(long seed, long gamma)
+	{
+		super(0);
+		_state=seed;
+		_gamma=gamma;
+	}
+
+	/**
+	 * Return the stream for thread threadid of a run seeded with seed: the same stream as the (threadid+1)th
+	 * split() of a stream created with that seed.
+	 */
+	public static RandomStream forThread(long seed, int threadid)
+	{
+		RandomStream root=new RandomStream(seed);
+		//each split() advances the root by two values
+		root._state+=2*GOLDEN_GAMMA*threadid;
+		return root.split();
+	}
+
+	/**
+	 * Make a new stream, independent of this one, for another thread. This advances this stream by two values.
+	 */
+	public RandomStream split()
+	{
+		return new RandomStream(mix64(nextSeed()),mixGamma(nextSeed()));
+	}
+
+	/**
+	 * Restart the stream from a seed. (Called by Random's constructor too, before the stream is set up; the
+	 * constructors here set the state themselves.)
+	 */
+	@Override
+	public void setSeed(long seed)
+	{
+		_state=seed;
+		_gamma=GOLDEN_GAMMA;
+	}
+
+	private long nextSeed()
+	{
+		return _state+=_gamma;
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, with David Stafford's "Mix13" constants.
+	 */
+	static long mix64(long z)
+	{
+		z=(z^(z>>>30))*0xbf58476d1ce4e5b9L;
+		z=(z^(z>>>27))*0x94d049bb133111ebL;
+		return z^(z>>>31);
+	}
+
+	/**
+	 * Turn a value into an increment for a split stream. The increment has to be odd, and one with too few bit
+	 * transitions makes poor output, so those are fixed up.
+	 */
+	static long mixGamma(long z)
+	{
+		z=(z^(z>>>33))*0xff51afd7ed558ccdL;
+		z=(z^(z>>>33))*0xc4ceb9fe1a85ec53L;
+		z=(z^(z>>>33))|1L;
+		int n=Long.bitCount(z^(z>>>1));
+		return (n<24) ? z^0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		return (int)(nextLong()>>>(64-bits));
+	}
+
+	@Override
+	public long nextLong()
+	{
+		return mix64(nextSeed());
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return (int)(nextLong()>>>32);
+	}
+
+	/**
+	 * A uniform int in [0,bound), without the bias of taking a remainder: the high half of a 32x32 bit product,
+	 * retrying the rare values that would favor some results (Lemire's method).
+	 */
+	@Override
+	public int nextInt(int bound)
+	{
+		if (bound<=0)
+		{
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		long m=(nextLong()>>>32)*bound;
+		long l=m&0xffffffffL;
+		if (l<bound)
+		{
+			long t=(0x100000000L-bound)%bound;
+			while (l<t)
+			{
+				m=(nextLong()>>>32)*bound;
+				l=m&0xffffffffL;
+			}
+		}
+		return (int)(m>>>32);
+	}
+
+	/**
+	 * A uniform long in [0,bound).
+	 */
+	public long nextLong(long bound)
+	{
+		if (bound<=0)
+		{
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		//reject the values of the last, partial, run of bound values below 2^63, where u-r+bound-1 overflows
+		long u=nextLong()>>>1;
+		long r=u%bound;
+		while (u-r+(bound-1)<0)
+		{
+			u=nextLong()>>>1;
+			r=u%bound;
+		}
+		return r;
+	}
+
+	@Override
+	public double nextDouble()
+	{
+		return (nextLong()>>>11)*0x1.0p-53;
+	}
+
+	@Override
+	public boolean nextBoolean()
+	{
+		return nextLong()<0;
+	}
+
+	@Override
+	public void nextBytes(byte[] bytes)
+	{
+		int i=0;
+		while (i<bytes.length)
+		{
+			long r=nextLong();
+			for (int n=Math.min(bytes.length-i,8); n>0; n--)
+			{
+				bytes[i++]=(byte)r;
+				r>>>=8;
+			}
+		}
+	}
+}
@@ -17,6 +17,8 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.Random;
+
 import com.yahoo.ycsb.Utils;
 
 /**
@@ -30,6 +32,9 @@ import com.yahoo.ycsb.Utils;
  */
 public class ScrambledZipfianGenerator extends IntegerGenerator 
 {
+	/**
+	 * Zeta for ITEM_COUNT items and the default zipfian constant, precomputed so that the default case starts at once.
+	 */
 	public static final double ZETAN=52.93805640344461;
 	public static final long ITEM_COUNT=10000000000L;
 	
@@ -63,13 +68,10 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
 	 * @param _items The number of items in the distribution.
 	 * @param _zipfianconstant The zipfian constant to use.
 	 */
-	/*
-// not supported, as the value of zeta depends on the zipfian constant, and we have only precomputed zeta for one zipfian constant
 	public ScrambledZipfianGenerator(long _items, double _zipfianconstant)
 	{
 		this(0,_items-1,_zipfianconstant);
 	}
-*/
 	
 	/**
 	 * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant.
@@ -77,35 +79,54 @@ public class ScrambledZipfianGenerator extends IntegerGenerator
 	 * @param max The largest integer to generate in the sequence.
 	 * @param _zipfianconstant The zipfian constant to use.
 	 */
-	ScrambledZipfianGenerator(long min, long max, double _zipfianconstant)
+	public ScrambledZipfianGenerator(long min, long max, double _zipfianconstant)
 	{
-		//not public as we only support one value of zipfianconstant for which we have precomputed zeta
 		_min=min;
 		_max=max;
 		_itemcount=_max-_min+1;
-		gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant,ZETAN);
+		if (_zipfianconstant==ZipfianGenerator.ZIPFIAN_CONSTANT)
+		{
+			gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant,ZETAN);
+		}
+		else
+		{
+			//summing zeta over ITEM_COUNT items takes too long whatever the method, so use the closed form
+			gen=new ZipfianGenerator(0,ITEM_COUNT,_zipfianconstant,Zeta.approximate(ITEM_COUNT+1,_zipfianconstant));
+		}
 	}
 	
 	/**************************************************************************************************/
 	
 	/**
-	 * Return the next int in the sequence.
+	 * Return the next value in the sequence.
 	 */
 	@Override
-	public int nextInt() {
-		return (int)nextLong();
+	public long nextValue()
+	{
+		return scramble(gen.nextValue());
 	}
 
-	/**
-	 * Return the next long in the sequence.
-	 */
-	public long nextLong()
+	@Override
+	public long nextValue(Random random)
+	{
+		return scramble(gen.nextValue(random));
+	}
+
+	private long scramble(long ret)
 	{
-		long ret=gen.nextLong();
 		ret=_min+Utils.FNVhash64(ret)%_itemcount;
-		setLastInt((int)ret);
+		setLastValue(ret);
 		return ret;
 	}
+
+	/**
+	 * The popular items are scattered uniformly over the item space, so the mean is its middle.
+	 */
+	@Override
+	public double mean()
+	{
+		return ((double)(_min+_max))/2.0;
+	}
 	
 	public static void main(String[] args)
 	{
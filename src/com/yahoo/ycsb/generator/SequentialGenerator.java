@@ -0,0 +1,59 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the integers of an interval in order, starting over at the bottom once the top has been reached, the
+ * way a full table scan reads keys. All the threads drawing from the generator share the one sequence, so between
+ * them they go through the interval in order; drawing is lock-free.
+ */
+public class SequentialGenerator extends IntegerGenerator
+{
+	long _lb,_ub,_interval;
+	AtomicLong _counter;
+
+	/**
+	 * Create a generator for the integers lb to ub (inclusive), starting with lb.
+	 */
+	public SequentialGenerator(long lb, long ub)
+	{
+		_lb=lb;
+		_ub=ub;
+		_interval=_ub-_lb+1;
+		_counter=new AtomicLong(0);
+		setLastValue(_lb-1);
+	}
+
+	/**
+	 * Return the next integer of the sequence. It draws no random numbers, so nextValue(Random) is the same.
+	 */
+	@Override
+	public long nextValue()
+	{
+		long ret=_lb+(_counter.getAndIncrement()&Long.MAX_VALUE)%_interval;
+		setLastValue(ret);
+		return ret;
+	}
+
+	@Override
+	public double mean()
+	{
+		return ((double)(_lb+_ub))/2.0;
+	}
+}
@@ -17,6 +17,8 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.Random;
+
 /**
  * Generate a popularity distribution of items, skewed to favor recent items significantly more than older items.
  */
@@ -26,21 +28,46 @@ public class SkewedLatestGenerator extends IntegerGenerator
 	ZipfianGenerator _zipfian;
 
 	public SkewedLatestGenerator(CounterGenerator basis)
+	{
+		this(basis,ZipfianGenerator.ZIPFIAN_CONSTANT);
+	}
+
+	/**
+	 * Create a generator favoring the items most recently returned by the basis, skewed by the given zipfian constant.
+	 */
+	public SkewedLatestGenerator(CounterGenerator basis, double zipfianconstant)
 	{
 		_basis=basis;
-		_zipfian=new ZipfianGenerator(Integer.parseInt(_basis.lastString()));
-		nextInt();
+		_zipfian=new ZipfianGenerator(_basis.lastValue(),zipfianconstant);
+		nextValue();
 	}
 
 	/**
 	 * Generate the next string in the distribution, skewed Zipfian favoring the items most recently returned by the basis generator.
 	 */
-	public int nextInt()
+	public long nextValue()
+	{
+		long max=_basis.lastValue();
+		long next=max-_zipfian.nextLong(max);
+		setLastValue(next);
+		return next;
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		long max=_basis.lastValue();
+		long next=max-_zipfian.nextLong(max,random);
+		setLastValue(next);
+		return next;
+	}
+
+	/**
+	 * The basis keeps growing, so the distribution has no fixed mean.
+	 */
+	public double mean()
 	{
-		int max=Integer.parseInt(_basis.lastString());
-		int nextint=max-_zipfian.nextInt(max);
-		setLastInt(nextint);
-		return nextint;
+		throw new UnsupportedOperationException("The latest distribution has no fixed mean");
 	}
 
 	public static void main(String[] args)
@@ -17,6 +17,7 @@
 
 package com.yahoo.ycsb.generator;
 
+import java.util.Random;
 import java.util.Vector;
 
 /**
@@ -49,6 +50,16 @@ public class UniformGenerator extends Generator
 		_laststring=_values.elementAt(_gen.nextInt());
 		return _laststring;
 	}
+
+	/**
+	 * Generate the next string in the distribution, drawing the random number from the given source.
+	 */
+	@Override
+	public String nextString(Random random)
+	{
+		_laststring=_values.elementAt(_gen.nextInt(random));
+		return _laststring;
+	}
 	
 	/**
 	 * Return the previous string generated by the distribution; e.g., returned from the last nextString() call. 
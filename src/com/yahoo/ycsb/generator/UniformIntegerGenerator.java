@@ -25,7 +25,7 @@ import java.util.Random;
 public class UniformIntegerGenerator extends IntegerGenerator 
 {
 	Random _random;
-	int _lb,_ub,_interval;
+	long _lb,_ub,_interval;
 	
 	/**
 	 * Creates a generator that will return integers uniformly randomly from the interval [lb,ub] inclusive (that is, lb and ub are possible values)
@@ -33,7 +33,7 @@ public class UniformIntegerGenerator extends IntegerGenerator
 	 * @param lb the lower bound (inclusive) of generated values
 	 * @param ub the upper bound (inclusive) of generated values
 	 */
-	public UniformIntegerGenerator(int lb, int ub)
+	public UniformIntegerGenerator(long lb, long ub)
 	{
 		_random=new Random();
 		_lb=lb;
@@ -42,12 +42,43 @@ public class UniformIntegerGenerator extends IntegerGenerator
 	}
 	
 	@Override
-	public int nextInt() 
+	public long nextValue() 
 	{
-		int ret=_random.nextInt(_interval)+_lb;
-		setLastInt(ret);
+		return nextValue(_random);
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		long ret=nextLong(random,_interval)+_lb;
+		setLastValue(ret);
 		
 		return ret;
 	}
 
+	/**
+	 * Return a uniform long in [0,bound), from any source of randomness.
+	 */
+	static long nextLong(Random random, long bound)
+	{
+		if (bound<=Integer.MAX_VALUE)
+		{
+			return random.nextInt((int)bound);
+		}
+		else if (random instanceof RandomStream)
+		{
+			return ((RandomStream)random).nextLong(bound);
+		}
+		else
+		{
+			return (long)(random.nextDouble()*bound);
+		}
+	}
+
+	@Override
+	public double mean()
+	{
+		return ((double)(_lb+_ub))/2.0;
+	}
+
 }
@@ -0,0 +1,269 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes zeta(n,theta), the sum of 1/i^theta for i from 1 to n, which the zipfian generators need and which
+ * takes a long time to sum for large item counts. It can be computed in one of two ways:
+ * <UL>
+ * <LI>exact: summed term by term as before, but split over all the processors, and kept in a cache directory
+ * so that it is only summed once for a given item count and zipfian constant
+ * <LI>approximate: the first terms are summed, and the rest of the sum is taken from the Euler-Maclaurin
+ * formula, which is accurate to the last digits of a double for any item count, in no time
+ * </UL>
+ *
+ * Properties to control the computation (set with setProperties() before generators are created):
+ * <UL>
+ * <LI><b>zeta.method</b>: "exact" or "approximate" (default: exact)
+ * <LI><b>zeta.cachedir</b>: the directory to keep exact values in, or empty for no cache (default: ycsb-zeta in the temporary directory)
+ * </UL>
+ */
+public class Zeta
+{
+	public static final String METHOD_PROPERTY="zeta.method";
+	public static final String METHOD_PROPERTY_DEFAULT="exact";
+
+	public static final String CACHE_DIR_PROPERTY="zeta.cachedir";
+	public static final String CACHE_DIR_PROPERTY_DEFAULT=new File(System.getProperty("java.io.tmpdir"),"ycsb-zeta").getPath();
+
+	/**
+	 * Sums of fewer terms than this are done in the calling thread, and not cached.
+	 */
+	public static final long PARALLEL_THRESHOLD=1<<20;
+
+	/**
+	 * The number of terms summed exactly before the Euler-Maclaurin formula takes over.
+	 */
+	public static final long APPROXIMATION_TERMS=1000;
+
+	static boolean _approximate=false;
+	static String _cachedir=CACHE_DIR_PROPERTY_DEFAULT;
+
+	/**
+	 * Configure how zeta is computed, from the properties of the experiment.
+	 */
+	public static synchronized void setProperties(Properties props)
+	{
+		String method=props.getProperty(METHOD_PROPERTY,METHOD_PROPERTY_DEFAULT);
+		if (method.equals("approximate"))
+		{
+			_approximate=true;
+		}
+		else if (method.equals("exact"))
+		{
+			_approximate=false;
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown "+METHOD_PROPERTY+" \""+method+"\"");
+		}
+		_cachedir=props.getProperty(CACHE_DIR_PROPERTY,CACHE_DIR_PROPERTY_DEFAULT);
+	}
+
+	/**
+	 * Return zeta(n,theta) minus zeta(st,theta), plus initialsum: that is, zeta(n,theta) computed incrementally from
+	 * initialsum=zeta(st,theta).
+	 */
+	public static double zeta(long st, long n, double theta, double initialsum)
+	{
+		if (n-st<PARALLEL_THRESHOLD)
+		{
+			return initialsum+sum(st,n,theta);
+		}
+		if (_approximate)
+		{
+			return approximate(n,theta);
+		}
+		if (st==0)
+		{
+			return initialsum+cached(n,theta);
+		}
+		return initialsum+parallelSum(st,n,theta);
+	}
+
+	/**
+	 * Sum the terms st+1 to n in this thread.
+	 */
+	static double sum(long st, long n, double theta)
+	{
+		double sum=0;
+		for (long i=st; i<n; i++)
+		{
+			sum+=1/(Math.pow(i+1,theta));
+		}
+		return sum;
+	}
+
+	static class SumTask extends RecursiveTask<Double>
+	{
+		private static final long serialVersionUID=1L;
+
+		long _st;
+		long _n;
+		double _theta;
+
+		SumTask(long st, long n, double theta)
+		{
+			_st=st;
+			_n=n;
+			_theta=theta;
+		}
+
+		protected Double compute()
+		{
+			if (_n-_st<=PARALLEL_THRESHOLD)
+			{
+				return sum(_st,_n,_theta);
+			}
+			long mid=_st+(_n-_st)/2;
+			SumTask left=new SumTask(_st,mid,_theta);
+			SumTask right=new SumTask(mid,_n,_theta);
+			right.fork();
+			double l=left.compute();
+			return l+right.join();
+		}
+	}
+
+	/**
+	 * Sum the terms st+1 to n, split over all the processors.
+	 */
+	static double parallelSum(long st, long n, double theta)
+	{
+		return ForkJoinPool.commonPool().invoke(new SumTask(st,n,theta));
+	}
+
+	/**
+	 * Return the file the exact value of zeta(n,theta) is kept in, or null if there is no cache.
+	 */
+	static File getCacheFile(long n, double theta)
+	{
+		if ( (_cachedir==null) || (_cachedir.length()==0) )
+		{
+			return null;
+		}
+		return new File(_cachedir,"zeta-"+n+"-"+theta);
+	}
+
+	/**
+	 * Return the exact zeta(n,theta) from the cache, summing it and adding it to the cache if it isn't there.
+	 */
+	static double cached(long n, double theta)
+	{
+		File file=getCacheFile(n,theta);
+		if ( (file!=null) && (file.exists()) )
+		{
+			try
+			{
+				BufferedReader r=new BufferedReader(new FileReader(file));
+				try
+				{
+					return Double.parseDouble(r.readLine());
+				}
+				finally
+				{
+					r.close();
+				}
+			}
+			catch (IOException e)
+			{
+				//sum it again
+			}
+			catch (RuntimeException e)
+			{
+				//a corrupt entry, sum it again
+			}
+		}
+
+		double zeta=parallelSum(0,n,theta);
+
+		if (file!=null)
+		{
+			try
+			{
+				file.getParentFile().mkdirs();
+				File tmp=File.createTempFile(file.getName(),".tmp",file.getParentFile());
+				FileWriter w=new FileWriter(tmp);
+				try
+				{
+					w.write(Double.toString(zeta)+"\n");
+				}
+				finally
+				{
+					w.close();
+				}
+				Files.move(tmp.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not cache zeta in "+file+", error: "+e.getMessage());
+			}
+		}
+		return zeta;
+	}
+
+	/**
+	 * Return zeta(n,theta) using the Euler-Maclaurin formula: the first APPROXIMATION_TERMS-1 terms are summed, and the
+	 * rest of the sum, from m=APPROXIMATION_TERMS to n, is the integral of x^-theta from m to n plus the correction terms
+	 * (f(m)+f(n))/2 + sum over k of B(2k)/(2k)! (f^(2k-1)(n) - f^(2k-1)(m)), up to k=3. With m this large, the first
+	 * correction term left out is far below the precision of a double.
+	 */
+	public static double approximate(long n, double theta)
+	{
+		long m=APPROXIMATION_TERMS;
+		if (n<=m)
+		{
+			return sum(0,n,theta);
+		}
+		double sum=sum(0,m-1,theta);
+
+		double integral;
+		if (theta==1.0)
+		{
+			integral=Math.log((double)n/(double)m);
+		}
+		else
+		{
+			integral=(Math.pow(n,1-theta)-Math.pow(m,1-theta))/(1-theta);
+		}
+
+		double fn=Math.pow(n,-theta);
+		double fm=Math.pow(m,-theta);
+		//the odd derivatives of x^-theta, divided by x^-theta
+		double d1=-theta;
+		double d3=-theta*(theta+1)*(theta+2);
+		double d5=-theta*(theta+1)*(theta+2)*(theta+3)*(theta+4);
+
+		double correction=(fm+fn)/2.0;
+		correction+=(1.0/12.0)*d1*(fn/n-fm/m);
+		correction-=(1.0/720.0)*d3*(fn/Math.pow(n,3)-fm/Math.pow(m,3));
+		correction+=(1.0/30240.0)*d5*(fn/Math.pow(n,5)-fm/Math.pow(m,5));
+
+		return sum+integral+correction;
+	}
+}
@@ -33,7 +33,8 @@ import java.util.Random;
  * for 100 million objects). This is because certain mathematical values need to be computed to properly generate a zipfian skew, and one of those
  * values (zeta) is a sum sequence from 1 to n, where n is the itemcount. Note that if you increase the number of items in the set, we can compute
  * a new zeta incrementally, so it should be fast unless you have added millions of items. However, if you decrease the number of items, we recompute
- * zeta from scratch, so this can take a long time. 
+ * zeta from scratch, so this can take a long time. See Zeta for how to make this faster: large sums are split over all the processors and cached
+ * on disk, or can be approximated instead.
  *
  * The algorithm used here is from "Quickly Generating Billion-Record Synthetic Databases", Jim Gray et al, SIGMOD 1994.
  */
@@ -149,9 +150,7 @@ public class ZipfianGenerator extends IntegerGenerator
 		countforzeta=items;
 		eta=(1-Math.pow(2.0/items,1-theta))/(1-zeta2theta/zetan);
 		
-		//System.out.println("XXXX 3 XXXX");
-		nextInt();
-		//System.out.println("XXXX 4 XXXX");
+		nextValue();
 	}
 	
 	/**************************************************************************/
@@ -207,16 +206,7 @@ public class ZipfianGenerator extends IntegerGenerator
 	 */
 	static double zetastatic(long st, long n, double theta, double initialsum)
 	{
-		double sum=initialsum;
-		for (long i=st; i<n; i++)
-		{
-
-			sum+=1/(Math.pow(i+1,theta));
-		}
-		
-		//System.out.println("countforzeta="+countforzeta);
-		
-		return sum;
+		return Zeta.zeta(st,n,theta,initialsum);
 	}
 
 	/****************************************************************************************/
@@ -239,6 +229,18 @@ public class ZipfianGenerator extends IntegerGenerator
 	 * @return The next item in the sequence.
 	 */
 	public long nextLong(long itemcount)
+	{
+		return nextLong(itemcount,random);
+	}
+
+	/**
+	 * Generate the next item as a long, drawing the random number from the given source.
+	 * 
+	 * @param itemcount The number of items in the distribution.
+	 * @param random The source of randomness, typically the calling thread's own.
+	 * @return The next item in the sequence.
+	 */
+	public long nextLong(long itemcount, Random random)
 	{
 		//from "Quickly Generating Billion-Record Synthetic Databases", Jim Gray et al, SIGMOD 1994
 
@@ -276,18 +278,20 @@ public class ZipfianGenerator extends IntegerGenerator
 		double u=random.nextDouble();
 		double uz=u*zetan;
 
+		long ret;
 		if (uz<1.0)
 		{
-			return 0;
+			ret=base;
 		}
-
-		if (uz<1.0+Math.pow(0.5,theta)) 
+		else if (uz<1.0+Math.pow(0.5,theta)) 
 		{
-			return 1;
+			ret=base+1;
 		}
-
-		long ret=base+(long)((itemcount) * Math.pow(eta*u - eta + 1, alpha));
-		setLastInt((int)ret);
+		else
+		{
+			ret=base+(long)((itemcount) * Math.pow(eta*u - eta + 1, alpha));
+		}
+		setLastValue(ret);
 		return ret;
 	}
 
@@ -297,19 +301,27 @@ public class ZipfianGenerator extends IntegerGenerator
 	 * popular items scattered throughout the item space, use ScrambledZipfianGenerator instead.
 	 */
 	@Override
-	public int nextInt() 
+	public long nextValue() 
 	{
-		return (int)nextLong(items);
+		return nextLong(items);
+	}
+
+	@Override
+	public long nextValue(Random random)
+	{
+		return nextLong(items,random);
 	}
 
 	/**
-	 * Return the next value, skewed by the Zipfian distribution. The 0th item will be the most popular, followed by the 1st, followed
-	 * by the 2nd, etc. (Or, if min != 0, the min-th item is the most popular, the min+1th item the next most popular, etc.) If you want the
-	 * popular items scattered throughout the item space, use ScrambledZipfianGenerator instead.
+	 * The mean of the zipfian distribution over the current items: item i has weight (i+1)^-theta, so the mean offset
+	 * is the sum of (i+1)^(1-theta), which is zeta(items,theta-1), over zeta(items,theta), less 1. The Euler-Maclaurin
+	 * approximation of zeta makes this constant time. It is the mean of the exact distribution, which the values drawn
+	 * approximate.
 	 */
-	public long nextLong()
+	@Override
+	public double mean()
 	{
-		return nextLong(items);
+		return base+Zeta.approximate(countforzeta,theta-1)/zetan-1;
 	}
 	
 	public static void main(String[] args)
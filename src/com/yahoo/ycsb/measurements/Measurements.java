@@ -20,6 +20,7 @@ package com.yahoo.ycsb.measurements;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.Vector;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -56,6 +57,18 @@ public class Measurements
 		return singleton;
 	}
 
+      /**
+       * Discard the measurements taken so far, and take new ones using the given properties. This is
+       * for running several experiments in one client, e.g. the points of a parameter sweep. Objects
+       * that already hold on to the old Measurements object keep reporting to it, so call this before
+       * creating the DB instances for the next experiment.
+       */
+	public synchronized static void resetMeasurements(Properties props)
+	{
+		measurementproperties=props;
+		singleton=null;
+	}
+
 	HashMap<String,OneMeasurement> data;
 	boolean histogram=true;
 
@@ -124,17 +137,29 @@ public class Measurements
        */
 	public void reportReturnCode(String operation, int code)
 	{
-		if (!data.containsKey(operation))
+		//the map may be replaced by reset() meanwhile
+		HashMap<String,OneMeasurement> d=data;
+		if (!d.containsKey(operation))
 		{
 			synchronized(this)
 			{
-				if (!data.containsKey(operation))
+				d=data;
+				if (!d.containsKey(operation))
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					d.put(operation,constructOneMeasurement(operation));
 				}
 			}
 		}
-		data.get(operation).reportReturnCode(code);
+		d.get(operation).reportReturnCode(code);
+	}
+
+      /**
+       * Discard the measurements taken so far, and start measuring again from now. Unlike resetMeasurements(),
+       * this can be done during a run, since the objects reporting to this Measurements object keep doing so.
+       */
+	public synchronized void reset()
+	{
+		data=new HashMap<String,OneMeasurement>();
 	}
 	
   /**
@@ -145,12 +170,48 @@ public class Measurements
    */
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
-    for (OneMeasurement measurement : data.values())
+    Vector<OneMeasurement> measurements;
+    synchronized (this)
+    {
+      //this may be an intermediate export, with operations still being measured
+      measurements=new Vector<OneMeasurement>(data.values());
+    }
+    for (OneMeasurement measurement : measurements)
     {
       measurement.exportMeasurements(exporter);
     }
   }
 	
+      /**
+       * Return a snapshot of the latency histogram of the given operation, or of all operations together if
+       * operation is null. See OneMeasurementHistogram.getHistogramSnapshot(). Returns null if the measurements 
+       * are not histograms, or nothing has been measured for the operation yet.
+       */
+	public synchronized long[] getHistogramSnapshot(String operation)
+	{
+		long[] ret=null;
+		for (OneMeasurement m : data.values())
+		{
+			if ( (!(m instanceof OneMeasurementHistogram)) || ( (operation!=null) && (!m.getName().equals(operation)) ) )
+			{
+				continue;
+			}
+			long[] snapshot=((OneMeasurementHistogram)m).getHistogramSnapshot();
+			if (ret==null)
+			{
+				ret=snapshot;
+			}
+			else
+			{
+				for (int i=0; i<ret.length; i++)
+				{
+					ret[i]+=snapshot[i];
+				}
+			}
+		}
+		return ret;
+	}
+	
       /**
        * Return a one line summary of the measurements.
        */
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+import com.yahoo.ycsb.measurements.exporter.MemoryMeasurementsExporter;
+
+/**
+ * Exposes the current measurements through JMX. Every number the measurements export (other than the
+ * histogram and the time series) is a read-only attribute named metric.measurement, e.g.
+ * READ.99thPercentileLatency(ms). The attributes change as operations are measured, so the list of
+ * attributes is taken anew each time it is asked for.
+ */
+public class MeasurementsMonitor implements DynamicMBean
+{
+	/**
+	 * Return the measurements taken so far.
+	 */
+	MemoryMeasurementsExporter snapshot()
+	{
+		MemoryMeasurementsExporter m=new MemoryMeasurementsExporter();
+		try
+		{
+			Measurements.getMeasurements().exportMeasurements(m);
+		}
+		catch (IOException e)
+		{
+			//can't happen, the measurements are kept in memory
+		}
+		return m;
+	}
+
+	static Double getValue(MemoryMeasurementsExporter m, String attribute)
+	{
+		int dot=attribute.indexOf('.');
+		if (dot<0)
+		{
+			return null;
+		}
+		return m.getValue(attribute.substring(0,dot),attribute.substring(dot+1));
+	}
+
+	public Object getAttribute(String attribute) throws AttributeNotFoundException
+	{
+		Double value=getValue(snapshot(),attribute);
+		if (value==null)
+		{
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	public AttributeList getAttributes(String[] attributes)
+	{
+		MemoryMeasurementsExporter m=snapshot();
+		AttributeList list=new AttributeList();
+		for (String attribute : attributes)
+		{
+			Double value=getValue(m,attribute);
+			if (value!=null)
+			{
+				list.add(new Attribute(attribute,value));
+			}
+		}
+		return list;
+	}
+
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+	{
+		throw new AttributeNotFoundException("Measurements are read-only: "+attribute.getName());
+	}
+
+	public AttributeList setAttributes(AttributeList attributes)
+	{
+		return new AttributeList();
+	}
+
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+	{
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	public MBeanInfo getMBeanInfo()
+	{
+		MemoryMeasurementsExporter m=snapshot();
+		Vector<MBeanAttributeInfo> attributes=new Vector<MBeanAttributeInfo>();
+		for (String metric : m.getMetrics())
+		{
+			for (String measurement : m.getMeasurements(metric))
+			{
+				attributes.add(new MBeanAttributeInfo(metric+"."+measurement,"java.lang.Double",measurement+" of "+metric,true,false,false));
+			}
+		}
+		return new MBeanInfo(getClass().getName(),"The measurements taken so far",attributes.toArray(new MBeanAttributeInfo[0]),null,new MBeanOperationInfo[0],null);
+	}
+}
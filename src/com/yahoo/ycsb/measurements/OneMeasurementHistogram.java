@@ -37,24 +37,24 @@ public class OneMeasurementHistogram extends OneMeasurement
 	public static final String BUCKETS_DEFAULT="1000";
 
 	int _buckets;
-	int[] histogram;
-	int histogramoverflow;
-	int operations;
+	long[] histogram;
+	long histogramoverflow;
+	long operations;
 	long totallatency;
 	
 	//keep a windowed version of these stats for printing status
-	int windowoperations;
+	long windowoperations;
 	long windowtotallatency;
 	
 	int min;
 	int max;
-	HashMap<Integer,int[]> returncodes;
+	HashMap<Integer,long[]> returncodes;
 
 	public OneMeasurementHistogram(String name, Properties props)
 	{
 		super(name);
 		_buckets=Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-		histogram=new int[_buckets];
+		histogram=new long[_buckets];
 		histogramoverflow=0;
 		operations=0;
 		totallatency=0;
@@ -62,7 +62,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 		windowtotallatency=0;
 		min=-1;
 		max=-1;
-		returncodes=new HashMap<Integer,int[]>();
+		returncodes=new HashMap<Integer,long[]>();
 	}
 
 	/* (non-Javadoc)
@@ -73,7 +73,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
 		{
-			int[] val=new int[1];
+			long[] val=new long[1];
 			val[0]=0;
 			returncodes.put(Icode,val);
 		}
@@ -111,6 +111,50 @@ public class OneMeasurementHistogram extends OneMeasurement
 	}
 
 
+	/**
+	 * Return a copy of the histogram counts so far, one entry per bucket, followed by the count of
+	 * measurements that overflowed the histogram. Take two snapshots and subtract them to get the 
+	 * histogram of a window of the run.
+	 */
+	public synchronized long[] getHistogramSnapshot()
+	{
+		long[] ret=new long[_buckets+1];
+		System.arraycopy(histogram,0,ret,0,_buckets);
+		ret[_buckets]=histogramoverflow;
+		return ret;
+	}
+
+	/**
+	 * Return the latency bucket (in ms) below which the given percentage of the measurements in the histogram fall.
+	 * 
+	 * @param counts histogram counts, as returned by getHistogramSnapshot(); the last entry is the overflow count
+	 * @param percentile the percentile to look up, e.g. 99 or 99.9
+	 * @return the latency in ms, the number of buckets if the percentile is in the overflow, or -1 if the histogram is empty
+	 */
+	public static int percentile(long[] counts, double percentile)
+	{
+		long total=0;
+		for (long c : counts)
+		{
+			total+=c;
+		}
+		if (total==0)
+		{
+			return -1;
+		}
+
+		long opcounter=0;
+		for (int i=0; i<counts.length; i++)
+		{
+			opcounter+=counts[i];
+			if (((double)opcounter)/((double)total)>=percentile/100.0)
+			{
+				return i;
+			}
+		}
+		return counts.length-1;
+	}
+
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
@@ -119,34 +163,19 @@ public class OneMeasurementHistogram extends OneMeasurement
     exporter.write(getName(), "MinLatency(ms)", min);
     exporter.write(getName(), "MaxLatency(ms)", max);
     
-    int opcounter=0;
-    boolean done95th=false;
-    for (int i=0; i<_buckets; i++)
-    {
-      opcounter+=histogram[i];
-      if ( (!done95th) && (((double)opcounter)/((double)operations)>=0.95) )
-      {
-        exporter.write(getName(), "95thPercentileLatency(ms)", i);
-        done95th=true;
-      }
-      if (((double)opcounter)/((double)operations)>=0.99)
-      {
-        exporter.write(getName(), "99thPercentileLatency(ms)", i);
-        break;
-      }
-    }
+    long[] counts=getHistogramSnapshot();
+    exporter.write(getName(), "50thPercentileLatency(ms)", percentile(counts, 50));
+    exporter.write(getName(), "95thPercentileLatency(ms)", percentile(counts, 95));
+    exporter.write(getName(), "99thPercentileLatency(ms)", percentile(counts, 99));
+    exporter.write(getName(), "99.9thPercentileLatency(ms)", percentile(counts, 99.9));
 
     for (Integer I : returncodes.keySet())
     {
-      int[] val=returncodes.get(I);
+      long[] val=returncodes.get(I);
       exporter.write(getName(), "Return="+I, val[0]);
     }     
 
-    for (int i=0; i<_buckets; i++)
-    {
-      exporter.write(getName(), Integer.toString(i), histogram[i]);
-    }
-    exporter.write(getName(), ">"+_buckets, histogramoverflow);
+    exporter.writeHistogram(getName(), counts);
   }
 
 	@Override
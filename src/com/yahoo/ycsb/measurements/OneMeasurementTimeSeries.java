@@ -19,6 +19,7 @@ package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Properties;
 import java.util.Vector;
@@ -29,14 +30,21 @@ class SeriesUnit
 {
 	/**
 	 * @param time
+	 * @param operations
 	 * @param average
 	 */
-	public SeriesUnit(long time, double average) {
+	public SeriesUnit(long time, long operations, double average) {
 		this.time = time;
+		this.operations = operations;
 		this.average = average;
 	}
 	public long time;
+	public long operations;
 	public double average; 
+	public int max;
+	public int p50;
+	public int p95;
+	public int p99;
 }
 
 /**
@@ -50,34 +58,66 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	public static final String GRANULARITY="timeseries.granularity";
 	
 	public static final String GRANULARITY_DEFAULT="1000";
+
+	/**
+	 * The measurements written for each unit of the time series.
+	 */
+	static final String[] UNIT_MEASUREMENTS={"Operations","AverageLatency(ms)","MaxLatency(ms)","50thPercentileLatency(ms)","95thPercentileLatency(ms)","99thPercentileLatency(ms)"};
 	
 	int _granularity;
+	int _buckets;
 	Vector<SeriesUnit> _measurements;
 	
 	long start=-1;
 	long currentunit=-1;
-	int count=0;
-	int sum=0;
-	int operations=0;
+	long count=0;
+	long sum=0;
+	int unitmax=-1;
+
+	//latency histograms (with an overflow bucket at the end) of the current unit and of the whole run, for the percentiles
+	long[] unithistogram;
+	long[] histogram;
+	long operations=0;
 	long totallatency=0;
 	
 	//keep a windowed version of these stats for printing status
-	int windowoperations=0;
+	long windowoperations=0;
 	long windowtotallatency=0;
 	
 	int min=-1;
 	int max=-1;
 
-	private HashMap<Integer, int[]> returncodes;
+	private HashMap<Integer, long[]> returncodes;
 	
 	public OneMeasurementTimeSeries(String name, Properties props)
 	{
 		super(name);
 		_granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
+		_buckets=Integer.parseInt(props.getProperty(OneMeasurementHistogram.BUCKETS,OneMeasurementHistogram.BUCKETS_DEFAULT));
+		unithistogram=new long[_buckets+1];
+		histogram=new long[_buckets+1];
 		_measurements=new Vector<SeriesUnit>();
-		returncodes=new HashMap<Integer,int[]>();
+		returncodes=new HashMap<Integer,long[]>();
 	}
 	
+	/**
+	 * Return the unit being measured now, or null if nothing has been measured in it yet.
+	 */
+	SeriesUnit getCurrentUnit()
+	{
+		if (count==0)
+		{
+			return null;
+		}
+		double avg=((double)sum)/((double)count);
+		SeriesUnit u=new SeriesUnit(currentunit,count,avg);
+		u.max=unitmax;
+		u.p50=OneMeasurementHistogram.percentile(unithistogram,50);
+		u.p95=OneMeasurementHistogram.percentile(unithistogram,95);
+		u.p99=OneMeasurementHistogram.percentile(unithistogram,99);
+		return u;
+	}
+
 	void checkEndOfUnit(boolean forceend)
 	{
 		long now=System.currentTimeMillis();
@@ -92,13 +132,18 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		
 		if ( (unit>currentunit) || (forceend) )
 		{
-			double avg=((double)sum)/((double)count);
-			_measurements.add(new SeriesUnit(currentunit,avg));
+			SeriesUnit u=getCurrentUnit();
+			if (u!=null)
+			{
+				_measurements.add(u);
+			}
 			
 			currentunit=unit;
 			
 			count=0;
 			sum=0;
+			unitmax=-1;
+			Arrays.fill(unithistogram,0);
 		}
 	}
 	
@@ -109,6 +154,13 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		
 		count++;
 		sum+=latency;
+		int bucket=Math.min(latency,_buckets);
+		unithistogram[bucket]++;
+		histogram[bucket]++;
+		if (latency>unitmax)
+		{
+			unitmax=latency;
+		}
 		totallatency+=latency;
 		operations++;
 		windowoperations++;
@@ -129,24 +181,35 @@ public class OneMeasurementTimeSeries extends OneMeasurement
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
-    checkEndOfUnit(true);
+    //the unit in progress is written, but not ended, since the run may go on after an intermediate export
+    checkEndOfUnit(false);
 
     exporter.write(getName(), "Operations", operations);
     exporter.write(getName(), "AverageLatency(ms)", (((double)totallatency)/((double)operations)));
     exporter.write(getName(), "MinLatency(ms)", min);
     exporter.write(getName(), "MaxLatency(ms)", max);
 
-    //TODO: 95th and 99th percentile latency
+    exporter.write(getName(), "50thPercentileLatency(ms)", OneMeasurementHistogram.percentile(histogram, 50));
+    exporter.write(getName(), "95thPercentileLatency(ms)", OneMeasurementHistogram.percentile(histogram, 95));
+    exporter.write(getName(), "99thPercentileLatency(ms)", OneMeasurementHistogram.percentile(histogram, 99));
+    exporter.write(getName(), "99.9thPercentileLatency(ms)", OneMeasurementHistogram.percentile(histogram, 99.9));
 
     for (Integer I : returncodes.keySet())
     {
-      int[] val=returncodes.get(I);
+      long[] val=returncodes.get(I);
       exporter.write(getName(), "Return="+I, val[0]);
     }     
 
-    for (SeriesUnit unit : _measurements)
+    Vector<SeriesUnit> units=new Vector<SeriesUnit>(_measurements);
+    SeriesUnit current=getCurrentUnit();
+    if (current!=null)
+    {
+      units.add(current);
+    }
+    for (SeriesUnit unit : units)
     {
-      exporter.write(getName(), Long.toString(unit.time), unit.average);
+      double[] values={unit.operations,unit.average,unit.max,unit.p50,unit.p95,unit.p99};
+      exporter.writeInterval(getName(), unit.time, UNIT_MEASUREMENTS, values);
     }
   }
 	
@@ -155,7 +218,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
 		{
-			int[] val=new int[1];
+			long[] val=new long[1];
 			val[0]=0;
 			returncodes.put(Icode,val);
 		}
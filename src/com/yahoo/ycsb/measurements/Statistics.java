@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics over the results of repeated runs: mean, standard deviation, confidence intervals,
+ * outlier detection and a test of whether two sets of runs differ significantly.
+ *
+ * All confidence levels are 95%, two-sided.
+ */
+public class Statistics
+{
+	/**
+	 * Critical values of Student's t distribution for a two-sided 95% confidence level, for 1 to 30 degrees of freedom.
+	 */
+	static final double[] T_95={12.706,4.303,3.182,2.776,2.571,2.447,2.365,2.306,2.262,2.228,
+		2.201,2.179,2.160,2.145,2.131,2.120,2.110,2.101,2.093,2.086,
+		2.080,2.074,2.069,2.064,2.060,2.056,2.052,2.048,2.045,2.042};
+
+	/**
+	 * Degrees of freedom beyond 30 at which critical values are tabulated, and the values themselves. Between
+	 * entries the value for the next lower entry is used, which is slightly too large and so errs on the safe side.
+	 */
+	static final int[] T_95_DF={40,60,120,1000};
+	static final double[] T_95_LARGE={2.021,2.000,1.980,1.962};
+
+	/**
+	 * The critical value of the normal distribution, which Student's t approaches as the degrees of freedom grow.
+	 */
+	static final double Z_95=1.96;
+
+	/**
+	 * The modified z-score beyond which a value is considered an outlier (Iglewicz and Hoaglin).
+	 */
+	public static final double OUTLIER_THRESHOLD=3.5;
+
+	/**
+	 * The fewest values among which outliers are looked for. With fewer, the median absolute deviation is just
+	 * one of the deviations, and ordinary noise gets flagged.
+	 */
+	public static final int OUTLIER_MIN_VALUES=5;
+
+	/**
+	 * Return the critical value of Student's t distribution for a two-sided 95% confidence level.
+	 *
+	 * @param df the degrees of freedom; fractional values (from Welch's test) are rounded down, to be conservative
+	 */
+	public static double tCritical(double df)
+	{
+		if (df<1)
+		{
+			return T_95[0];
+		}
+		if (df>=T_95.length+1)
+		{
+			if (df>=10*T_95_DF[T_95_DF.length-1])
+			{
+				return Z_95;
+			}
+			double t=T_95[T_95.length-1];
+			for (int i=0; i<T_95_DF.length && df>=T_95_DF[i]; i++)
+			{
+				t=T_95_LARGE[i];
+			}
+			return t;
+		}
+		return T_95[(int)Math.floor(df)-1];
+	}
+
+	public static double mean(double[] values)
+	{
+		double sum=0;
+		for (double v : values)
+		{
+			sum+=v;
+		}
+		return sum/values.length;
+	}
+
+	/**
+	 * Return the sample standard deviation, or 0 if there are fewer than two values.
+	 */
+	public static double stddev(double[] values)
+	{
+		if (values.length<2)
+		{
+			return 0;
+		}
+		double mean=mean(values);
+		double sum=0;
+		for (double v : values)
+		{
+			sum+=(v-mean)*(v-mean);
+		}
+		return Math.sqrt(sum/(values.length-1));
+	}
+
+	/**
+	 * Return the half width of the 95% confidence interval of the mean, or 0 if there are fewer than two values.
+	 */
+	public static double confidenceInterval(double[] values)
+	{
+		if (values.length<2)
+		{
+			return 0;
+		}
+		return tCritical(values.length-1)*stddev(values)/Math.sqrt(values.length);
+	}
+
+	public static double median(double[] values)
+	{
+		double[] sorted=values.clone();
+		Arrays.sort(sorted);
+		int mid=sorted.length/2;
+		if (sorted.length%2==1)
+		{
+			return sorted[mid];
+		}
+		return (sorted[mid-1]+sorted[mid])/2.0;
+	}
+
+	/**
+	 * Return which of the values are outliers, using the modified z-score based on the median absolute
+	 * deviation. Unlike the mean and standard deviation, these are not dragged along by the outliers themselves,
+	 * which matters for the small number of runs usually done.
+	 */
+	public static boolean[] outliers(double[] values)
+	{
+		boolean[] ret=new boolean[values.length];
+		if (values.length<OUTLIER_MIN_VALUES)
+		{
+			return ret;
+		}
+
+		double median=median(values);
+		double[] deviations=new double[values.length];
+		for (int i=0; i<values.length; i++)
+		{
+			deviations[i]=Math.abs(values[i]-median);
+		}
+		double mad=median(deviations);
+		if (mad==0)
+		{
+			return ret;
+		}
+
+		for (int i=0; i<values.length; i++)
+		{
+			ret[i]=0.6745*deviations[i]/mad>OUTLIER_THRESHOLD;
+		}
+		return ret;
+	}
+
+	/**
+	 * Return true if the means of the two sets of values differ significantly at the 95% level, according
+	 * to Welch's t test (which does not assume the two sets have the same variance). Returns false if either
+	 * set has fewer than two values, since then nothing can be said.
+	 */
+	public static boolean differ(double[] a, double[] b)
+	{
+		return differ(mean(a),stddev(a),a.length,mean(b),stddev(b),b.length);
+	}
+
+	/**
+	 * Welch's t test as above, from the mean, standard deviation and number of values of each set, for when
+	 * only a summary of the values is known.
+	 */
+	public static boolean differ(double meana, double stddeva, int na, double meanb, double stddevb, int nb)
+	{
+		if ( (na<2) || (nb<2) )
+		{
+			return false;
+		}
+
+		double va=stddeva*stddeva/na;
+		double vb=stddevb*stddevb/nb;
+		double diff=Math.abs(meana-meanb);
+		if (va+vb==0)
+		{
+			return diff>0;
+		}
+
+		double t=diff/Math.sqrt(va+vb);
+		double df=(va+vb)*(va+vb)/(va*va/(na-1)+vb*vb/(nb-1));
+		return t>tCritical(df);
+	}
+}
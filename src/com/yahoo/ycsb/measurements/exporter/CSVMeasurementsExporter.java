@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Export measurements as CSV with one measurement per line, in the columns metric, measurement, time
+ * and value. The time is only set for the intervals of a time series. A histogram is written as one
+ * line per bucket, with the bucket as the measurement ("0", "1", ..., ">1000"), like the text exporter.
+ */
+public class CSVMeasurementsExporter implements MeasurementsExporter
+{
+
+  public static final String HEADER = "metric,measurement,time,value";
+
+  private ChannelWriter w;
+
+  public CSVMeasurementsExporter(OutputStream os) throws IOException
+  {
+    w = new ChannelWriter(os);
+    w.write(HEADER);
+    w.write('\n');
+  }
+
+  static String quote(String s)
+  {
+    if ((s.indexOf(',') < 0) && (s.indexOf('"') < 0) && (s.indexOf('\n') < 0))
+    {
+      return s;
+    }
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  private void line(String metric, String measurement, String time, String value) throws IOException
+  {
+    w.write(quote(metric));
+    w.write(',');
+    w.write(quote(measurement));
+    w.write(',');
+    w.write(time);
+    w.write(',');
+    w.write(value);
+    w.write('\n');
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException
+  {
+    line(metric, measurement, "", Integer.toString(i));
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException
+  {
+    line(metric, measurement, "", Double.toString(d));
+  }
+
+  public void write(String metric, String measurement, long l) throws IOException
+  {
+    line(metric, measurement, "", Long.toString(l));
+  }
+
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException
+  {
+    for (int i = 0; i < measurements.length; i++)
+    {
+      line(metric, measurements[i], "", Double.toString(values[i]));
+    }
+  }
+
+  public void writeHistogram(String metric, long[] counts) throws IOException
+  {
+    for (int i = 0; i < counts.length - 1; i++)
+    {
+      line(metric, Integer.toString(i), "", Long.toString(counts[i]));
+    }
+    line(metric, ">" + (counts.length - 1), "", Long.toString(counts[counts.length - 1]));
+  }
+
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException
+  {
+    String t = Long.toString(time);
+    for (int i = 0; i < measurements.length; i++)
+    {
+      line(metric, measurements[i], t, Double.toString(values[i]));
+    }
+  }
+
+  public void close() throws IOException
+  {
+    w.close();
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A writer that encodes into a large byte buffer and writes the buffer to a channel whenever it fills up.
+ * For a file this is the file's own channel, so exported records go to disk in large writes without
+ * passing through the layers of streams.
+ */
+class ChannelWriter extends Writer
+{
+
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private WritableByteChannel channel;
+  private CharsetEncoder encoder;
+  private ByteBuffer buffer;
+
+  public ChannelWriter(OutputStream os)
+  {
+    if (os instanceof FileOutputStream)
+    {
+      channel = ((FileOutputStream) os).getChannel();
+    } else
+    {
+      channel = Channels.newChannel(os);
+    }
+    encoder = Charset.forName("UTF-8").newEncoder();
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  public void write(char[] cbuf, int off, int len) throws IOException
+  {
+    write(CharBuffer.wrap(cbuf, off, len));
+  }
+
+  public void write(String str) throws IOException
+  {
+    write(CharBuffer.wrap(str));
+  }
+
+  private void write(CharBuffer chars) throws IOException
+  {
+    while (true)
+    {
+      CoderResult result = encoder.encode(chars, buffer, false);
+      if (result.isOverflow())
+      {
+        drain();
+      } else
+      {
+        if (result.isError())
+        {
+          result.throwException();
+        }
+        return;
+      }
+    }
+  }
+
+  private void drain() throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining())
+    {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  public void flush() throws IOException
+  {
+    drain();
+  }
+
+  public void close() throws IOException
+  {
+    drain();
+    channel.close();
+  }
+
+}
@@ -60,6 +60,52 @@ public class JSONMeasurementsExporter implements MeasurementsExporter
     g.writeEndObject();
   }
 
+  public void write(String metric, String measurement, long l) throws IOException
+  {
+    g.writeStartObject();
+    g.writeStringField("metric", metric);
+    g.writeStringField("measurement", measurement);
+    g.writeNumberField("value", l);
+    g.writeEndObject();
+  }
+
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException
+  {
+    g.writeStartObject();
+    g.writeStringField("metric", metric);
+    for (int i = 0; i < measurements.length; i++)
+    {
+      g.writeNumberField(measurements[i], values[i]);
+    }
+    g.writeEndObject();
+  }
+
+  public void writeHistogram(String metric, long[] counts) throws IOException
+  {
+    g.writeStartObject();
+    g.writeStringField("metric", metric);
+    g.writeFieldName("histogram");
+    g.writeStartArray();
+    for (long c : counts)
+    {
+      g.writeNumber(c);
+    }
+    g.writeEndArray();
+    g.writeEndObject();
+  }
+
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException
+  {
+    g.writeStartObject();
+    g.writeStringField("metric", metric);
+    g.writeNumberField("time", time);
+    for (int i = 0; i < measurements.length; i++)
+    {
+      g.writeNumberField(measurements[i], values[i]);
+    }
+    g.writeEndObject();
+  }
+
   public void close() throws IOException
   {
     if (g != null)
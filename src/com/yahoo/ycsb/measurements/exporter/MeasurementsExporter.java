@@ -46,4 +46,45 @@ public interface MeasurementsExporter extends Closeable
    */
   public void write(String metric, String measurement, double d) throws IOException;
 
+  /**
+   * Write a measurement to the exported format.
+   * 
+   * @param metric Metric name, for example "READ LATENCY".
+   * @param measurement Measurement name, for example "Operations".
+   * @param l Measurement to write.
+   * @throws IOException if writing failed
+   */
+  public void write(String metric, String measurement, long l) throws IOException;
+
+  /**
+   * Write several measurements of a metric as one record, for example the statistics of one client thread.
+   * 
+   * @param metric Metric name, for example "THREAD0".
+   * @param measurements Measurement names.
+   * @param values Measurements to write, one per name.
+   * @throws IOException if writing failed
+   */
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException;
+
+  /**
+   * Write a latency histogram as one record.
+   * 
+   * @param metric Metric name, for example "READ".
+   * @param counts The number of operations in each 1 ms bucket; the last entry is the number of operations
+   *          that took longer than the other buckets cover.
+   * @throws IOException if writing failed
+   */
+  public void writeHistogram(String metric, long[] counts) throws IOException;
+
+  /**
+   * Write the measurements of one interval of a time series as one record.
+   * 
+   * @param metric Metric name, for example "READ".
+   * @param time Start of the interval, in ms since the start of the measurements.
+   * @param measurements Measurement names, for example "Operations" and "AverageLatency(ms)".
+   * @param values Measurements to write, one per name.
+   * @throws IOException if writing failed
+   */
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException;
+
 }
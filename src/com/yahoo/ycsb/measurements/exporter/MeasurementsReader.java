@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+/**
+ * Read back measurements written by an exporter, so that the results of earlier runs can be post-processed.
+ * Understands the output of the JSON, newline delimited JSON, CSV and text exporters. In text, lines that
+ * are not of the form "[metric], measurement, value" (or "[metric], time, name=value, ..." for an interval
+ * of a time series), such as the client's header, are skipped.
+ */
+public class MeasurementsReader
+{
+
+  /**
+   * Histogram buckets read one per line, by metric, until the whole histogram has been read.
+   */
+  private LinkedHashMap<String, TreeMap<Integer, Long>> buckets = new LinkedHashMap<String, TreeMap<Integer, Long>>();
+  private LinkedHashMap<String, long[]> overflows = new LinkedHashMap<String, long[]>();
+
+  private MemoryMeasurementsExporter m = new MemoryMeasurementsExporter();
+
+  /**
+   * Read the measurements in a file, guessing its format from its first line.
+   */
+  public static MemoryMeasurementsExporter read(String file) throws IOException
+  {
+    BufferedReader r = new BufferedReader(new FileReader(file));
+    try
+    {
+      r.mark(4096);
+      String first = r.readLine();
+      r.reset();
+
+      MeasurementsReader reader = new MeasurementsReader();
+      if ((first != null) && (first.trim().startsWith("{")))
+      {
+        reader.readJSON(r);
+      } else if ((first != null) && (first.equals(CSVMeasurementsExporter.HEADER)))
+      {
+        r.readLine();
+        reader.readCSV(r);
+      } else
+      {
+        reader.readText(r);
+      }
+      return reader.finish();
+    } finally
+    {
+      r.close();
+    }
+  }
+
+  /**
+   * Read a sequence of JSON objects, as written by the JSON or newline delimited JSON exporter.
+   */
+  void readJSON(BufferedReader r) throws IOException
+  {
+    JsonParser p = new JsonFactory().createJsonParser(r);
+
+    String metric = null;
+    String measurement = null;
+    Double value = null;
+    Long time = null;
+    Vector<Long> histogram = null;
+    LinkedHashMap<String, Double> fields = new LinkedHashMap<String, Double>();
+
+    JsonToken t;
+    while ((t = p.nextToken()) != null)
+    {
+      if (t == JsonToken.START_OBJECT)
+      {
+        metric = null;
+        measurement = null;
+        value = null;
+        time = null;
+        histogram = null;
+        fields.clear();
+      } else if (t == JsonToken.END_OBJECT)
+      {
+        if (metric == null)
+        {
+          continue;
+        }
+        if (histogram != null)
+        {
+          long[] counts = new long[histogram.size()];
+          for (int i = 0; i < counts.length; i++)
+          {
+            counts[i] = histogram.get(i);
+          }
+          m.writeHistogram(metric, counts);
+        } else if (time != null)
+        {
+          writeInterval(metric, time, fields);
+        } else if ((measurement != null) && (value != null))
+        {
+          m.write(metric, measurement, value.doubleValue());
+        } else
+        {
+          for (String name : fields.keySet())
+          {
+            m.write(metric, name, fields.get(name).doubleValue());
+          }
+        }
+      } else if (t == JsonToken.FIELD_NAME)
+      {
+        String field = p.getCurrentName();
+        t = p.nextToken();
+        if (field.equals("metric"))
+        {
+          metric = p.getText();
+        } else if (field.equals("measurement"))
+        {
+          measurement = p.getText();
+        } else if ((field.equals("histogram")) && (t == JsonToken.START_ARRAY))
+        {
+          histogram = new Vector<Long>();
+          while ((t = p.nextToken()) != JsonToken.END_ARRAY)
+          {
+            histogram.add(p.getLongValue());
+          }
+        } else if ((field.equals("time")) && (t == JsonToken.VALUE_NUMBER_INT))
+        {
+          time = p.getLongValue();
+        } else if ((t == JsonToken.VALUE_NUMBER_INT) || (t == JsonToken.VALUE_NUMBER_FLOAT) || (t == JsonToken.VALUE_NULL))
+        {
+          //null is written for values that are not numbers
+          double d = (t == JsonToken.VALUE_NULL) ? Double.NaN : p.getDoubleValue();
+          if (field.equals("value"))
+          {
+            value = d;
+          } else
+          {
+            fields.put(field, d);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Read lines of the form "[metric], measurement, value" or "[metric], time, name=value, ...".
+   */
+  void readText(BufferedReader r) throws IOException
+  {
+    String line;
+    while ((line = r.readLine()) != null)
+    {
+      int endmetric = line.indexOf("], ");
+      if ((!line.startsWith("[")) || (endmetric < 0))
+      {
+        continue;
+      }
+      String metric = line.substring(1, endmetric);
+      String[] parts = line.substring(endmetric + 3).split(", ");
+      try
+      {
+        if ((parts.length > 1) && (parts[1].indexOf('=') > 0))
+        {
+          LinkedHashMap<String, Double> fields = new LinkedHashMap<String, Double>();
+          for (int i = 1; i < parts.length; i++)
+          {
+            int eq = parts[i].lastIndexOf('=');
+            fields.put(parts[i].substring(0, eq), Double.parseDouble(parts[i].substring(eq + 1)));
+          }
+          writeInterval(metric, Long.parseLong(parts[0]), fields);
+        } else if (parts.length == 2)
+        {
+          measurement(metric, parts[0], Double.parseDouble(parts[1].trim()));
+        }
+      } catch (NumberFormatException e)
+      {
+        //not a measurement
+      }
+    }
+  }
+
+  /**
+   * Read lines of the form metric,measurement,time,value.
+   */
+  void readCSV(BufferedReader r) throws IOException
+  {
+    String line;
+    while ((line = r.readLine()) != null)
+    {
+      Vector<String> columns = splitCSV(line);
+      if (columns.size() != 4)
+      {
+        continue;
+      }
+      double value = Double.parseDouble(columns.get(3));
+      if (columns.get(2).length() > 0)
+      {
+        LinkedHashMap<String, Double> fields = new LinkedHashMap<String, Double>();
+        fields.put(columns.get(1), value);
+        writeInterval(columns.get(0), Long.parseLong(columns.get(2)), fields);
+      } else
+      {
+        measurement(columns.get(0), columns.get(1), value);
+      }
+    }
+  }
+
+  static Vector<String> splitCSV(String line)
+  {
+    Vector<String> ret = new Vector<String>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++)
+    {
+      char c = line.charAt(i);
+      if (quoted)
+      {
+        if ((c == '"') && (i + 1 < line.length()) && (line.charAt(i + 1) == '"'))
+        {
+          sb.append('"');
+          i++;
+        } else if (c == '"')
+        {
+          quoted = false;
+        } else
+        {
+          sb.append(c);
+        }
+      } else if (c == '"')
+      {
+        quoted = true;
+      } else if (c == ',')
+      {
+        ret.add(sb.toString());
+        sb.setLength(0);
+      } else
+      {
+        sb.append(c);
+      }
+    }
+    ret.add(sb.toString());
+    return ret;
+  }
+
+  private void writeInterval(String metric, long time, LinkedHashMap<String, Double> fields) throws IOException
+  {
+    String[] names = fields.keySet().toArray(new String[0]);
+    double[] values = new double[names.length];
+    for (int i = 0; i < names.length; i++)
+    {
+      values[i] = fields.get(names[i]);
+    }
+    m.writeInterval(metric, time, names, values);
+  }
+
+  /**
+   * Keep a measurement read from a line, or the count of a histogram bucket if that's what it is.
+   */
+  private void measurement(String metric, String measurement, double value) throws IOException
+  {
+    if (measurement.matches(">[0-9]+"))
+    {
+      long[] overflow = { Long.parseLong(measurement.substring(1)), (long) value };
+      overflows.put(metric, overflow);
+    } else if (measurement.matches("[0-9]+"))
+    {
+      TreeMap<Integer, Long> b = buckets.get(metric);
+      if (b == null)
+      {
+        b = new TreeMap<Integer, Long>();
+        buckets.put(metric, b);
+      }
+      b.put(Integer.parseInt(measurement), (long) value);
+    } else
+    {
+      m.write(metric, measurement, value);
+    }
+  }
+
+  /**
+   * Turn the buckets read one per line into histograms. Numbered measurements of a metric without an overflow
+   * bucket are not a histogram (older text exports wrote time series that way), so they are kept as they are.
+   */
+  MemoryMeasurementsExporter finish() throws IOException
+  {
+    for (String metric : buckets.keySet())
+    {
+      TreeMap<Integer, Long> b = buckets.get(metric);
+      long[] overflow = overflows.get(metric);
+      if (overflow == null)
+      {
+        for (Integer i : b.keySet())
+        {
+          m.write(metric, i.toString(), b.get(i).doubleValue());
+        }
+        continue;
+      }
+      long[] counts = new long[(int) overflow[0] + 1];
+      for (Integer i : b.keySet())
+      {
+        if (i < overflow[0])
+        {
+          counts[i] = b.get(i);
+        }
+      }
+      counts[counts.length - 1] = overflow[1];
+      m.writeHistogram(metric, counts);
+    }
+    return m;
+  }
+
+}
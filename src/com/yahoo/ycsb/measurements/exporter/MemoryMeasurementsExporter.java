@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Keep the exported measurements in memory, so that the client can post-process the
+ * results of a run, for example to combine the runs of a parameter sweep into one table.
+ */
+public class MemoryMeasurementsExporter implements MeasurementsExporter
+{
+
+  private LinkedHashMap<String, LinkedHashMap<String, Double>> values = new LinkedHashMap<String, LinkedHashMap<String, Double>>();
+
+  /**
+   * The measurements written as longs, kept exactly as well, since a double only holds 53 bits.
+   */
+  private LinkedHashMap<String, LinkedHashMap<String, Long>> longs = new LinkedHashMap<String, LinkedHashMap<String, Long>>();
+
+  private LinkedHashMap<String, long[]> histograms = new LinkedHashMap<String, long[]>();
+
+  private LinkedHashMap<String, LinkedHashMap<Long, LinkedHashMap<String, Double>>> intervals = new LinkedHashMap<String, LinkedHashMap<Long, LinkedHashMap<String, Double>>>();
+
+  public void write(String metric, String measurement, int i) throws IOException
+  {
+    write(metric, measurement, (double) i);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException
+  {
+    LinkedHashMap<String, Double> m = values.get(metric);
+    if (m == null)
+    {
+      m = new LinkedHashMap<String, Double>();
+      values.put(metric, m);
+    }
+    m.put(measurement, d);
+    LinkedHashMap<String, Long> exact = longs.get(metric);
+    if (exact != null)
+    {
+      exact.remove(measurement);
+    }
+  }
+
+  public void write(String metric, String measurement, long l) throws IOException
+  {
+    write(metric, measurement, (double) l);
+    LinkedHashMap<String, Long> exact = longs.get(metric);
+    if (exact == null)
+    {
+      exact = new LinkedHashMap<String, Long>();
+      longs.put(metric, exact);
+    }
+    exact.put(measurement, l);
+  }
+
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException
+  {
+    for (int i = 0; i < measurements.length; i++)
+    {
+      write(metric, measurements[i], values[i]);
+    }
+  }
+
+  public void writeHistogram(String metric, long[] counts) throws IOException
+  {
+    histograms.put(metric, counts.clone());
+  }
+
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException
+  {
+    LinkedHashMap<Long, LinkedHashMap<String, Double>> series = intervals.get(metric);
+    if (series == null)
+    {
+      series = new LinkedHashMap<Long, LinkedHashMap<String, Double>>();
+      intervals.put(metric, series);
+    }
+    LinkedHashMap<String, Double> interval = series.get(time);
+    if (interval == null)
+    {
+      interval = new LinkedHashMap<String, Double>();
+      series.put(time, interval);
+    }
+    for (int i = 0; i < measurements.length; i++)
+    {
+      interval.put(measurements[i], values[i]);
+    }
+  }
+
+  /**
+   * Return the names of the metrics written, in the order they were first written.
+   */
+  public Set<String> getMetrics()
+  {
+    return values.keySet();
+  }
+
+  /**
+   * Return the names of the measurements written for a metric, in the order they were first written.
+   */
+  public Set<String> getMeasurements(String metric)
+  {
+    return values.get(metric).keySet();
+  }
+
+  /**
+   * Return a measurement, or null if it was not written.
+   */
+  public Double getValue(String metric, String measurement)
+  {
+    LinkedHashMap<String, Double> m = values.get(metric);
+    if (m == null)
+    {
+      return null;
+    }
+    return m.get(measurement);
+  }
+
+  /**
+   * Return a measurement written as a long, exactly, or null if it was not written as one.
+   */
+  public Long getLong(String metric, String measurement)
+  {
+    LinkedHashMap<String, Long> m = longs.get(metric);
+    if (m == null)
+    {
+      return null;
+    }
+    return m.get(measurement);
+  }
+
+  /**
+   * Return the names of the metrics a histogram was written for.
+   */
+  public Set<String> getHistogramMetrics()
+  {
+    return histograms.keySet();
+  }
+
+  /**
+   * Return the histogram written for a metric, or null if there is none.
+   */
+  public long[] getHistogram(String metric)
+  {
+    return histograms.get(metric);
+  }
+
+  /**
+   * Return the names of the metrics a time series was written for.
+   */
+  public Set<String> getIntervalMetrics()
+  {
+    return intervals.keySet();
+  }
+
+  /**
+   * Return the intervals written for a metric, by start time, or null if there are none.
+   */
+  public LinkedHashMap<Long, LinkedHashMap<String, Double>> getIntervals(String metric)
+  {
+    return intervals.get(metric);
+  }
+
+  /**
+   * Write everything kept to another exporter. Values that are whole numbers are written as longs.
+   */
+  public void writeTo(MeasurementsExporter exporter) throws IOException
+  {
+    for (String metric : values.keySet())
+    {
+      LinkedHashMap<String, Double> m = values.get(metric);
+      for (String measurement : m.keySet())
+      {
+        double d = m.get(measurement);
+        Long l = getLong(metric, measurement);
+        if (l != null)
+        {
+          exporter.write(metric, measurement, l.longValue());
+        } else if ((d == Math.rint(d)) && (Math.abs(d) < 1e15))
+        {
+          //counts were kept as doubles, write them back as they were
+          exporter.write(metric, measurement, (long) d);
+        } else
+        {
+          exporter.write(metric, measurement, d);
+        }
+      }
+    }
+    for (String metric : histograms.keySet())
+    {
+      exporter.writeHistogram(metric, histograms.get(metric));
+    }
+    for (String metric : intervals.keySet())
+    {
+      LinkedHashMap<Long, LinkedHashMap<String, Double>> series = intervals.get(metric);
+      for (Long time : series.keySet())
+      {
+        LinkedHashMap<String, Double> interval = series.get(time);
+        String[] measurements = interval.keySet().toArray(new String[0]);
+        double[] v = new double[measurements.length];
+        for (int i = 0; i < v.length; i++)
+        {
+          v[i] = interval.get(measurements[i]);
+        }
+        exporter.writeInterval(metric, time, measurements, v);
+      }
+    }
+  }
+
+  public void close() throws IOException
+  {
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Export measurements as newline delimited JSON: one compact object per line, with the same fields as the
+ * objects of the JSON exporter. A histogram is one object with the counts in a "histogram" array, and an
+ * interval of a time series is one object with its "time" and a field per measurement. Values that are
+ * not numbers (such as the average latency of an operation that never ran) are written as null.
+ */
+public class NDJSONMeasurementsExporter implements MeasurementsExporter
+{
+
+  private ChannelWriter w;
+
+  public NDJSONMeasurementsExporter(OutputStream os) throws IOException
+  {
+    w = new ChannelWriter(os);
+  }
+
+  static String quote(String s)
+  {
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+      if ((c == '"') || (c == '\\'))
+      {
+        sb.append('\\').append(c);
+      } else if (c < 0x20)
+      {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else
+      {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+    return sb.toString();
+  }
+
+  static String number(double d)
+  {
+    if ((Double.isNaN(d)) || (Double.isInfinite(d)))
+    {
+      return "null";
+    }
+    return Double.toString(d);
+  }
+
+  private void start(String metric) throws IOException
+  {
+    w.write("{\"metric\":");
+    w.write(quote(metric));
+  }
+
+  private void field(String name, String value) throws IOException
+  {
+    w.write(',');
+    w.write(quote(name));
+    w.write(':');
+    w.write(value);
+  }
+
+  private void end() throws IOException
+  {
+    w.write("}\n");
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException
+  {
+    write(metric, measurement, (long) i);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException
+  {
+    start(metric);
+    field("measurement", quote(measurement));
+    field("value", number(d));
+    end();
+  }
+
+  public void write(String metric, String measurement, long l) throws IOException
+  {
+    start(metric);
+    field("measurement", quote(measurement));
+    field("value", Long.toString(l));
+    end();
+  }
+
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException
+  {
+    start(metric);
+    for (int i = 0; i < measurements.length; i++)
+    {
+      field(measurements[i], number(values[i]));
+    }
+    end();
+  }
+
+  public void writeHistogram(String metric, long[] counts) throws IOException
+  {
+    start(metric);
+    w.write(",\"histogram\":[");
+    for (int i = 0; i < counts.length; i++)
+    {
+      if (i > 0)
+      {
+        w.write(',');
+      }
+      w.write(Long.toString(counts[i]));
+    }
+    w.write(']');
+    end();
+  }
+
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException
+  {
+    start(metric);
+    field("time", Long.toString(time));
+    for (int i = 0; i < measurements.length; i++)
+    {
+      field(measurements[i], number(values[i]));
+    }
+    end();
+  }
+
+  public void close() throws IOException
+  {
+    w.close();
+  }
+
+}
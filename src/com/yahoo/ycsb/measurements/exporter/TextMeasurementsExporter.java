@@ -27,6 +27,8 @@ import java.io.OutputStreamWriter;
 public class TextMeasurementsExporter implements MeasurementsExporter
 {
 
+  static final String AVERAGE_LATENCY = "AverageLatency(ms)";
+
   private BufferedWriter bw;
 
   public TextMeasurementsExporter(OutputStream os)
@@ -46,6 +48,52 @@ public class TextMeasurementsExporter implements MeasurementsExporter
     bw.newLine();
   }
 
+  public void write(String metric, String measurement, long l) throws IOException
+  {
+    bw.write("[" + metric + "], " + measurement + ", " + l);
+    bw.newLine();
+  }
+
+  public void writeRow(String metric, String[] measurements, double[] values) throws IOException
+  {
+    for (int i = 0; i < measurements.length; i++)
+    {
+      write(metric, measurements[i], values[i]);
+    }
+  }
+
+  public void writeHistogram(String metric, long[] counts) throws IOException
+  {
+    for (int i = 0; i < counts.length - 1; i++)
+    {
+      write(metric, Integer.toString(i), counts[i]);
+    }
+    write(metric, ">" + (counts.length - 1), counts[counts.length - 1]);
+  }
+
+  /**
+   * The intervals of a latency time series are written as they always have been, "[metric], time, average
+   * latency", so that parsers of the text output keep working; use another exporter for their other
+   * measurements. Other time series are written as "[metric], time, name=value, ...".
+   */
+  public void writeInterval(String metric, long time, String[] measurements, double[] values) throws IOException
+  {
+    for (int i = 0; i < measurements.length; i++)
+    {
+      if (measurements[i].equals(AVERAGE_LATENCY))
+      {
+        write(metric, Long.toString(time), values[i]);
+        return;
+      }
+    }
+    bw.write("[" + metric + "], " + time);
+    for (int i = 0; i < measurements.length; i++)
+    {
+      bw.write(", " + measurements[i] + "=" + values[i]);
+    }
+    bw.newLine();
+  }
+
   public void close() throws IOException
   {
     this.bw.close();
@@ -19,19 +19,30 @@ package com.yahoo.ycsb.workloads;
 
 import java.util.Properties;
 import com.yahoo.ycsb.*;
+import com.yahoo.ycsb.generator.AcknowledgedCounterGenerator;
 import com.yahoo.ycsb.generator.CounterGenerator;
 import com.yahoo.ycsb.generator.DiscreteGenerator;
-import com.yahoo.ycsb.generator.Generator;
+import com.yahoo.ycsb.generator.ExponentialGenerator;
+import com.yahoo.ycsb.generator.HistogramGenerator;
+import com.yahoo.ycsb.generator.HotspotIntegerGenerator;
 import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.MovingHotspotGenerator;
+import com.yahoo.ycsb.generator.RandomStream;
 import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.SequentialGenerator;
 import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+import com.yahoo.ycsb.generator.Zeta;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The relative 
@@ -49,14 +60,95 @@ import java.util.Vector;
  * <LI><b>insertproportion</b>: what proportion of operations should be inserts (default: 0)
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
- * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian or latest (default: uniform)
+ * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, latest, hotspot, movinghotspot, exponential, sequential or empirical (default: uniform)
+ * <LI><b>exponential.percentile</b> and <b>exponential.frac</b>: for the exponential distribution, which reads recent records more, that percentile of the reads go to that fraction of the records, the newest (default: 95 and 0.8571428571, so that 95% of reads go to the newest 6/7 of the records)
+ * <LI><b>empirical.file</b>: for the empirical distribution, a histogram of the records to read, with one bucket per line, either its count or "bucket count" (see HistogramGenerator); the buckets split the records evenly
+ * <LI><b>hotspotdatafraction</b>: for the hotspot distributions, the fraction of the records that are hot (default: 0.2)
+ * <LI><b>hotspotopnfraction</b>: for the hotspot distributions, the fraction of the operations that go to the hot records (default: 0.8)
+ * <LI><b>hotspotshiftrate</b>: for movinghotspot, how many records per second the hot set drifts by (default: 0)
+ * <LI><b>hotspotjumpinterval</b>: for movinghotspot, how often, in ms, the hot set jumps to an entirely new set of records (default: 0, never)
+ * <LI><b>seed</b>: the seed each thread's random choices are derived from, to replay a run (default: chosen by the client, and recorded with the results)
+ * <LI><b>zipfianconstant</b>: the skew of the zipfian and latest request distributions (default: 0.99)
+ * <LI><b>zeta.method</b> and <b>zeta.cachedir</b>: how the zipfian and latest distributions compute zeta at startup (see {@link Zeta})
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
- * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
+ * <LI><b>insertkeychunksize</b>: how many insert keys a thread takes from the shared counter at a time during the transaction phase; keys are only read once their inserts, and those of all the keys before them, have completed (default: 1)
+ * <LI><b>refilldeleted</b>: should inserts during the transaction phase put back records that were deleted before inserting new ones (default: false)
+ * <LI><b>pregenerate</b>: should the operations of the transaction phase be prepared ahead of time by producer threads, so that the client threads only make the DB calls; the time spent preparing them is reported as PREGENERATE (default: false)
+ * <LI><b>pregenerate.producers</b>, <b>pregenerate.buffersize</b> and <b>pregenerate.batchsize</b>: the number of producer threads, the number of prepared operations each client thread can have waiting, and how many a producer prepares for a thread at a time (default: 1, 4096 and 256)
+ * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed"), a fixed shuffle of the key numbers in which every record still gets its own key (default: hashed)
  * </ul> 
  */
 public class CoreWorkload extends Workload
 {
+	/**
+	 * The state of one client thread, returned by initThread().
+	 */
+	public static class ThreadState
+	{
+		/**
+		 * The thread's own random stream, which all its random choices are drawn from.
+		 */
+		RandomStream random;
+
+		/**
+		 * The insert keys the thread has leased and not used yet: insertnext up to (not including) insertend.
+		 */
+		long insertnext;
+		long insertend;
+
+		int threadid;
+
+		/**
+		 * When operations are pregenerated, the ring the thread takes them from, the producer filling it, and the
+		 * stream the producer draws them from.
+		 */
+		OperationRing<PreparedOperation> ring;
+		OperationProducer producer;
+		RandomStream producerrandom;
+
+		/**
+		 * Set once the thread has done all its operations, so that its producer stops preparing them.
+		 */
+		volatile boolean done;
+
+		/**
+		 * How often the thread found no prepared operation in its ring, and how long it waited for them, in ns.
+		 */
+		long stalls;
+		long stalltime;
+
+		/**
+		 * The prepared operations the thread has taken from its ring.
+		 */
+		long taken;
+
+		ThreadState(RandomStream random)
+		{
+			this.random=random;
+		}
+	}
+
+	/**
+	 * An operation prepared ahead of time, with everything it needs but the DB call.
+	 */
+	static class PreparedOperation
+	{
+		TransactionType type;
+		long keynum;
+		String keyname;
+		HashSet<String> fields;
+		HashMap<String,String> values;
+		int scanlength;
+	}
+
+	/**
+	 * The kinds of transaction the workload mixes.
+	 */
+	public enum TransactionType
+	{
+		READ, UPDATE, INSERT, SCAN, READMODIFYWRITE, DELETE
+	}
 
 	/**
 	 * The name of the database table to run queries against.
@@ -190,6 +282,151 @@ public class CoreWorkload extends Workload
 	 */
 	public static final String REQUEST_DISTRIBUTION_PROPERTY_DEFAULT="uniform";
 
+	/**
+	 * The name of the property for the zipfian constant (the skew) of the zipfian and latest request distributions.
+	 */
+	public static final String ZIPFIAN_CONSTANT_PROPERTY="zipfianconstant";
+
+	/**
+	 * The default zipfian constant.
+	 */
+	public static final String ZIPFIAN_CONSTANT_PROPERTY_DEFAULT=Double.toString(ZipfianGenerator.ZIPFIAN_CONSTANT);
+
+	/**
+	 * The name of the property for the percentile of reads that go to the newest exponential.frac of the records, for the exponential distribution.
+	 */
+	public static final String EXPONENTIAL_PERCENTILE_PROPERTY="exponential.percentile";
+
+	/**
+	 * The default percentile.
+	 */
+	public static final String EXPONENTIAL_PERCENTILE_PROPERTY_DEFAULT="95";
+
+	/**
+	 * The name of the property for the fraction of the records, the newest, that exponential.percentile of the reads go to.
+	 */
+	public static final String EXPONENTIAL_FRAC_PROPERTY="exponential.frac";
+
+	/**
+	 * The default fraction of the records.
+	 */
+	public static final String EXPONENTIAL_FRAC_PROPERTY_DEFAULT="0.8571428571";
+
+	/**
+	 * The name of the property for how many insert keys a thread takes from the shared key counter at a time during
+	 * the transaction phase. Larger chunks mean less contention for the counter, but the unused keys of the chunks
+	 * threads hold keep the keys after them from being read until they are used.
+	 */
+	public static final String INSERT_KEY_CHUNK_SIZE_PROPERTY="insertkeychunksize";
+
+	/**
+	 * The default insert key chunk: one key at a time.
+	 */
+	public static final String INSERT_KEY_CHUNK_SIZE_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The name of the property for whether inserts during the transaction phase put back deleted records, rather
+	 * than always inserting new ones.
+	 */
+	public static final String REFILL_DELETED_PROPERTY="refilldeleted";
+
+	/**
+	 * The default is to always insert new records.
+	 */
+	public static final String REFILL_DELETED_PROPERTY_DEFAULT="false";
+
+	/**
+	 * The name of the property for whether to prepare the operations of the transaction phase ahead of time, in
+	 * producer threads, so that the client threads only make the DB calls.
+	 */
+	public static final String PREGENERATE_PROPERTY="pregenerate";
+
+	/**
+	 * The default is to prepare each operation in the client thread that does it.
+	 */
+	public static final String PREGENERATE_PROPERTY_DEFAULT="false";
+
+	/**
+	 * The name of the property for the number of producer threads preparing operations.
+	 */
+	public static final String PREGENERATE_PRODUCERS_PROPERTY="pregenerate.producers";
+
+	/**
+	 * The default number of producer threads.
+	 */
+	public static final String PREGENERATE_PRODUCERS_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The name of the property for how many prepared operations each client thread's ring holds.
+	 */
+	public static final String PREGENERATE_BUFFER_SIZE_PROPERTY="pregenerate.buffersize";
+
+	/**
+	 * The default ring size.
+	 */
+	public static final String PREGENERATE_BUFFER_SIZE_PROPERTY_DEFAULT="4096";
+
+	/**
+	 * The name of the property for how many operations a producer prepares for a client thread at a time.
+	 */
+	public static final String PREGENERATE_BATCH_SIZE_PROPERTY="pregenerate.batchsize";
+
+	/**
+	 * The default batch size.
+	 */
+	public static final String PREGENERATE_BATCH_SIZE_PROPERTY_DEFAULT="256";
+
+	/**
+	 * How many more times an operation draws a record when the one it drew has been deleted, before it settles for
+	 * a deleted one (if nearly all of them have been).
+	 */
+	public static final int DELETED_REDRAWS=100;
+
+	/**
+	 * The name of the property for the histogram file of the empirical distribution.
+	 */
+	public static final String EMPIRICAL_FILE_PROPERTY="empirical.file";
+
+	/**
+	 * The name of the property for the fraction of the records that are hot, for the hotspot distributions.
+	 */
+	public static final String HOTSPOT_DATA_FRACTION_PROPERTY="hotspotdatafraction";
+
+	/**
+	 * The default fraction of hot records.
+	 */
+	public static final String HOTSPOT_DATA_FRACTION_PROPERTY_DEFAULT="0.2";
+
+	/**
+	 * The name of the property for the fraction of the operations that go to the hot records, for the hotspot distributions.
+	 */
+	public static final String HOTSPOT_OPN_FRACTION_PROPERTY="hotspotopnfraction";
+
+	/**
+	 * The default fraction of operations that go to the hot records.
+	 */
+	public static final String HOTSPOT_OPN_FRACTION_PROPERTY_DEFAULT="0.8";
+
+	/**
+	 * The name of the property for how many records per second the hot set drifts by, for the moving hotspot distribution.
+	 */
+	public static final String HOTSPOT_SHIFT_RATE_PROPERTY="hotspotshiftrate";
+
+	/**
+	 * The default shift rate: no drift.
+	 */
+	public static final String HOTSPOT_SHIFT_RATE_PROPERTY_DEFAULT="0";
+
+	/**
+	 * The name of the property for how often, in ms, the hot set jumps to a new set of records, for the moving hotspot distribution.
+	 */
+	public static final String HOTSPOT_JUMP_INTERVAL_PROPERTY="hotspotjumpinterval";
+
+	/**
+	 * The default jump interval: no jumps.
+	 */
+	public static final String HOTSPOT_JUMP_INTERVAL_PROPERTY_DEFAULT="0";
+
 	/**
 	 * The name of the property for the max scan length (number of records)
 	 */
@@ -226,17 +463,100 @@ public class CoreWorkload extends Workload
 
 	DiscreteGenerator operationchooser;
 
+	/**
+	 * The transaction type of each value of the operation chooser, by position, so that a transaction is
+	 * dispatched from the index drawn without comparing strings.
+	 */
+	TransactionType[] operations;
+
 	IntegerGenerator keychooser;
 
-	Generator fieldchooser;
+	/**
+	 * True if the key chooser draws how far back from the newest record to go, rather than a record number.
+	 */
+	boolean recencykeys;
+
+	IntegerGenerator fieldchooser;
+
+	/**
+	 * The names of the fields, built once so that choosing a field doesn't build a string.
+	 */
+	String[] fieldnames;
+
+	/**
+	 * The keys of inserts done during the transaction phase. A key counts as inserted (and may be read) only once
+	 * its insert has completed.
+	 */
+	AcknowledgedCounterGenerator transactioninsertkeysequence;
+
+	/**
+	 * How many insert keys a thread leases at a time during the transaction phase.
+	 */
+	int insertkeychunksize;
+
+	/**
+	 * The records deleted during the transaction phase, which the other operations avoid.
+	 */
+	DeletedKeySet deletedkeys;
+
+	/**
+	 * The deletes that found no record left to delete after DELETED_REDRAWS tries.
+	 */
+	AtomicLong skippeddeletes=new AtomicLong();
+
+	/**
+	 * True if transaction inserts put deleted records back before inserting new ones.
+	 */
+	boolean refilldeleted;
+
+	/**
+	 * True if operations are prepared ahead of time, and the settings of the threads preparing them.
+	 */
+	boolean pregenerate;
+	int pregenerateproducers;
+	int pregeneratebatchsize;
+	int pregeneratebuffersize;
+
+	/**
+	 * The threads preparing operations ahead of time, once the first client thread has asked for one; until then
+	 * null. They are only started then, so that runs that only load, or whose setup fails, don't start any.
+	 */
+	volatile OperationProducer[] producers;
+
+	/**
+	 * How often client threads had to wait for prepared operations, and how long they waited, in ns.
+	 */
+	AtomicLong pregeneratestalls=new AtomicLong();
+	AtomicLong pregeneratestalltime=new AtomicLong();
 
-	CounterGenerator transactioninsertkeysequence;
+	/**
+	 * The prepared operations client threads took; the rest were left in the rings when the run ended.
+	 */
+	AtomicLong pregeneratetaken=new AtomicLong();
 	
 	IntegerGenerator scanlength;
 	
 	boolean orderedinserts;
 
-	int recordcount;
+	/**
+	 * Shuffles the key numbers when records are inserted in hashed order.
+	 */
+	KeyPermutation keypermutation;
+
+	/**
+	 * The stream each thread's own random stream is split from, when no seed is given. The generators are shared by
+	 * all the threads, but each thread draws their random numbers from its own stream, kept in its thread state.
+	 */
+	RandomStream rootstream;
+
+	/**
+	 * If a seed is given, each thread's stream is derived from it and the thread id instead, so that the same
+	 * seed and thread count make the same choices.
+	 */
+	boolean seeded;
+	long seed;
+
+	long recordcount;
 	
 	/**
 	 * Initialize the scenario. 
@@ -253,12 +573,21 @@ public class CoreWorkload extends Workload
 		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
 		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
 		double deleteproportion=Double.parseDouble(p.getProperty(DELETE_PROPORTION_PROPERTY,DELETE_PROPORTION_PROPERTY_DEFAULT));
-		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
+		recordcount=Long.parseLong(p.getProperty(Client.RECORD_COUNT_PROPERTY));
 		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
+		double zipfianconstant=Double.parseDouble(p.getProperty(ZIPFIAN_CONSTANT_PROPERTY,ZIPFIAN_CONSTANT_PROPERTY_DEFAULT));
+		try
+		{
+			Zeta.setProperties(p);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new WorkloadException(e.getMessage());
+		}
 		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
 		String scanlengthdistrib=p.getProperty(SCAN_LENGTH_DISTRIBUTION_PROPERTY,SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT);
 		
-		int insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		long insertstart=Long.parseLong(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
 		
 		readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
 		writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
@@ -266,45 +595,49 @@ public class CoreWorkload extends Workload
 		if (p.getProperty(INSERT_ORDER_PROPERTY,INSERT_ORDER_PROPERTY_DEFAULT).compareTo("hashed")==0)
 		{
 			orderedinserts=false;
+			keypermutation=new KeyPermutation();
 		}
 		else
 		{
 			orderedinserts=true;
 		}
 
-		keysequence=new CounterGenerator(insertstart);
-		operationchooser=new DiscreteGenerator();
-		if (readproportion>0)
+		rootstream=new RandomStream();
+		seeded=(p.getProperty(SEED_PROPERTY)!=null);
+		if (seeded)
 		{
-			operationchooser.addValue(readproportion,"READ");
-		}
-
-		if (updateproportion>0)
-		{
-			operationchooser.addValue(updateproportion,"UPDATE");
+			seed=Long.parseLong(p.getProperty(SEED_PROPERTY));
 		}
+		keysequence=new CounterGenerator(insertstart);
+		operationchooser=new DiscreteGenerator();
+		Vector<TransactionType> ops=new Vector<TransactionType>();
+		addOperation(ops,readproportion,TransactionType.READ);
+		addOperation(ops,updateproportion,TransactionType.UPDATE);
+		addOperation(ops,insertproportion,TransactionType.INSERT);
+		addOperation(ops,scanproportion,TransactionType.SCAN);
+		addOperation(ops,readmodifywriteproportion,TransactionType.READMODIFYWRITE);
+		addOperation(ops,deleteproportion,TransactionType.DELETE);
+		operations=ops.toArray(new TransactionType[ops.size()]);
 
-		if (insertproportion>0)
+		transactioninsertkeysequence=new AcknowledgedCounterGenerator(recordcount);
+		insertkeychunksize=Integer.parseInt(p.getProperty(INSERT_KEY_CHUNK_SIZE_PROPERTY,INSERT_KEY_CHUNK_SIZE_PROPERTY_DEFAULT));
+		if (insertkeychunksize<1)
 		{
-			operationchooser.addValue(insertproportion,"INSERT");
+			throw new WorkloadException(INSERT_KEY_CHUNK_SIZE_PROPERTY+" must be at least 1");
 		}
-		
-		if (scanproportion>0)
+		deletedkeys=new DeletedKeySet();
+		refilldeleted=Boolean.parseBoolean(p.getProperty(REFILL_DELETED_PROPERTY,REFILL_DELETED_PROPERTY_DEFAULT));
+		pregenerate=Boolean.parseBoolean(p.getProperty(PREGENERATE_PROPERTY,PREGENERATE_PROPERTY_DEFAULT));
+		if (pregenerate)
 		{
-			operationchooser.addValue(scanproportion,"SCAN");
+			pregenerateproducers=Integer.parseInt(p.getProperty(PREGENERATE_PRODUCERS_PROPERTY,PREGENERATE_PRODUCERS_PROPERTY_DEFAULT));
+			pregeneratebatchsize=Integer.parseInt(p.getProperty(PREGENERATE_BATCH_SIZE_PROPERTY,PREGENERATE_BATCH_SIZE_PROPERTY_DEFAULT));
+			pregeneratebuffersize=Integer.parseInt(p.getProperty(PREGENERATE_BUFFER_SIZE_PROPERTY,PREGENERATE_BUFFER_SIZE_PROPERTY_DEFAULT));
+			if ( (pregenerateproducers<1) || (pregeneratebatchsize<1) || (pregeneratebuffersize<1) )
+			{
+				throw new WorkloadException(PREGENERATE_PRODUCERS_PROPERTY+", "+PREGENERATE_BATCH_SIZE_PROPERTY+" and "+PREGENERATE_BUFFER_SIZE_PROPERTY+" must be at least 1");
+			}
 		}
-		
-		if (readmodifywriteproportion>0)
-		{
-			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
-		}
-		
-		if(deleteproportion>0) {
-			operationchooser.addValue(deleteproportion, "DELETE");
-		}
-		
-
-		transactioninsertkeysequence=new CounterGenerator(recordcount);
 		if (requestdistrib.compareTo("uniform")==0)
 		{
 			keychooser=new UniformIntegerGenerator(0,recordcount-1);
@@ -318,14 +651,74 @@ public class CoreWorkload extends Workload
 			//plus the number of predicted keys as the total keyspace. then, if the generator picks a key that hasn't been inserted yet, will
 			//just ignore it and pick another key. this way, the size of the keyspace doesn't change from the perspective of the scrambled zipfian generator
 			
-			int opcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-			int expectednewkeys=(int)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
+			long opcount=Long.parseLong(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
+			long expectednewkeys=(long)(((double)opcount)*insertproportion*2.0); //2 is fudge factor
 			
-			keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys);
+			keychooser=new ScrambledZipfianGenerator(recordcount+expectednewkeys,zipfianconstant);
 		}
 		else if (requestdistrib.compareTo("latest")==0)
 		{
-			keychooser=new SkewedLatestGenerator(transactioninsertkeysequence);
+			keychooser=new SkewedLatestGenerator(transactioninsertkeysequence,zipfianconstant);
+		}
+		else if ( (requestdistrib.compareTo("hotspot")==0) || (requestdistrib.compareTo("movinghotspot")==0) )
+		{
+			double hotsetfraction=Double.parseDouble(p.getProperty(HOTSPOT_DATA_FRACTION_PROPERTY,HOTSPOT_DATA_FRACTION_PROPERTY_DEFAULT));
+			double hotopnfraction=Double.parseDouble(p.getProperty(HOTSPOT_OPN_FRACTION_PROPERTY,HOTSPOT_OPN_FRACTION_PROPERTY_DEFAULT));
+			try
+			{
+				if (requestdistrib.compareTo("hotspot")==0)
+				{
+					keychooser=new HotspotIntegerGenerator(0,recordcount-1,hotsetfraction,hotopnfraction);
+				}
+				else
+				{
+					double shiftrate=Double.parseDouble(p.getProperty(HOTSPOT_SHIFT_RATE_PROPERTY,HOTSPOT_SHIFT_RATE_PROPERTY_DEFAULT));
+					long jumpinterval=Long.parseLong(p.getProperty(HOTSPOT_JUMP_INTERVAL_PROPERTY,HOTSPOT_JUMP_INTERVAL_PROPERTY_DEFAULT));
+					keychooser=new MovingHotspotGenerator(0,recordcount-1,hotsetfraction,hotopnfraction,shiftrate,jumpinterval);
+				}
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new WorkloadException(e.getMessage());
+			}
+		}
+		else if (requestdistrib.compareTo("exponential")==0)
+		{
+			double percentile=Double.parseDouble(p.getProperty(EXPONENTIAL_PERCENTILE_PROPERTY,EXPONENTIAL_PERCENTILE_PROPERTY_DEFAULT));
+			double frac=Double.parseDouble(p.getProperty(EXPONENTIAL_FRAC_PROPERTY,EXPONENTIAL_FRAC_PROPERTY_DEFAULT));
+			try
+			{
+				keychooser=new ExponentialGenerator(percentile,recordcount*frac);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new WorkloadException(e.getMessage());
+			}
+			recencykeys=true;
+		}
+		else if (requestdistrib.compareTo("sequential")==0)
+		{
+			keychooser=new SequentialGenerator(0,recordcount-1);
+		}
+		else if (requestdistrib.compareTo("empirical")==0)
+		{
+			String file=p.getProperty(EMPIRICAL_FILE_PROPERTY);
+			if (file==null)
+			{
+				throw new WorkloadException("The empirical distribution needs a histogram file, set with "+EMPIRICAL_FILE_PROPERTY);
+			}
+			try
+			{
+				keychooser=new HistogramGenerator(0,recordcount-1,file);
+			}
+			catch (IOException e)
+			{
+				throw new WorkloadException("Could not read histogram file "+file+": "+e.getMessage());
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new WorkloadException(e.getMessage());
+			}
 		}
 		else
 		{
@@ -333,6 +726,11 @@ public class CoreWorkload extends Workload
 		}
 
 		fieldchooser=new UniformIntegerGenerator(0,fieldcount-1);
+		fieldnames=new String[fieldcount];
+		for (int i=0; i<fieldcount; i++)
+		{
+			fieldnames[i]="field"+i;
+		}
 		
 		if (scanlengthdistrib.compareTo("uniform")==0)
 		{
@@ -348,6 +746,102 @@ public class CoreWorkload extends Workload
 		}
 	}
 
+	/**
+	 * Add a transaction type to the operation chooser, if it is to be done at all.
+	 */
+	void addOperation(Vector<TransactionType> ops, double proportion, TransactionType op)
+	{
+		if (proportion>0)
+		{
+			operationchooser.addValue(proportion,op.name());
+			ops.add(op);
+		}
+	}
+
+	/**
+	 * Give each thread its own random stream, derived from the seed or split from the root one, to draw from
+	 * for all its operations.
+	 */
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		ThreadState state;
+		if (seeded)
+		{
+			state=new ThreadState(RandomStream.forThread(seed,mythreadid));
+		}
+		else
+		{
+			synchronized (rootstream)
+			{
+				state=new ThreadState(rootstream.split());
+			}
+		}
+		state.threadid=mythreadid;
+		return state;
+	}
+
+	/**
+	 * Acknowledge the insert keys the thread leased but didn't use, so that they don't keep the keys after them
+	 * from being read. They will never be inserted, so reads that choose them won't find them.
+	 */
+	public void cleanupThread(Object threadstate) throws WorkloadException
+	{
+		ThreadState state=(ThreadState)threadstate;
+		transactioninsertkeysequence.acknowledge(state.insertnext,state.insertend);
+		state.insertnext=state.insertend;
+		state.done=true;
+		pregeneratestalls.addAndGet(state.stalls);
+		pregeneratestalltime.addAndGet(state.stalltime);
+		pregeneratetaken.addAndGet(state.taken);
+	}
+
+	/**
+	 * Stop the threads preparing operations.
+	 */
+	public void cleanup() throws WorkloadException
+	{
+		OperationProducer[] started=producers;
+		if (started!=null)
+		{
+			for (OperationProducer producer : started)
+			{
+				producer.finish();
+			}
+		}
+	}
+
+	/**
+	 * Export how much work preparing operations ahead of time took, as the PREGENERATE metric: the operations
+	 * client threads took, the operations prepared (which include those still in the rings when the run ended,
+	 * never done), the time spent preparing them all (which the client threads didn't spend), and how often and
+	 * for how long client threads had to wait for their next operation.
+	 */
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		if (skippeddeletes.get()!=0)
+		{
+			exporter.write("DELETE", "Skipped", skippeddeletes.get());
+		}
+		OperationProducer[] started=producers;
+		if (started==null)
+		{
+			return;
+		}
+		long prepared=0;
+		long time=0;
+		for (OperationProducer producer : started)
+		{
+			prepared+=producer._operations;
+			time+=producer._time;
+		}
+		exporter.write("PREGENERATE", "Operations", pregeneratetaken.get());
+		exporter.write("PREGENERATE", "Prepared", prepared);
+		exporter.write("PREGENERATE", "Time(ms)", time/1000000.0);
+		exporter.write("PREGENERATE", "AverageTime(us)", (prepared==0) ? 0 : time/1000.0/prepared);
+		exporter.write("PREGENERATE", "Stalls", pregeneratestalls.get());
+		exporter.write("PREGENERATE", "StallTime(ms)", pregeneratestalltime.get()/1000000.0);
+	}
+
 	/**
 	 * Do one insert operation. Because it will be called concurrently from multiple client threads, this 
 	 * function must be thread safe. However, avoid synchronized, or the threads will block waiting for each 
@@ -356,19 +850,14 @@ public class CoreWorkload extends Workload
 	 */
 	public boolean doInsert(DB db, Object threadstate)
 	{
-		int keynum=keysequence.nextInt();
+		Random random=((ThreadState)threadstate).random;
+		long keynum=keysequence.nextValue();
 		if (!orderedinserts)
 		{
-			keynum=Utils.hash(keynum);
+			keynum=keypermutation.permute(keynum);
 		}
 		String dbkey="user"+keynum;
-		HashMap<String,String> values=new HashMap<String,String>();
-		for (int i=0; i<fieldcount; i++)
-		{
-			String fieldkey="field"+i;
-			String data=Utils.ASCIIString(fieldlength);
-			values.put(fieldkey,data);
-		}
+		HashMap<String,String> values=buildInsertValues(random);
 		if (db.insert(table,dbkey,values) == 0)
 			return true;
 		else
@@ -383,119 +872,315 @@ public class CoreWorkload extends Workload
 	 */
 	public boolean doTransaction(DB db, Object threadstate)
 	{
-		String op=operationchooser.nextString();
+		ThreadState state=(ThreadState)threadstate;
+		if (pregenerate)
+		{
+			execute(db,state,takePrepared(state));
+			return true;
+		}
 
-		if (op.compareTo("READ")==0)
+		Random random=state.random;
+		switch (operations[operationchooser.nextIndex(random)])
 		{
-			doTransactionRead(db);
+		case READ:
+			doTransactionRead(db,random);
+			break;
+		case UPDATE:
+			doTransactionUpdate(db,random);
+			break;
+		case INSERT:
+			doTransactionInsert(db,state);
+			break;
+		case SCAN:
+			doTransactionScan(db,random);
+			break;
+		case DELETE:
+			doTransactionDelete(db,random);
+			break;
+		default:
+			doTransactionReadModifyWrite(db,random);
 		}
-		else if (op.compareTo("UPDATE")==0)
+		
+		return true;
+	}
+
+	/**
+	 * Return the producer that prepares the operations of a client thread, starting the producers on first use.
+	 */
+	synchronized OperationProducer getProducer(int threadid)
+	{
+		if (producers==null)
 		{
-			doTransactionUpdate(db);
+			OperationProducer[] started=new OperationProducer[pregenerateproducers];
+			for (int i=0; i<started.length; i++)
+			{
+				started[i]=new OperationProducer(this,pregeneratebatchsize,i);
+				started[i].start();
+			}
+			producers=started;
 		}
-		else if (op.compareTo("INSERT")==0)
+		return producers[threadid%producers.length];
+	}
+
+	/**
+	 * Take the thread's next prepared operation from its ring, waiting for its producer if there is none yet, or
+	 * preparing it here if the producer has died.
+	 * The ring is set up, and handed to a producer, on the thread's first transaction, so that no operations are
+	 * prepared for threads that only load.
+	 */
+	PreparedOperation takePrepared(ThreadState state)
+	{
+		if (state.ring==null)
 		{
-			doTransactionInsert(db);
+			state.ring=new OperationRing<PreparedOperation>(pregeneratebuffersize);
+			state.producerrandom=state.random.split();
+			state.producer=getProducer(state.threadid);
+			state.producer.add(state);
 		}
-		else if (op.compareTo("SCAN")==0)
+		PreparedOperation op=state.ring.poll();
+		if (op==null)
 		{
-			doTransactionScan(db);
+			long st=System.nanoTime();
+			while ((op=state.ring.poll())==null)
+			{
+				if (!state.producer.isAlive())
+				{
+					//the producer died (its exception has been printed): nothing will refill the ring, so prepare the
+					//operation here, from the stream it would have used
+					op=prepare(state.producerrandom);
+					break;
+				}
+				state.producer.starved();
+				Thread.yield();
+			}
+			state.stalls++;
+			state.stalltime+=System.nanoTime()-st;
 		}
-		else if (op.compareTo("DELETE") == 0) {
-			doTransactionDelete(db);
+		state.taken++;
+		state.producer.taken(state.ring);
+		return op;
+	}
+
+	/**
+	 * Choose an operation and everything it needs but the DB call, for a producer thread. An insert's key is
+	 * only chosen when it is done, since it must be acknowledged by the thread that leased it.
+	 */
+	PreparedOperation prepare(Random random)
+	{
+		PreparedOperation op=new PreparedOperation();
+		op.type=operations[operationchooser.nextIndex(random)];
+		if (op.type==TransactionType.INSERT)
+		{
+			op.values=buildInsertValues(random);
+			return op;
 		}
-		else
+		op.keynum=nextKeynum(random);
+		op.keyname=buildKeyName(op.keynum);
+		switch (op.type)
 		{
-			doTransactionReadModifyWrite(db);
+		case READ:
+			op.fields=chooseFields(random);
+			break;
+		case UPDATE:
+			op.values=buildUpdateValues(random);
+			break;
+		case SCAN:
+			op.scanlength=scanlength.nextInt(random);
+			op.fields=chooseFields(random);
+			break;
+		case READMODIFYWRITE:
+			op.fields=chooseFields(random);
+			op.values=buildUpdateValues(random);
+			break;
+		default:
+			break;
 		}
-		
-		return true;
+		return op;
 	}
 
-	public void doTransactionDelete(DB db) {
-	  
-	  int id = keysequence.nextInt();
-	  String userid = "user"+id;
-	  db.delete(table,userid);
-  }
-
-	public void doTransactionRead(DB db)
+	/**
+	 * Do a prepared operation. If its record has been deleted since it was prepared, another is chosen.
+	 */
+	void execute(DB db, ThreadState state, PreparedOperation op)
 	{
-		//choose a random key
-		int keynum;
-		do
+		if ( (op.type!=TransactionType.INSERT) && (op.type!=TransactionType.DELETE) && (deletedkeys.isDeleted(op.keynum)) )
 		{
-			keynum=keychooser.nextInt();
+			op.keynum=nextKeynum(state.random);
+			op.keyname=buildKeyName(op.keynum);
 		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-		
-		if (!orderedinserts)
+		switch (op.type)
 		{
-			keynum=Utils.hash(keynum);
+		case READ:
+			db.read(table,op.keyname,op.fields,new HashMap<String,String>());
+			break;
+		case UPDATE:
+			db.update(table,op.keyname,op.values);
+			break;
+		case INSERT:
+			doTransactionInsert(db,state,op.values);
+			break;
+		case SCAN:
+			db.scan(table,op.keyname,op.scanlength,op.fields,new Vector<HashMap<String,String>>());
+			break;
+		case DELETE:
+			deleteRecord(db,op.keynum,state.random);
+			break;
+		default:
+			readModifyWrite(db,op.keyname,op.fields,op.values);
 		}
-		String keyname="user"+keynum;
-
-		HashSet<String> fields=null;
+	}
 
-		if (!readallfields)
+	/**
+	 * Choose the number of an existing record to operate on, skipping any the key chooser draws that haven't
+	 * been inserted yet or have been deleted.
+	 */
+	long nextKeynum(Random random)
+	{
+		long keynum=drawKeynum(random);
+		for (int i=0; (i<DELETED_REDRAWS) && (deletedkeys.isDeleted(keynum)); i++)
 		{
-			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
-
-			fields=new HashSet<String>();
-			fields.add(fieldname);
+			keynum=drawKeynum(random);
 		}
-
-		db.read(table,keyname,fields,new HashMap<String,String>());
+		return keynum;
 	}
-	
-	public void doTransactionReadModifyWrite(DB db)
+
+	/**
+	 * Draw the number of a record that has been inserted from the key chooser. With the exponential distribution,
+	 * the number drawn is how far back from the newest record to go.
+	 */
+	long drawKeynum(Random random)
 	{
-		//choose a random key
-		int keynum;
-		do
+		long keynum;
+		if (recencykeys)
 		{
-			keynum=keychooser.nextInt();
+			do
+			{
+				keynum=transactioninsertkeysequence.lastValue()-keychooser.nextValue(random);
+			}
+			while (keynum<0);
 		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-		
-		if (!orderedinserts)
+		else
 		{
-			keynum=Utils.hash(keynum);
+			do
+			{
+				keynum=keychooser.nextValue(random);
+			}
+			while (keynum>transactioninsertkeysequence.lastValue());
 		}
-		String keyname="user"+keynum;
+		return keynum;
+	}
 
-		HashSet<String> fields=null;
+	/**
+	 * Return the key of a record, in the insert order.
+	 */
+	String buildKeyName(long keynum)
+	{
+		if (!orderedinserts)
+		{
+			keynum=keypermutation.permute(keynum);
+		}
+		return "user"+keynum;
+	}
 
-		if (!readallfields)
+	/**
+	 * Choose the fields to read: a random one, or null for all of them.
+	 */
+	HashSet<String> chooseFields(Random random)
+	{
+		if (readallfields)
 		{
-			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
+			return null;
+		}
+		HashSet<String> fields=new HashSet<String>();
+		fields.add(fieldnames[fieldchooser.nextInt(random)]);
+		return fields;
+	}
 
-			fields=new HashSet<String>();
-			fields.add(fieldname);
+	/**
+	 * Build new data for the fields to update: all of them, or a random one.
+	 */
+	HashMap<String,String> buildUpdateValues(Random random)
+	{
+		if (writeallfields)
+		{
+			return buildInsertValues(random);
 		}
-		
 		HashMap<String,String> values=new HashMap<String,String>();
+		String fieldname=fieldnames[fieldchooser.nextInt(random)];
+		values.put(fieldname,Utils.ASCIIString(fieldlength,random));
+		return values;
+	}
 
-		if (writeallfields)
+	/**
+	 * Build data for all the fields of a new record.
+	 */
+	HashMap<String,String> buildInsertValues(Random random)
+	{
+		HashMap<String,String> values=new HashMap<String,String>();
+		for (int i=0; i<fieldcount; i++)
 		{
-		   //new data for all the fields
-		   for (int i=0; i<fieldcount; i++)
-		   {
-		      String fieldname="field"+i;
-		      String data=Utils.ASCIIString(fieldlength);		   
-		      values.put(fieldname,data);
-		   }
+			values.put(fieldnames[i],Utils.ASCIIString(fieldlength,random));
 		}
-		else
+		return values;
+	}
+
+	public void doTransactionDelete(DB db, Random random)
+	{
+		//choose a random key
+		deleteRecord(db,nextKeynum(random),random);
+	}
+
+	/**
+	 * Delete a record, or another one if it has already been deleted. It is marked deleted before it is deleted,
+	 * so that no other operation chooses it, and can only be put back once the delete has completed. If no record
+	 * drawn can be marked, nothing is deleted and the delete is counted as skipped.
+	 */
+	void deleteRecord(DB db, long keynum, Random random)
+	{
+		boolean marked=deletedkeys.delete(keynum);
+		for (int i=0; (i<DELETED_REDRAWS) && (!marked); i++)
+		{
+			//another thread deleted it first
+			keynum=nextKeynum(random);
+			marked=deletedkeys.delete(keynum);
+		}
+		if (!marked)
+		{
+			//every record drawn was deleted already; deleting one again would remove a record put back meanwhile
+			skippeddeletes.incrementAndGet();
+			return;
+		}
+		try
 		{
-		   //update a random field
-		   String fieldname="field"+fieldchooser.nextString();
-		   String data=Utils.ASCIIString(fieldlength);		   
-		   values.put(fieldname,data);
+			db.delete(table,buildKeyName(keynum));
 		}
+		finally
+		{
+			deletedkeys.deleted(keynum);
+		}
+	}
+
+	public void doTransactionRead(DB db, Random random)
+	{
+		//choose a random key
+		String keyname=buildKeyName(nextKeynum(random));
+		HashSet<String> fields=chooseFields(random);
+
+		db.read(table,keyname,fields,new HashMap<String,String>());
+	}
+	
+	public void doTransactionReadModifyWrite(DB db, Random random)
+	{
+		//choose a random key
+		String keyname=buildKeyName(nextKeynum(random));
+		HashSet<String> fields=chooseFields(random);
+		HashMap<String,String> values=buildUpdateValues(random);
+
+		readModifyWrite(db,keyname,fields,values);
+	}
 
+	void readModifyWrite(DB db, String keyname, HashSet<String> fields, HashMap<String,String> values)
+	{
 		//do the transaction
 		
 		long st=System.currentTimeMillis();
@@ -509,96 +1194,89 @@ public class CoreWorkload extends Workload
 		Measurements.getMeasurements().measure("READ-MODIFY-WRITE", (int)(en-st));
 	}
 	
-	public void doTransactionScan(DB db)
+	public void doTransactionScan(DB db, Random random)
 	{
 		//choose a random key
-		int keynum;
-		do
-		{
-			keynum=keychooser.nextInt();
-		}
-		while (keynum>transactioninsertkeysequence.lastInt());
-
-		if (!orderedinserts)
-		{
-			keynum=Utils.hash(keynum);
-		}
-		String startkeyname="user"+keynum;
+		String startkeyname=buildKeyName(nextKeynum(random));
 		
 		//choose a random scan length
-		int len=scanlength.nextInt();
-
-		HashSet<String> fields=null;
+		int len=scanlength.nextInt(random);
 
-		if (!readallfields)
-		{
-			//read a random field  
-			String fieldname="field"+fieldchooser.nextString();
-
-			fields=new HashSet<String>();
-			fields.add(fieldname);
-		}
+		HashSet<String> fields=chooseFields(random);
 
 		db.scan(table,startkeyname,len,fields,new Vector<HashMap<String,String>>());
 	}
 
-	public void doTransactionUpdate(DB db)
+	public void doTransactionUpdate(DB db, Random random)
 	{
 		//choose a random key
-		int keynum;
-		do
+		String keyname=buildKeyName(nextKeynum(random));
+		HashMap<String,String> values=buildUpdateValues(random);
+
+		db.update(table,keyname,values);
+	}
+
+	public void doTransactionInsert(DB db, ThreadState state)
+	{
+		doTransactionInsert(db,state,buildInsertValues(state.random));
+	}
+
+	/**
+	 * Insert a record with the given values, putting back a deleted one if refilldeleted is set and there is
+	 * one, or else taking the next key.
+	 */
+	void doTransactionInsert(DB db, ThreadState state, HashMap<String,String> values)
+	{
+		if (refilldeleted)
 		{
-			keynum=keychooser.nextInt();
+			long refillkey=deletedkeys.claimDeleted();
+			if (refillkey>=0)
+			{
+				doTransactionRefill(db,refillkey,values);
+				return;
+			}
 		}
-		while (keynum>transactioninsertkeysequence.lastInt());
 
-		if (!orderedinserts)
+		//choose the next key, from the ones this thread has leased
+		if (state.insertnext==state.insertend)
 		{
-			keynum=Utils.hash(keynum);
+			state.insertnext=transactioninsertkeysequence.lease(insertkeychunksize);
+			state.insertend=state.insertnext+insertkeychunksize;
 		}
-		String keyname="user"+keynum;
-
-		HashMap<String,String> values=new HashMap<String,String>();
-
-		if (writeallfields)
+		long ackkey=state.insertnext++;
+		try
 		{
-		   //new data for all the fields
-		   for (int i=0; i<fieldcount; i++)
-		   {
-		      String fieldname="field"+i;
-		      String data=Utils.ASCIIString(fieldlength);		   
-		      values.put(fieldname,data);
-		   }
+			db.insert(table,buildKeyName(ackkey),values);
 		}
-		else
+		finally
 		{
-		   //update a random field
-		   String fieldname="field"+fieldchooser.nextString();
-		   String data=Utils.ASCIIString(fieldlength);		   
-		   values.put(fieldname,data);
+			//even if the insert failed, so that the keys after it can still be read
+			transactioninsertkeysequence.acknowledge(ackkey);
 		}
-
-		db.update(table,keyname,values);
 	}
 
-	public void doTransactionInsert(DB db)
+	/**
+	 * Insert a deleted record again. It stays deleted, so that no other operation chooses it, until its insert
+	 * has completed.
+	 */
+	void doTransactionRefill(DB db, long refillkey, HashMap<String,String> values)
 	{
-		//choose the next key
-		int keynum=transactioninsertkeysequence.nextInt();
-		if (!orderedinserts)
+		boolean inserted=false;
+		try
 		{
-			keynum=Utils.hash(keynum);
+			inserted=(db.insert(table,buildKeyName(refillkey),values)==0);
 		}
-		String dbkey="user"+keynum;
-		
-		HashMap<String,String> values=new HashMap<String,String>();
-		for (int i=0; i<fieldcount; i++)
+		finally
 		{
-			String fieldkey="field"+i;
-			String data=Utils.ASCIIString(fieldlength);
-			values.put(fieldkey,data);
+			if (inserted)
+			{
+				deletedkeys.refilled(refillkey);
+			}
+			else
+			{
+				deletedkeys.release(refillkey);
+			}
 		}
-		db.insert(table,dbkey,values);
 	}
 
 	@Override
@@ -0,0 +1,275 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The set of record numbers that have been deleted, so that operations can avoid them and inserts can put them
+ * back. It is a bitmap of one bit per record, kept off the heap in pages that are only allocated once a record in
+ * them is deleted, so a billion records cost nothing until they are deleted from, and at most 125MB after. The pages
+ * are found through directories, themselves allocated on first use, that cover every record number below CAPACITY,
+ * so the set needn't be sized for the records a run will insert. Bits are set and cleared with compare-and-swap, so
+ * threads never lock to delete or to check a record.
+ * 
+ * A record is deleted in two steps: delete() sets its bit before the delete is issued, so that no operation
+ * chooses it from then on, and deleted() says the delete has completed. A deleted record is put back in two steps
+ * too: claimDeleted() reserves it for one inserter (its bit stays set, so readers keep avoiding it while the
+ * insert is in flight), and refilled() clears the bit once the insert is done. Only records whose delete has
+ * completed can be claimed, or the delete could land after the record was put back and remove it again.
+ */
+public class DeletedKeySet
+{
+	/**
+	 * The size of a page of the bitmap, in bytes.
+	 */
+	public static final int PAGE_SIZE=1<<20;
+
+	static final int WORDS_PER_PAGE=PAGE_SIZE/8;
+	static final long KEYS_PER_PAGE=PAGE_SIZE*8L;
+
+	/**
+	 * The number of pages in a directory, and of directories.
+	 */
+	static final int DIRECTORY_SIZE=1<<12;
+
+	/**
+	 * The number of records the set covers: 2^47, far more than a run can insert.
+	 */
+	public static final long CAPACITY=KEYS_PER_PAGE*DIRECTORY_SIZE*DIRECTORY_SIZE;
+
+	/**
+	 * Compare-and-swap access to the longs of a page.
+	 */
+	static final VarHandle WORDS=MethodHandles.byteBufferViewVarHandle(long[].class,ByteOrder.nativeOrder());
+
+	AtomicReferenceArray<AtomicReferenceArray<ByteBuffer>> _directories;
+	AtomicLong _count;
+
+	/**
+	 * One more than the highest page allocated, which bounds the search for a deleted record.
+	 */
+	AtomicInteger _pagecount;
+
+	/**
+	 * The records with a delete, or an insert putting them back, that hasn't completed.
+	 */
+	ConcurrentHashMap<Long,Boolean> _inflight;
+
+	/**
+	 * The word the next search for a deleted record to refill starts at, so that searches don't all go over the
+	 * same records.
+	 */
+	AtomicLong _cursor;
+
+	/**
+	 * Create an empty set.
+	 */
+	public DeletedKeySet()
+	{
+		_directories=new AtomicReferenceArray<AtomicReferenceArray<ByteBuffer>>(DIRECTORY_SIZE);
+		_count=new AtomicLong();
+		_pagecount=new AtomicInteger();
+		_inflight=new ConcurrentHashMap<Long,Boolean>();
+		_cursor=new AtomicLong();
+	}
+
+	/**
+	 * Return the page holding the given record, allocating it if asked to.
+	 */
+	ByteBuffer getPage(long key, boolean allocate)
+	{
+		int index=(int)(key/KEYS_PER_PAGE);
+		AtomicReferenceArray<ByteBuffer> directory=_directories.get(index/DIRECTORY_SIZE);
+		if (directory==null)
+		{
+			if (!allocate)
+			{
+				return null;
+			}
+			_directories.compareAndSet(index/DIRECTORY_SIZE,null,new AtomicReferenceArray<ByteBuffer>(DIRECTORY_SIZE));
+			directory=_directories.get(index/DIRECTORY_SIZE);
+		}
+		ByteBuffer page=directory.get(index%DIRECTORY_SIZE);
+		if ( (page==null) && (allocate) )
+		{
+			//direct buffers start out zeroed
+			directory.compareAndSet(index%DIRECTORY_SIZE,null,ByteBuffer.allocateDirect(PAGE_SIZE).order(ByteOrder.nativeOrder()));
+			page=directory.get(index%DIRECTORY_SIZE);
+			while (true)
+			{
+				int count=_pagecount.get();
+				if ( (count>index) || (_pagecount.compareAndSet(count,index+1)) )
+				{
+					break;
+				}
+			}
+		}
+		return page;
+	}
+
+	static int byteOffset(long key)
+	{
+		return (int)((key%KEYS_PER_PAGE)>>>6)<<3;
+	}
+
+	/**
+	 * Return true if the record has been deleted (and not put back yet).
+	 */
+	public boolean isDeleted(long key)
+	{
+		if ( (_count.get()==0) || (key<0) || (key>=CAPACITY) )
+		{
+			return false;
+		}
+		ByteBuffer page=getPage(key,false);
+		if (page==null)
+		{
+			return false;
+		}
+		long word=(long)WORDS.getVolatile(page,byteOffset(key));
+		return (word&(1L<<key))!=0;
+	}
+
+	/**
+	 * Mark a record as deleted, before deleting it. Call deleted() once the delete has completed.
+	 * 
+	 * @return false if it already was, it is being deleted or put back, or it is beyond the capacity of the set
+	 */
+	public boolean delete(long key)
+	{
+		if ( (key<0) || (key>=CAPACITY) )
+		{
+			return false;
+		}
+		//reserve the record before setting its bit, so that claimDeleted() never sees the bit without the reservation
+		if (_inflight.putIfAbsent(key,Boolean.TRUE)!=null)
+		{
+			return false;
+		}
+		ByteBuffer page=getPage(key,true);
+		int offset=byteOffset(key);
+		long bit=1L<<key;
+		while (true)
+		{
+			long word=(long)WORDS.getVolatile(page,offset);
+			if ((word&bit)!=0)
+			{
+				_inflight.remove(key);
+				return false;
+			}
+			if (WORDS.compareAndSet(page,offset,word,word|bit))
+			{
+				_count.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Say that the delete of a record marked with delete() has completed (or failed), so that the record can be
+	 * claimed to be put back.
+	 */
+	public void deleted(long key)
+	{
+		_inflight.remove(key);
+	}
+
+	/**
+	 * Find a deleted record that is not being deleted or put back, and reserve it for the caller to insert again.
+	 * It stays deleted, as far as isDeleted() is concerned, until refilled() is called.
+	 * 
+	 * @return the record, or -1 if there is none
+	 */
+	public long claimDeleted()
+	{
+		if (_count.get()<=_inflight.size())
+		{
+			return -1;
+		}
+
+		long words=(long)_pagecount.get()*WORDS_PER_PAGE;
+		long start=_cursor.get();
+		for (long i=0; i<words; i++)
+		{
+			long w=(start+i)%words;
+			long key=w*64;
+			ByteBuffer page=getPage(key,false);
+			if (page==null)
+			{
+				//skip to the start of the next page
+				i+=WORDS_PER_PAGE-1-(w%WORDS_PER_PAGE);
+				continue;
+			}
+			long word=(long)WORDS.getVolatile(page,byteOffset(key));
+			while (word!=0)
+			{
+				long candidate=key+Long.numberOfTrailingZeros(word);
+				word&=word-1;
+				if (_inflight.putIfAbsent(candidate,Boolean.TRUE)==null)
+				{
+					_cursor.set(w);
+					return candidate;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Put back a record reserved with claimDeleted(), once it has been inserted again.
+	 */
+	public void refilled(long key)
+	{
+		ByteBuffer page=getPage(key,false);
+		int offset=byteOffset(key);
+		long bit=1L<<key;
+		while (true)
+		{
+			long word=(long)WORDS.getVolatile(page,offset);
+			if (WORDS.compareAndSet(page,offset,word,word&~bit))
+			{
+				break;
+			}
+		}
+		_count.decrementAndGet();
+		_inflight.remove(key);
+	}
+
+	/**
+	 * Give up a record reserved with claimDeleted() without putting it back, if its insert failed.
+	 */
+	public void release(long key)
+	{
+		_inflight.remove(key);
+	}
+
+	/**
+	 * Return the number of records deleted and not put back.
+	 */
+	public long size()
+	{
+		return _count.get();
+	}
+}
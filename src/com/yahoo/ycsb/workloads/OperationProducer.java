@@ -0,0 +1,154 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread that prepares the operations of some of the client threads ahead of time, in batches, into each
+ * one's ring, so that the client threads only have to make the DB calls (see the pregenerate property of
+ * CoreWorkload). It is the only producer of the rings it fills.
+ * 
+ * When none of its rings has room for a batch, the producer parks until a client thread wakes it, after taking
+ * an operation that leaves room for one. A client thread that finds its ring empty wakes the producer too, so a
+ * wakeup missed while the producer was about to park only costs that thread a stall.
+ */
+class OperationProducer extends Thread
+{
+	CoreWorkload _workload;
+	int _batchsize;
+
+	/**
+	 * The client threads this producer prepares operations for.
+	 */
+	CopyOnWriteArrayList<CoreWorkload.ThreadState> _states=new CopyOnWriteArrayList<CoreWorkload.ThreadState>();
+
+	volatile boolean _stopped;
+
+	/**
+	 * Set while the producer is about to park, or parked, for lack of room in its rings.
+	 */
+	volatile boolean _waiting;
+
+	/**
+	 * The operations prepared, whether or not a client thread took them, and the time spent preparing them, in ns.
+	 */
+	volatile long _operations;
+	volatile long _time;
+
+	OperationProducer(CoreWorkload workload, int batchsize, int id)
+	{
+		super("OperationProducer-"+id);
+		_workload=workload;
+		_batchsize=batchsize;
+		setDaemon(true);
+	}
+
+	/**
+	 * Start preparing operations for a client thread.
+	 */
+	void add(CoreWorkload.ThreadState state)
+	{
+		_states.add(state);
+		LockSupport.unpark(this);
+	}
+
+	void finish()
+	{
+		_stopped=true;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Return how much room a ring needs before it is refilled: a batch, or half the ring if that is smaller.
+	 */
+	int refillThreshold(OperationRing<?> ring)
+	{
+		return Math.max(1,Math.min(_batchsize,ring.capacity()/2));
+	}
+
+	/**
+	 * Wake the producer if it is waiting and the given ring, which the calling client thread has just taken
+	 * from, has room for it to refill.
+	 */
+	void taken(OperationRing<?> ring)
+	{
+		if ( (_waiting) && (ring.capacity()-ring.size()>=refillThreshold(ring)) )
+		{
+			LockSupport.unpark(this);
+		}
+	}
+
+	/**
+	 * Wake the producer, for a client thread that has found its ring empty.
+	 */
+	void starved()
+	{
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Refill every ring that has room for it once.
+	 * 
+	 * @return true if none had
+	 */
+	boolean fill()
+	{
+		boolean idle=true;
+		for (CoreWorkload.ThreadState state : _states)
+		{
+			if (state.done)
+			{
+				_states.remove(state);
+				continue;
+			}
+			int room=state.ring.remainingCapacity();
+			if (room<refillThreshold(state.ring))
+			{
+				continue;
+			}
+			idle=false;
+			int n=Math.min(_batchsize,room);
+			long st=System.nanoTime();
+			for (int i=0; i<n; i++)
+			{
+				state.ring.offer(_workload.prepare(state.producerrandom));
+			}
+			_time+=System.nanoTime()-st;
+			_operations+=n;
+		}
+		return idle;
+	}
+
+	public void run()
+	{
+		while (!_stopped)
+		{
+			if (fill())
+			{
+				//look again once client threads can see we are waiting, so that room made since isn't missed
+				_waiting=true;
+				if ( (fill()) && (!_stopped) )
+				{
+					LockSupport.park(this);
+				}
+				_waiting=false;
+			}
+		}
+	}
+}
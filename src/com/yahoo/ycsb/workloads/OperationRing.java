@@ -0,0 +1,126 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded ring buffer between one producer thread and one consumer thread, without locks. Each side only
+ * writes its own index, with an ordered store, and keeps its last view of the other side's index, so it only
+ * reads the other side's when the ring looks full (or empty) from what it last saw.
+ */
+class OperationRing<T>
+{
+	Object[] _slots;
+	int _mask;
+
+	/**
+	 * The next slot to take from, written by the consumer.
+	 */
+	AtomicLong _head=new AtomicLong();
+
+	/**
+	 * The next slot to fill, written by the producer.
+	 */
+	AtomicLong _tail=new AtomicLong();
+
+	/**
+	 * The producer's view of the head, and the consumer's view of the tail.
+	 */
+	long _producerhead;
+	long _consumertail;
+
+	/**
+	 * Create a ring of at least the given capacity, rounded up to a power of 2.
+	 */
+	OperationRing(int capacity)
+	{
+		int size=Integer.highestOneBit(Math.max(capacity,2)-1)<<1;
+		_slots=new Object[size];
+		_mask=size-1;
+	}
+
+	/**
+	 * Return how many items the ring can hold.
+	 */
+	int capacity()
+	{
+		return _slots.length;
+	}
+
+	/**
+	 * Return how many items are in the ring, from either side.
+	 */
+	int size()
+	{
+		return (int)(_tail.get()-_head.get());
+	}
+
+	/**
+	 * Return how many more items the producer can add without the ring overflowing.
+	 */
+	int remainingCapacity()
+	{
+		_producerhead=_head.get();
+		return _slots.length-(int)(_tail.get()-_producerhead);
+	}
+
+	/**
+	 * Add an item, from the producer.
+	 * 
+	 * @return false if the ring is full
+	 */
+	boolean offer(T item)
+	{
+		long tail=_tail.get();
+		if (tail-_producerhead>=_slots.length)
+		{
+			_producerhead=_head.get();
+			if (tail-_producerhead>=_slots.length)
+			{
+				return false;
+			}
+		}
+		_slots[(int)tail&_mask]=item;
+		_tail.lazySet(tail+1);
+		return true;
+	}
+
+	/**
+	 * Take the oldest item, from the consumer.
+	 * 
+	 * @return null if the ring is empty
+	 */
+	@SuppressWarnings("unchecked")
+	T poll()
+	{
+		long head=_head.get();
+		if (head>=_consumertail)
+		{
+			_consumertail=_tail.get();
+			if (head>=_consumertail)
+			{
+				return null;
+			}
+		}
+		int slot=(int)head&_mask;
+		T item=(T)_slots[slot];
+		_slots[slot]=null;
+		_head.lazySet(head+1);
+		return item;
+	}
+}
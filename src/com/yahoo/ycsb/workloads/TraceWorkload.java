@@ -0,0 +1,328 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.TraceReader;
+import com.yahoo.ycsb.TraceRecord;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.RandomStream;
+
+/**
+ * Replays a trace of operations, recorded by TraceDB (see the trace.file property) or converted from a log by
+ * TraceConverter. Each thread maps the trace into memory and replays the operations on the keys that hash to it,
+ * so that the operations on a key are replayed in order, by one thread. Updates and inserts write random values
+ * of the lengths recorded. Set operationcount to 0 to replay the whole trace.
+ * 
+ * Properties to control the replay:
+ * <UL>
+ * <LI><b>replay.file</b>: the trace to replay (required)
+ * <LI><b>replay.timing</b>: "original" to issue each operation when it was issued in the trace, relative to the
+ * start of the run, or "fastest" to issue them as fast as possible (default: original)
+ * <LI><b>table</b>: the table to replay the operations on (default: usertable)
+ * </ul>
+ */
+public class TraceWorkload extends Workload
+{
+	public static final String REPLAY_FILE_PROPERTY="replay.file";
+
+	public static final String REPLAY_TIMING_PROPERTY="replay.timing";
+
+	public static final String REPLAY_TIMING_PROPERTY_DEFAULT="original";
+
+	static final Charset UTF8=Charset.forName("UTF-8");
+
+	/**
+	 * The state of one replaying thread, which replays the operations of the trace on the keys that hash to it.
+	 */
+	static class ThreadState
+	{
+		TraceReader reader;
+		TraceRecord record=new TraceRecord();
+		RandomStream random;
+		int threadid;
+		int threadcount;
+
+		/**
+		 * The names of the fields seen so far, kept to turn the fields of the records back into the same strings.
+		 */
+		Vector<byte[]> fieldbytes=new Vector<byte[]>();
+		Vector<String> fieldnames=new Vector<String>();
+
+		ThreadState(TraceReader reader, RandomStream random, int threadid, int threadcount)
+		{
+			this.reader=reader;
+			this.random=random;
+			this.threadid=threadid;
+			this.threadcount=threadcount;
+		}
+
+		/**
+		 * Read the thread's next operation.
+		 * 
+		 * @return false at the end of the trace
+		 */
+		boolean next() throws IOException
+		{
+			while (reader.next(record))
+			{
+				if ( (threadcount==1) || (partition(record.key,record.keylength,threadcount)==threadid) )
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		String getFieldName(int i)
+		{
+			byte[] field=record.fields[i];
+			int length=record.fieldlengths[i];
+			for (int j=0; j<fieldbytes.size(); j++)
+			{
+				byte[] b=fieldbytes.get(j);
+				if (b.length!=length)
+				{
+					continue;
+				}
+				int k=0;
+				while ( (k<length) && (b[k]==field[k]) )
+				{
+					k++;
+				}
+				if (k==length)
+				{
+					return fieldnames.get(j);
+				}
+			}
+			byte[] b=new byte[length];
+			System.arraycopy(field,0,b,0,length);
+			String name=new String(b,UTF8);
+			fieldbytes.add(b);
+			fieldnames.add(name);
+			return name;
+		}
+	}
+
+	String file;
+	String table;
+	boolean originaltiming;
+
+	boolean seeded;
+	long seed;
+
+	/**
+	 * When the first operation of the trace was issued.
+	 */
+	long tracestart;
+
+	/**
+	 * When the replay started, by System.nanoTime(), set by the first operation replayed.
+	 */
+	AtomicLong replaystart=new AtomicLong();
+
+	public void init(Properties p) throws WorkloadException
+	{
+		file=p.getProperty(REPLAY_FILE_PROPERTY);
+		if (file==null)
+		{
+			throw new WorkloadException("Missing property: "+REPLAY_FILE_PROPERTY);
+		}
+		table=p.getProperty(CoreWorkload.TABLENAME_PROPERTY,CoreWorkload.TABLENAME_PROPERTY_DEFAULT);
+
+		String timing=p.getProperty(REPLAY_TIMING_PROPERTY,REPLAY_TIMING_PROPERTY_DEFAULT);
+		if (timing.compareTo("original")==0)
+		{
+			originaltiming=true;
+		}
+		else if (timing.compareTo("fastest")!=0)
+		{
+			throw new WorkloadException("Unknown replay timing \""+timing+"\"");
+		}
+
+		seeded=(p.getProperty(SEED_PROPERTY)!=null);
+		if (seeded)
+		{
+			seed=Long.parseLong(p.getProperty(SEED_PROPERTY));
+		}
+
+		try
+		{
+			TraceReader reader=new TraceReader(file);
+			TraceRecord first=new TraceRecord();
+			if (reader.next(first))
+			{
+				tracestart=first.time;
+			}
+			reader.close();
+		}
+		catch (IOException e)
+		{
+			throw new WorkloadException("Could not read trace "+file+": "+e.getMessage());
+		}
+	}
+
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		try
+		{
+			return new ThreadState(new TraceReader(file),seeded ? RandomStream.forThread(seed,mythreadid) : new RandomStream(),mythreadid,threadcount);
+		}
+		catch (IOException e)
+		{
+			throw new WorkloadException("Could not read trace "+file+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Return the partition a key belongs to.
+	 */
+	static int partition(byte[] key, int length, int partitions)
+	{
+		int h=0;
+		for (int i=0; i<length; i++)
+		{
+			h=31*h+key[i];
+		}
+		return (Utils.FNVhash32(h)&Integer.MAX_VALUE)%partitions;
+	}
+
+	public void cleanupThread(Object threadstate) throws WorkloadException
+	{
+		try
+		{
+			((ThreadState)threadstate).reader.close();
+		}
+		catch (IOException e)
+		{
+			throw new WorkloadException("Could not close trace "+file+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Replay the thread's next operation, in the load phase as in the transaction phase.
+	 */
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		return doTransaction(db,threadstate);
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		ThreadState state=(ThreadState)threadstate;
+		try
+		{
+			if (!state.next())
+			{
+				return false;
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read trace "+file+": "+e.getMessage());
+			return false;
+		}
+		TraceRecord r=state.record;
+
+		if (originaltiming)
+		{
+			waitFor(r.time);
+		}
+
+		String key=new String(r.key,0,r.keylength,UTF8);
+		switch (r.op)
+		{
+		case TraceRecord.READ:
+			db.read(table,key,getFields(state),new HashMap<String,String>());
+			break;
+		case TraceRecord.SCAN:
+			db.scan(table,key,r.count,getFields(state),new Vector<HashMap<String,String>>());
+			break;
+		case TraceRecord.UPDATE:
+			db.update(table,key,getValues(state));
+			break;
+		case TraceRecord.INSERT:
+			db.insert(table,key,getValues(state));
+			break;
+		case TraceRecord.DELETE:
+			db.delete(table,key);
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Wait until an operation is due: as long after the start of the replay as it was after the start of the trace.
+	 */
+	void waitFor(long time)
+	{
+		long start=replaystart.get();
+		if (start==0)
+		{
+			replaystart.compareAndSet(0,System.nanoTime());
+			start=replaystart.get();
+		}
+		long due=start+(time-tracestart);
+		long delay;
+		while ((delay=due-System.nanoTime())>0)
+		{
+			LockSupport.parkNanos(delay);
+		}
+	}
+
+	HashSet<String> getFields(ThreadState state)
+	{
+		TraceRecord r=state.record;
+		if (r.fieldcount<0)
+		{
+			return null;
+		}
+		HashSet<String> fields=new HashSet<String>();
+		for (int i=0; i<r.fieldcount; i++)
+		{
+			fields.add(state.getFieldName(i));
+		}
+		return fields;
+	}
+
+	HashMap<String,String> getValues(ThreadState state)
+	{
+		TraceRecord r=state.record;
+		HashMap<String,String> values=new HashMap<String,String>();
+		for (int i=0; i<r.fieldcount; i++)
+		{
+			values.put(state.getFieldName(i),Utils.ASCIIString(r.valuelengths[i],state.random));
+		}
+		return values;
+	}
+
+	public boolean doTruncation(DB db)
+	{
+		return db.truncate(table)==0;
+	}
+}